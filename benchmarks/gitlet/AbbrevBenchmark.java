@@ -0,0 +1,107 @@
+package gitlet;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+/** Measures the cost of recording a commit id and of resolving an
+ *  abbreviated id as the history grows, with CommitIndex and with the
+ *  former HashMap of 6-digit prefixes, which every commit read and wrote
+ *  back whole.  Every lookup in CommitIndex is checked against a sorted
+ *  set of all the ids.  Must be run in an empty directory.
+ *  Usage: java gitlet.AbbrevBenchmark [COMMITS]
+ *  @author Sasmit Agarwal
+ */
+public class AbbrevBenchmark {
+
+    /** Seed for all random ids. */
+    static final long SEED = 61;
+    /** Ids added and prefixes looked up in each timed sample. */
+    static final int SAMPLE = 200;
+
+    /** Run the benchmark with the parameters in ARGS. */
+    public static void main(String... args) {
+        int commits = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        Random rand = new Random(SEED);
+        Main.GITLET_FOLDER.mkdir();
+        java.io.File map = Utils.join(Main.GITLET_FOLDER, "commits.x");
+        Utils.writeObject(map, new HashMap<String, String>());
+
+        TreeSet<String> all = new TreeSet<>();
+        System.out.printf("%10s %14s %14s %14s%n", "commits", "index add us",
+                          "find us", "old add us");
+        int next = 1000;
+        while (all.size() < commits) {
+            long t0 = System.nanoTime();
+            for (int i = 0; i < SAMPLE; i += 1) {
+                String id = id(rand);
+                CommitIndex.add(id);
+                all.add(id);
+            }
+            long add = System.nanoTime() - t0;
+            long find = 0;
+            for (int i = 0; i < SAMPLE; i += 1) {
+                String prefix = id(rand).substring(0, 1 + rand.nextInt(8));
+                long t1 = System.nanoTime();
+                List<String> found = CommitIndex.find(prefix, 2);
+                find += System.nanoTime() - t1;
+                check(all, prefix, found);
+            }
+            if (all.size() >= next || all.size() >= commits) {
+                long old = next <= 20000 ? oldAdd(map, rand, all) : -1;
+                System.out.printf("%10d %14.1f %14.2f %14s%n", all.size(),
+                                  add / 1e3 / SAMPLE, find / 1e3 / SAMPLE,
+                                  old < 0 ? "-"
+                                  : String.format("%.1f", old / 1e3));
+                next *= 10;
+            }
+        }
+    }
+
+    /** Returns the time, in nanoseconds, that the former commits.x in MAP
+     *  took to record one more commit id drawn from RAND once it held the
+     *  6-digit prefixes of the ids in ALL. */
+    @SuppressWarnings("unchecked")
+    static long oldAdd(java.io.File map, Random rand, TreeSet<String> all) {
+        HashMap<String, String> h = new HashMap<>();
+        for (String id : all) {
+            h.put(id.substring(0, 6), id);
+        }
+        Utils.writeObject(map, h);
+        String id = id(rand);
+        long t0 = System.nanoTime();
+        h = Utils.readObject(map, HashMap.class);
+        h.put(id.substring(0, 6), id);
+        Utils.writeObject(map, h);
+        return System.nanoTime() - t0;
+    }
+
+    /** Returns a random commit id drawn from RAND. */
+    static String id(Random rand) {
+        byte[] raw = new byte[Utils.RAW_UID_LENGTH];
+        rand.nextBytes(raw);
+        return Utils.hexId(raw, 0);
+    }
+
+    /** Throw an error unless FOUND, the result of CommitIndex.find(PREFIX,
+     *  2), matches the ids in ALL that start with PREFIX. */
+    static void check(TreeSet<String> all, String prefix,
+                      List<String> found) {
+        int expected = 0;
+        for (String id : all.tailSet(prefix)) {
+            if (!id.startsWith(prefix) || expected == 2) {
+                break;
+            }
+            expected += 1;
+        }
+        if (found.size() != expected) {
+            throw new AssertionError("wrong matches for " + prefix);
+        }
+        for (String id : found) {
+            if (!id.startsWith(prefix) || !all.contains(id)) {
+                throw new AssertionError("wrong match for " + prefix);
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package gitlet;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Random;
+
+/** Measures the throughput of staging many files with Main.stage at
+ *  increasing pool sizes, from one thread up to the number of cores.
+ *  Must be run in an empty directory.
+ *  Usage: java gitlet.AddBenchmark [FILES [SIZE [RUNS]]]
+ *  @author Sasmit Agarwal
+ */
+public class AddBenchmark {
+
+    /** Run the benchmark with the parameters in ARGS. */
+    public static void main(String... args) throws Exception {
+        int files = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int size = args.length > 1 ? Integer.parseInt(args[1]) : 64 << 10;
+        int runs = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+
+        Main.main("init");
+        Random random = new Random(61);
+        ArrayList<String> fnames = new ArrayList<>();
+        byte[] data = new byte[size];
+        for (int i = 0; i < files; i += 1) {
+            String name = String.format("file%05d.bin", i);
+            random.nextBytes(data);
+            Files.write(Path.of(name), data);
+            fnames.add(name);
+        }
+
+        System.out.printf("%8s %12s %10s%n", "threads", "files/s", "MB/s");
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; ; threads = Math.min(2 * threads, cores)) {
+            measure(fnames, size, threads, runs);
+            if (threads == cores) {
+                break;
+            }
+        }
+    }
+
+    /** Print the best throughput over RUNS runs, after one warm-up run, of
+     *  staging FNAMES, each of SIZE bytes, with THREADS threads.  The
+     *  stage and the stat cache are cleared before each run so that every
+     *  file is hashed and copied. */
+    static void measure(ArrayList<String> fnames, int size, int threads,
+                        int runs) {
+        long best = Long.MAX_VALUE;
+        for (int r = 0; r <= runs; r += 1) {
+            for (File f : Main.ADDITION.listFiles()) {
+                f.delete();
+            }
+            Main.STAT_CACHE.delete();
+            Repository.flush();
+            long start = System.nanoTime();
+            Main.stage(fnames, threads);
+            long time = System.nanoTime() - start;
+            if (r > 0) {
+                best = Math.min(best, time);
+            }
+        }
+        double rate = fnames.size() / (best / 1e9);
+        System.out.printf("%8d %12.0f %10.1f%n", threads, rate,
+                          rate * size / 1e6);
+    }
+}
@@ -0,0 +1,104 @@
+package gitlet;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Random;
+
+/** Measures the deduplication ratio and the add and checkout throughput
+ *  of large objects on a synthetic append-and-patch workload: a dump
+ *  that in each version has a few regions overwritten, a few bytes
+ *  inserted, and new records appended, committed alongside an unchanging
+ *  copy of its first version.  Must be run in an empty directory; run
+ *  with -Dgitlet.chunking=false to store large objects whole.
+ *  Usage: java gitlet.ChunkBenchmark [MB [VERSIONS]]
+ *  @author Sasmit Agarwal
+ */
+public class ChunkBenchmark {
+
+    /** Seed for all random data. */
+    static final long SEED = 61;
+    /** Regions overwritten in each version. */
+    static final int PATCHES = 8;
+    /** Size of each overwritten region. */
+    static final int PATCH_SIZE = 4096;
+    /** Bytes inserted in each version. */
+    static final int INSERT_SIZE = 100;
+    /** Bytes appended in each version. */
+    static final int APPEND_SIZE = 1 << 20;
+
+    /** Run the benchmark with the parameters in ARGS. */
+    public static void main(String... args) throws IOException {
+        int mb = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int versions = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        Random rand = new Random(SEED);
+
+        Main.main("init");
+        byte[] dump = bytes(rand, mb << 20);
+        Files.write(Path.of("copy.bin"), dump);
+        long logical = dump.length;
+        ArrayList<String> ids = new ArrayList<>();
+        long addNanos = 0;
+        for (int v = 0; v < versions; v += 1) {
+            if (v > 0) {
+                dump = edit(rand, dump);
+            }
+            Files.write(Path.of("dump.bin"), dump);
+            logical += dump.length;
+            long t0 = System.nanoTime();
+            Main.main("add", v == 0 ? "*.bin" : "dump.bin");
+            Main.main("commit", "version " + v);
+            addNanos += System.nanoTime() - t0;
+            ids.add(Main.getTree().headCommit().getId());
+        }
+
+        long checkoutBytes = 0, checkoutNanos = 0;
+        for (String id : ids) {
+            long t0 = System.nanoTime();
+            Main.main("checkout", id, "--", "dump.bin");
+            checkoutNanos += System.nanoTime() - t0;
+            checkoutBytes += Files.size(Path.of("dump.bin"));
+        }
+
+        long stored = DeltaBenchmark.size(Main.GITLET_FOLDER);
+        System.out.printf("chunking=%b size=%d MB versions=%d%n",
+                          Pack.CHUNKING, mb, versions);
+        System.out.printf("  logical bytes:    %,d%n", logical);
+        System.out.printf("  .gitlet size:     %,d bytes%n", stored);
+        System.out.printf("  dedup ratio:      %.2f%n",
+                          (double) logical / stored);
+        System.out.printf("  add+commit:       %.1f MB/s%n",
+                          logical / 1e6 / (addNanos / 1e9));
+        System.out.printf("  checkout:         %.1f MB/s%n",
+                          checkoutBytes / 1e6 / (checkoutNanos / 1e9));
+    }
+
+    /** Returns the next version of DUMP: PATCHES regions overwritten,
+     *  INSERT_SIZE bytes inserted at one place, and APPEND_SIZE bytes
+     *  appended, all drawn from RAND. */
+    static byte[] edit(Random rand, byte[] dump) {
+        for (int p = 0; p < PATCHES; p += 1) {
+            int at = rand.nextInt(dump.length - PATCH_SIZE);
+            System.arraycopy(bytes(rand, PATCH_SIZE), 0, dump, at,
+                             PATCH_SIZE);
+        }
+        byte[] result = new byte[dump.length + INSERT_SIZE + APPEND_SIZE];
+        int at = rand.nextInt(dump.length);
+        System.arraycopy(dump, 0, result, 0, at);
+        System.arraycopy(bytes(rand, INSERT_SIZE), 0, result, at,
+                         INSERT_SIZE);
+        System.arraycopy(dump, at, result, at + INSERT_SIZE,
+                         dump.length - at);
+        System.arraycopy(bytes(rand, APPEND_SIZE), 0, result,
+                         dump.length + INSERT_SIZE, APPEND_SIZE);
+        return result;
+    }
+
+    /** Returns N random bytes drawn from RAND. */
+    static byte[] bytes(Random rand, int n) {
+        byte[] result = new byte[n];
+        rand.nextBytes(result);
+        return result;
+    }
+}
@@ -0,0 +1,90 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/** Measures decoding throughput of Commit and CommitTree in the binary
+ *  format and as Java serialization streams.  Must be run in an empty
+ *  directory.
+ *  Usage: java gitlet.CodecBenchmark [FILES [BRANCHES [SECONDS]]]
+ *  @author Sasmit Agarwal
+ */
+public class CodecBenchmark {
+
+    /** Run the benchmark with the parameters in ARGS. */
+    public static void main(String... args) throws Exception {
+        int files = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int branches = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        double seconds = args.length > 2 ? Double.parseDouble(args[2]) : 2;
+
+        Main.main("init");
+        for (int i = 0; i < files; i += 1) {
+            String name = String.format("dir%02d.file%05d.txt", i % 37, i);
+            Files.writeString(Path.of(name), "contents of " + name);
+            Main.main("add", name);
+        }
+        Main.main("commit", "many files");
+        for (int i = 0; i < branches; i += 1) {
+            Main.main("branch", "branch" + i);
+        }
+        Commit commit = Main.getTree().headCommit();
+        CommitTree tree = Main.getTree();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        commit.write(new DataOutputStream(bytes));
+        byte[] commitBinary = bytes.toByteArray();
+        bytes.reset();
+        tree.write(new DataOutputStream(bytes));
+        byte[] treeBinary = bytes.toByteArray();
+        byte[] commitSerial = Utils.serialize(commit);
+        byte[] treeSerial = Utils.serialize(tree);
+
+        System.out.printf("%-28s %10s %12s %10s%n", "object", "bytes",
+                          "decodes/s", "MB/s");
+        measure("Commit (" + files + " files), serial", commitSerial,
+                true, seconds);
+        measure("Commit (" + files + " files), binary", commitBinary,
+                true, seconds);
+        measure("CommitTree (" + branches + "), serial", treeSerial,
+                false, seconds);
+        measure("CommitTree (" + branches + "), binary", treeBinary,
+                false, seconds);
+    }
+
+    /** Decode DATA, a Commit if ISCOMMIT and otherwise a CommitTree,
+     *  repeatedly for SECONDS after as long a warm-up, and print the
+     *  throughput under the label NAME. */
+    static void measure(String name, byte[] data, boolean isCommit,
+                        double seconds) throws Exception {
+        run(data, isCommit, seconds);
+        long[] result = run(data, isCommit, seconds);
+        double rate = result[0] / (result[1] / 1e9);
+        System.out.printf("%-28s %10d %12.0f %10.1f%n", name, data.length,
+                          rate, rate * data.length / 1e6);
+    }
+
+    /** Decode DATA as in measure for SECONDS and return the number of
+     *  decodes and the nanoseconds taken. */
+    static long[] run(byte[] data, boolean isCommit, double seconds)
+        throws IOException, ClassNotFoundException {
+        long start = System.nanoTime(), end = start + (long) (seconds * 1e9);
+        long n = 0, now;
+        do {
+            for (int i = 0; i < 100; i += 1) {
+                ByteArrayInputStream str = new ByteArrayInputStream(data);
+                if (isCommit) {
+                    Commit.read(str);
+                } else {
+                    CommitTree.read(str);
+                }
+            }
+            n += 100;
+            now = System.nanoTime();
+        } while (now < end);
+        return new long[] {n, now - start};
+    }
+}
@@ -0,0 +1,145 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/** Measures the latency of status and log run as a new JVM through Main,
+ *  as a new JVM through Client forwarding to a Daemon, and by a process
+ *  that is already running sending the command to the daemon directly,
+ *  on a repository of many files and commits.  The outputs of the three
+ *  are checked against each other, and after commits made by another
+ *  process, to check that the daemon sees them.  Must be run in an empty
+ *  directory.
+ *  Usage: java gitlet.DaemonBenchmark [FILES [COMMITS [RUNS]]]
+ *  @author Sasmit Agarwal
+ */
+public class DaemonBenchmark {
+
+    /** Commands whose latency is measured. */
+    static final String[][] COMMANDS = {{"status"}, {"log"}};
+
+    /** Run the benchmark with the parameters in ARGS. */
+    public static void main(String... args) throws Exception {
+        int files = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int commits = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int runs = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        Main.main("init");
+        for (int i = 0; i < files; i += 1) {
+            Utils.writeContents(Utils.join(Main.CWD, name(i)), "v0 " + i);
+        }
+        Main.main("add", "*.txt");
+        Main.main("commit", "add files");
+        for (int c = 1; c < commits; c += 1) {
+            String name = name(c % files);
+            Utils.writeContents(Utils.join(Main.CWD, name), "v" + c);
+            Main.main("add", name);
+            Main.main("commit", "commit " + c);
+        }
+
+        Process daemon = start("gitlet.Daemon");
+        try {
+            while (!Client.forward(OutputStream.nullOutputStream(),
+                                   "status")) {
+                Thread.sleep(10);
+            }
+            System.out.printf("files=%d commits=%d%n", files, commits);
+            System.out.printf("%-8s %12s %12s %12s%n", "command",
+                              "main (ms)", "client (ms)", "socket (ms)");
+            for (String[] command : COMMANDS) {
+                String expected = run("gitlet.Main", command);
+                check(expected, run("gitlet.Client", command), "client");
+                check(expected, forward(command), "socket");
+                System.out.printf("%-8s %12.1f %12.1f %12.2f%n", command[0],
+                    time(runs, () -> run("gitlet.Main", command)) / 1e6,
+                    time(runs, () -> run("gitlet.Client", command)) / 1e6,
+                    time(runs, () -> forward(command)) / 1e6);
+            }
+
+            for (int c = 0; c < 3; c += 1) {
+                Utils.writeContents(Utils.join(Main.CWD, name(c)), "x" + c);
+                run("gitlet.Main", "add", name(c));
+                run("gitlet.Main", "commit", "outside " + c);
+                check(run("gitlet.Main", "log"), forward("log"),
+                      "log after an outside commit");
+            }
+        } finally {
+            daemon.destroy();
+            daemon.waitFor();
+        }
+    }
+
+    /** Returns the name of file number I. */
+    static String name(int i) {
+        return String.format("file%05d.txt", i);
+    }
+
+    /** Returns a new JVM running MAIN with ARGS in this directory, with
+     *  this JVM's class path, printing to this JVM's output. */
+    static Process start(String main, String... args) throws IOException {
+        return new ProcessBuilder(java(main, args)).redirectErrorStream(true)
+            .redirectOutput(ProcessBuilder.Redirect.INHERIT).start();
+    }
+
+    /** Returns the output of a new JVM running MAIN with ARGS. */
+    static String run(String main, String... args) {
+        try {
+            Process p = new ProcessBuilder(java(main, args))
+                .redirectErrorStream(true).start();
+            String result = new String(p.getInputStream().readAllBytes());
+            p.waitFor();
+            return result;
+        } catch (IOException | InterruptedException excp) {
+            throw new AssertionError(excp);
+        }
+    }
+
+    /** Returns the command line of a JVM running MAIN with ARGS, with this
+     *  JVM's class path. */
+    static List<String> java(String main, String... args) {
+        ArrayList<String> result = new ArrayList<>(List.of(
+            Path.of(System.getProperty("java.home"), "bin", "java")
+            .toString(), "-cp", System.getProperty("java.class.path"), main));
+        result.addAll(Arrays.asList(args));
+        return result;
+    }
+
+    /** Returns the output of ARGS sent to the daemon from this JVM. */
+    static String forward(String... args) {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            if (!Client.forward(out, args)) {
+                throw new AssertionError("daemon is not listening");
+            }
+            return out.toString();
+        } catch (IOException excp) {
+            throw new AssertionError(excp);
+        }
+    }
+
+    /** Returns the median time, in nanoseconds, that BODY took in RUNS
+     *  runs, after one warm-up run. */
+    static long time(int runs, Runnable body) {
+        long[] times = new long[runs];
+        body.run();
+        for (int r = 0; r < runs; r += 1) {
+            long t0 = System.nanoTime();
+            body.run();
+            times[r] = System.nanoTime() - t0;
+        }
+        Arrays.sort(times);
+        return times[runs / 2];
+    }
+
+    /** Throw an error unless FOUND, the output of WHAT, is EXPECTED. */
+    static void check(String expected, String found, String what) {
+        if (!expected.equals(found)) {
+            throw new AssertionError(what + " printed different output");
+        }
+    }
+}
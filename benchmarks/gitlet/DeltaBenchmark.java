@@ -0,0 +1,85 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/** Measures the size of a repository holding a long history of one file,
+ *  and the latency of checking out old versions of it.  Must be run in an
+ *  empty directory; run with -Dgitlet.deltaDepth=0 to disable deltas.
+ *  Usage: java gitlet.DeltaBenchmark [COMMITS [LINES [CHECKOUTS]]]
+ *  @author Sasmit Agarwal
+ */
+public class DeltaBenchmark {
+
+    /** Seed for all random edits. */
+    static final long SEED = 61;
+    /** Lines changed by each commit. */
+    static final int EDITS_PER_COMMIT = 3;
+
+    /** Run the benchmark with the parameters in ARGS. */
+    public static void main(String... args) throws IOException {
+        int commits = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+        int lines = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int checkouts = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+        Random rand = new Random(SEED);
+
+        Main.main("init");
+        ArrayList<String> text = new ArrayList<>();
+        for (int i = 0; i < lines; i += 1) {
+            text.add(line(rand));
+        }
+        ArrayList<String> ids = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int c = 0; c < commits; c += 1) {
+            for (int e = 0; e < EDITS_PER_COMMIT; e += 1) {
+                text.set(rand.nextInt(lines), line(rand));
+            }
+            Files.write(Path.of("long.txt"), text);
+            Main.main("add", "long.txt");
+            Main.main("commit", "version " + c);
+            ids.add(Main.getTree().headCommit().getId());
+        }
+        double commitMs = (System.nanoTime() - start) / 1e6 / commits;
+
+        long[] times = new long[checkouts];
+        for (int k = 0; k < checkouts; k += 1) {
+            String id = ids.get(rand.nextInt(ids.size()));
+            long t0 = System.nanoTime();
+            Main.main("checkout", id, "--", "long.txt");
+            times[k] = System.nanoTime() - t0;
+        }
+        Arrays.sort(times);
+
+        System.out.printf("deltaDepth=%d commits=%d lines=%d%n",
+                          Pack.MAX_DELTA_DEPTH, commits, lines);
+        System.out.printf("  .gitlet size:     %,d bytes%n",
+                          size(Main.GITLET_FOLDER));
+        System.out.printf("  commit:           %.2f ms/commit%n", commitMs);
+        System.out.printf("  checkout p50/p99: %.3f / %.3f ms%n",
+                          times[checkouts / 2] / 1e6,
+                          times[checkouts * 99 / 100] / 1e6);
+    }
+
+    /** Returns a random line of text generated from RAND. */
+    static String line(Random rand) {
+        StringBuilder result = new StringBuilder();
+        for (int n = 20 + rand.nextInt(60); n > 0; n -= 1) {
+            result.append((char) ('a' + rand.nextInt(26)));
+        }
+        return result.toString();
+    }
+
+    /** Returns the total size of the plain files under DIR. */
+    static long size(File dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir.toPath())) {
+            return paths.filter(Files::isRegularFile)
+                .mapToLong(p -> p.toFile().length()).sum();
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/** Measures Diff with each algorithm on pairs of files of several sizes
+ *  and edit densities, checks that each edit script converts the first
+ *  file into the second, and, where the quadratic table is small enough,
+ *  that MYERS finds a longest common subsequence.  The table the former
+ *  Diff.lls allocated is shown for comparison.
+ *  Usage: java gitlet.DiffBenchmark [RUNS]
+ *  @author Sasmit Agarwal
+ */
+public class DiffBenchmark {
+
+    /** Seed for all random text. */
+    static final long SEED = 61;
+    /** Numbers of lines compared. */
+    static final int[] SIZES = {1000, 10000, 100000};
+    /** Fractions of lines edited. */
+    static final double[] DENSITIES = {0.001, 0.01, 0.1, 0.5};
+    /** The largest table for which the LCS length is checked. */
+    static final long MAX_CHECK_CELLS = 200_000_000;
+
+    /** Run the benchmark with the parameters in ARGS. */
+    public static void main(String... args) {
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        Random rand = new Random(SEED);
+
+        System.out.printf("%8s %8s %12s %12s %10s %12s %10s%n", "lines",
+                          "density", "old table MB", "myers ms", "edits",
+                          "histogram ms", "edits");
+        for (int size : SIZES) {
+            for (double density : DENSITIES) {
+                List<String> a = text(rand, size), b = edit(rand, a, density);
+                System.out.printf("%8d %8.3f %12.0f", size, density,
+                                  (a.size() + 1.0) * (b.size() + 1) * 4
+                                  / (1 << 20));
+                for (Diff.Algorithm alg : Diff.Algorithm.values()) {
+                    Diff diff = new Diff();
+                    diff.setAlgorithm(alg);
+                    diff.setSequences(a, b);
+                    int[] edits = diff.diffs();
+                    check(a, b, edits, alg);
+                    long time = Long.MAX_VALUE;
+                    for (int r = 0; r < runs; r += 1) {
+                        long t0 = System.nanoTime();
+                        diff.setSequences(a, b);
+                        diff.diffs();
+                        time = Math.min(time, System.nanoTime() - t0);
+                    }
+                    int changed = changed(edits);
+                    if (alg == Diff.Algorithm.MYERS) {
+                        checkMinimal(a, b, changed);
+                    }
+                    System.out.printf(" %12.2f %10d", time / 1e6, changed);
+                }
+                System.out.println();
+            }
+        }
+    }
+
+    /** Returns SIZE random lines drawn from RAND, resembling source code:
+     *  a tenth are braces or blank. */
+    static List<String> text(Random rand, int size) {
+        ArrayList<String> result = new ArrayList<>();
+        for (int i = 0; i < size; i += 1) {
+            result.add(line(rand));
+        }
+        return result;
+    }
+
+    /** Returns a random line drawn from RAND. */
+    static String line(Random rand) {
+        int kind = rand.nextInt(20);
+        if (kind == 0) {
+            return "";
+        } else if (kind == 1) {
+            return "    }";
+        }
+        return "    int x" + rand.nextInt(1 << 30) + " = "
+            + rand.nextInt(1000) + ";";
+    }
+
+    /** Returns A with about DENSITY of its lines replaced, deleted, or
+     *  preceded by new lines, chosen by RAND. */
+    static List<String> edit(Random rand, List<String> a, double density) {
+        ArrayList<String> result = new ArrayList<>();
+        for (String s : a) {
+            if (rand.nextDouble() >= density) {
+                result.add(s);
+                continue;
+            }
+            switch (rand.nextInt(3)) {
+            case 0:
+                result.add(line(rand));
+                break;
+            case 1:
+                break;
+            default:
+                result.add(line(rand));
+                result.add(s);
+                break;
+            }
+        }
+        return result;
+    }
+
+    /** Returns the number of lines removed and added by EDITS. */
+    static int changed(int[] edits) {
+        int result = 0;
+        for (int k = 0; k < edits.length; k += 4) {
+            result += edits[k + 1] + edits[k + 3];
+        }
+        return result;
+    }
+
+    /** Throw an error unless applying EDITS, as returned by Diff.diffs
+     *  with algorithm ALG, to A yields B. */
+    static void check(List<String> a, List<String> b, int[] edits,
+                      Diff.Algorithm alg) {
+        ArrayList<String> result = new ArrayList<>();
+        int pos = 0;
+        for (int k = 0; k < edits.length; k += 4) {
+            result.addAll(a.subList(pos, edits[k]));
+            result.addAll(b.subList(edits[k + 2], edits[k + 2] + edits[k + 3]));
+            pos = edits[k] + edits[k + 1];
+        }
+        result.addAll(a.subList(pos, a.size()));
+        if (!result.equals(b)) {
+            throw new AssertionError(alg + " edit script is wrong");
+        }
+    }
+
+    /** Throw an error unless CHANGED, the number of lines changed by the
+     *  MYERS edit from A to B, is the least possible, when A and B are
+     *  small enough to check by dynamic programming. */
+    static void checkMinimal(List<String> a, List<String> b, int changed) {
+        if ((long) a.size() * b.size() > MAX_CHECK_CELLS) {
+            return;
+        }
+        int[] prev = new int[b.size() + 1], row = new int[b.size() + 1];
+        for (int i = 1; i <= a.size(); i += 1) {
+            for (int j = 1; j <= b.size(); j += 1) {
+                row[j] = a.get(i - 1).equals(b.get(j - 1)) ? prev[j - 1] + 1
+                    : Math.max(prev[j], row[j - 1]);
+            }
+            int[] t = prev;
+            prev = row;
+            row = t;
+        }
+        int lcs = prev[b.size()];
+        if (changed != a.size() + b.size() - 2 * lcs) {
+            throw new AssertionError("MYERS edit is not minimal");
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package gitlet;
+
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+/** Measures find on a history of many commits: an exact message looked
+ *  up through MessageIndex and by the former scan, which read every
+ *  commit, and word and substring searches through the index.  The
+ *  results of the index are checked against the scan.  Must be run in an
+ *  empty directory.
+ *  Usage: java gitlet.FindBenchmark [COMMITS [RUNS]]
+ *  @author Sasmit Agarwal
+ */
+public class FindBenchmark {
+
+    /** Seed for all random messages. */
+    static final long SEED = 61;
+    /** Words from which messages are drawn. */
+    static final String[] WORDS = {
+        "fix", "add", "remove", "parser", "tests", "merge", "docs",
+        "refactor", "index", "cache", "status", "checkout", "branch",
+    };
+
+    /** Run the benchmark with the parameters in ARGS. */
+    public static void main(String... args) {
+        int commits = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        Random rand = new Random(SEED);
+
+        Main.main("init");
+        long commitNanos = 0;
+        for (int i = 0; i < commits; i += 1) {
+            Utils.writeContents(Utils.join(Main.CWD, "f.txt"), "v" + i);
+            Main.main("add", "f.txt");
+            String msg = WORDS[rand.nextInt(WORDS.length)] + " "
+                + WORDS[rand.nextInt(WORDS.length)] + " " + rand.nextInt(100);
+            long t0 = System.nanoTime();
+            Main.main("commit", msg);
+            commitNanos += System.nanoTime() - t0;
+        }
+        String msg = Main.getTree().headCommit().getMsg();
+
+        TreeSet<String> expected = scan(msg);
+        check(expected, MessageIndex.find(msg), "find");
+        long index = time(runs, () -> MessageIndex.find(msg));
+        long old = time(1, () -> scan(msg));
+        long word = time(runs, () -> MessageIndex.findWord("parser"));
+        long grep = time(runs, () -> MessageIndex.grep("parser 4"));
+        check(scan(null), MessageIndex.grep("initial"), "grep");
+
+        System.out.printf("commits=%d matches=%d%n", commits + 1,
+                          expected.size());
+        System.out.printf("  commit:           %.2f ms%n",
+                          commitNanos / 1e6 / commits);
+        System.out.printf("  find (index):     %.3f ms%n", index / 1e6);
+        System.out.printf("  find (scan):      %.1f ms%n", old / 1e6);
+        System.out.printf("  find --word:      %.3f ms%n", word / 1e6);
+        System.out.printf("  find --grep:      %.1f ms%n", grep / 1e6);
+        MessageIndex.rebuild();
+        check(expected, MessageIndex.find(msg), "rebuilt find");
+    }
+
+    /** Returns the ids of the commits with message MSG (the initial
+     *  commit if MSG is null), found as the former find did, by reading
+     *  every commit. */
+    static TreeSet<String> scan(String msg) {
+        TreeSet<String> result = new TreeSet<>();
+        List<String> ids = Utils.plainFilenamesIn(Main.COMMITS);
+        for (String id : ids) {
+            Commit c = Commit.read(Utils.join(Main.COMMITS, id));
+            if (msg == null ? c.getParentID() == null
+                : c.getMsg().equals(msg)) {
+                result.add(id);
+            }
+        }
+        return result;
+    }
+
+    /** Returns the least time, in nanoseconds, that BODY took in RUNS
+     *  runs. */
+    static long time(int runs, Runnable body) {
+        long result = Long.MAX_VALUE;
+        for (int r = 0; r < runs; r += 1) {
+            long t0 = System.nanoTime();
+            body.run();
+            result = Math.min(result, System.nanoTime() - t0);
+        }
+        return result;
+    }
+
+    /** Throw an error unless FOUND, the result of WHAT, is EXPECTED. */
+    static void check(TreeSet<String> expected, TreeSet<String> found,
+                      String what) {
+        if (!expected.equals(found)) {
+            throw new AssertionError(what + " returned wrong commits");
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Formatter;
+import java.util.List;
+
+/** Measures the throughput of global-log on a history of many commits,
+ *  against the former version, which listed and sorted the commit
+ *  directory, created a Formatter for each date, and printed each commit
+ *  through System.out.  Checks that both print the same commits.  Must
+ *  be run in an empty directory; set the number of decoding threads with
+ *  -Dgitlet.threads.
+ *  Usage: java gitlet.GlobalLogBenchmark [COMMITS [RUNS]]
+ *  @author Sasmit Agarwal
+ */
+public class GlobalLogBenchmark {
+
+    /** Run the benchmark with the parameters in ARGS. */
+    public static void main(String... args) throws IOException {
+        int commits = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        PrintStream stdout = System.out;
+
+        Main.main("init");
+        Commit parent = Main.getTree().headCommit();
+        for (int i = 0; i < commits; i += 1) {
+            parent = new Commit("commit number " + i, parent);
+            parent.save(Utils.join(Main.COMMITS, parent.getId()));
+        }
+
+        if (!lines(GlobalLogBenchmark::oldGlobalLog)
+            .equals(lines(Main::globalLog))) {
+            throw new AssertionError("global-log output differs");
+        }
+        long bytes = output(Main::globalLog).length();
+        OutputStream devNull = new FileOutputStream("/dev/null");
+        long old = time(runs, devNull, GlobalLogBenchmark::oldGlobalLog);
+        long now = time(runs, devNull, Main::globalLog);
+        System.setOut(stdout);
+
+        System.out.printf("commits=%d threads=%d output=%,d bytes%n",
+                          commits + 1, Main.THREADS, bytes);
+        System.out.printf("  before: %8.0f ms %10.0f commits/s %6.1f MB/s%n",
+                          old / 1e6, (commits + 1) / (old / 1e9),
+                          bytes / 1e6 / (old / 1e9));
+        System.out.printf("  after:  %8.0f ms %10.0f commits/s %6.1f MB/s%n",
+                          now / 1e6, (commits + 1) / (now / 1e9),
+                          bytes / 1e6 / (now / 1e9));
+    }
+
+    /** The former Main.globalLog. */
+    static void oldGlobalLog() {
+        List<String> x = Utils.plainFilenamesIn(Main.COMMITS);
+        if (x != null && !x.isEmpty()) {
+            for (String y : x) {
+                Commit c = Commit.read(Utils.join(Main.COMMITS, y));
+                Date d = c.getDate();
+                System.out.println("===\n" + "commit " + c.getId() + "\n"
+                                   + "Date: " + new Formatter().format(
+                                       "%ta %tb %td %tT %tY %tz",
+                                       d, d, d, d, d, d) + "\n"
+                                   + c.getMsg() + "\n");
+            }
+        }
+    }
+
+    /** Returns the least time, in nanoseconds, that BODY took in RUNS
+     *  runs, printing to OUT. */
+    static long time(int runs, OutputStream out, Runnable body) {
+        System.setOut(new PrintStream(out, true));
+        long result = Long.MAX_VALUE;
+        for (int r = 0; r < runs; r += 1) {
+            long t0 = System.nanoTime();
+            body.run();
+            result = Math.min(result, System.nanoTime() - t0);
+        }
+        return result;
+    }
+
+    /** Returns what BODY prints. */
+    static String output(Runnable body) {
+        PrintStream stdout = System.out;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(bytes, true));
+        try {
+            body.run();
+        } finally {
+            System.out.flush();
+            System.setOut(stdout);
+        }
+        return bytes.toString();
+    }
+
+    /** Returns the commits printed by BODY, sorted. */
+    static List<String> lines(Runnable body) {
+        String[] result = output(body).split("(?m)^===\n");
+        Arrays.sort(result);
+        return Arrays.asList(result);
+    }
+}
@@ -0,0 +1,167 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/** Measures the fsyncs made per commit through the Journal, against the
+ *  number of files and directories in .gitlet each commit changes, which
+ *  is what making every write durable on its own would sync.  Then checks
+ *  recovery: from a process that died before replacing the commit tree,
+ *  and from a reboot that lost the latest commit, pack index and commit
+ *  tree.  Must be run in an empty directory.
+ *  Usage: java gitlet.JournalBenchmark [COMMITS [FILES]]
+ *  @author Sasmit Agarwal
+ */
+public class JournalBenchmark {
+
+    /** Run the benchmark with the parameters in ARGS. */
+    public static void main(String... args) throws IOException {
+        int commits = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int files = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+
+        Main.main("init");
+        long fsyncs = 0, writes = 0, nanos = 0;
+        for (int c = 0; c < commits; c += 1) {
+            String[] names = new String[files];
+            for (int i = 0; i < files; i += 1) {
+                names[i] = String.format("file%02d.txt", i);
+                Utils.writeContents(Utils.join(Main.CWD, names[i]),
+                                    "version " + c + " of " + i);
+            }
+            Main.main(prepend("add", names));
+            Map<Path, String> before = stat();
+            long f0 = Journal.fsyncs(), t0 = System.nanoTime();
+            Main.main("commit", "commit " + c);
+            nanos += System.nanoTime() - t0;
+            fsyncs += Journal.fsyncs() - f0;
+            writes += changed(before, stat());
+        }
+        System.out.printf("commits=%d files=%d checkpoint every %d%n",
+                          commits, files, Journal.CHECKPOINT_RECORDS);
+        System.out.printf("  commit:                %.2f ms%n",
+                          nanos / 1e6 / commits);
+        System.out.printf("  fsyncs per commit:     %.2f%n",
+                          (double) fsyncs / commits);
+        System.out.printf("  files changed per commit: %.2f%n",
+                          (double) writes / commits);
+
+        output("status");
+        Journal.checkpoint();
+        File tree = Utils.join(Main.CWD, "tree.saved");
+        Files.copy(Main.COMMIT_TREE.toPath(), tree.toPath());
+        commit("after the process died");
+        String expected = output("log");
+        Files.copy(tree.toPath(), Main.COMMIT_TREE.toPath(),
+                   StandardCopyOption.REPLACE_EXISTING);
+        check(expected, output("log"), "process death");
+
+        File index = Utils.join(Main.CWD, "index.saved");
+        output("status");
+        Journal.checkpoint();
+        Files.copy(Main.COMMIT_TREE.toPath(), tree.toPath(),
+                   StandardCopyOption.REPLACE_EXISTING);
+        Files.copy(Main.PACK_INDEX.toPath(), index.toPath());
+        String id = commit("lost in a reboot");
+        expected = output("log");
+        Files.copy(tree.toPath(), Main.COMMIT_TREE.toPath(),
+                   StandardCopyOption.REPLACE_EXISTING);
+        Files.copy(index.toPath(), Main.PACK_INDEX.toPath(),
+                   StandardCopyOption.REPLACE_EXISTING);
+        Files.delete(Utils.join(Main.COMMITS, id).toPath());
+        Files.delete(Main.COMMIT_GRAPH.toPath());
+        reboot();
+        check(expected, output("log"), "reboot");
+        File file = Utils.join(Main.CWD, "file00.txt");
+        Utils.writeContents(file, "junk");
+        check("lost in a reboot", output("checkout", "--", "file00.txt")
+              + Utils.readContentsAsString(file), "checkout after reboot");
+        System.out.println("  recovery: ok");
+    }
+
+    /** Returns ARGS preceded by FIRST. */
+    static String[] prepend(String first, String... args) {
+        return Stream.concat(Stream.of(first), Stream.of(args))
+            .toArray(String[]::new);
+    }
+
+    /** Commit MSG, written to file00.txt, with message MSG, and return
+     *  the new head. */
+    static String commit(String msg) {
+        Utils.writeContents(Utils.join(Main.CWD, "file00.txt"), msg);
+        Main.main("add", "file00.txt");
+        Main.main("commit", msg);
+        return Main.getTree().headCommitID();
+    }
+
+    /** Returns what ARGS print, run as a new process would run them. */
+    static String output(String... args) {
+        Daemon.reset();
+        PrintStream stdout = System.out;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(out));
+        try {
+            Main.main(args);
+        } finally {
+            System.setOut(stdout);
+        }
+        return out.toString();
+    }
+
+    /** Make the journal look as if it was started in another boot. */
+    static void reboot() throws IOException {
+        byte[] journal = Utils.readContents(Main.JOURNAL);
+        DataInputStream in =
+            new DataInputStream(new ByteArrayInputStream(journal));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(in.readInt());
+        out.writeByte(in.readUnsignedByte());
+        Codec.readString(in);
+        Codec.writeString(out, "another boot");
+        in.transferTo(out);
+        Utils.writeContents(Main.JOURNAL, bytes.toByteArray());
+    }
+
+    /** Returns the modification time, size and file key of each file and
+     *  directory in .gitlet. */
+    static Map<Path, String> stat() throws IOException {
+        HashMap<Path, String> result = new HashMap<>();
+        try (Stream<Path> paths = Files.walk(Main.GITLET_FOLDER.toPath())) {
+            for (Path p : (Iterable<Path>) paths::iterator) {
+                BasicFileAttributes attrs =
+                    Files.readAttributes(p, BasicFileAttributes.class);
+                result.put(p, attrs.lastModifiedTime() + " " + attrs.size()
+                           + " " + attrs.fileKey());
+            }
+        }
+        return result;
+    }
+
+    /** Returns the number of paths in AFTER that are not in BEFORE or
+     *  differ from it. */
+    static long changed(Map<Path, String> before, Map<Path, String> after) {
+        return after.entrySet().stream()
+            .filter(e -> !e.getValue().equals(before.get(e.getKey())))
+            .count();
+    }
+
+    /** Throw an error unless FOUND, the output after WHAT, is
+     *  EXPECTED. */
+    static void check(String expected, String found, String what) {
+        if (!expected.equals(found)) {
+            throw new AssertionError("wrong output after " + what);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package gitlet;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/** Builds a repository with RepositoryGenerator, then replays a seeded
+ *  mix of commands on it through Main in this process, as a daemon
+ *  would run them, and reports the percentile latencies and throughput
+ *  of each command.  Each commit is preceded by an edit to one tracked
+ *  file and an add of it, reported separately; checkout and merge pick
+ *  a branch other than the current one, adding a branch first if the
+ *  history has only one.  Commands that end in an error message, such
+ *  as merging an ancestor, are counted and timed with the rest.  The
+ *  first fifth of the commands is a warm-up and is not reported.  Must
+ *  be run in an empty directory.
+ *  Usage: java gitlet.MacroBenchmark [SHAPE [COMMITS [FILES [SIZE [RUNS]]]]]
+ *  @author Sasmit Agarwal
+ */
+public class MacroBenchmark {
+
+    /** Seed for the choice of commands and their arguments. */
+    static final long SEED = 61;
+    /** Commands replayed, in the order reported. */
+    static final String[] COMMANDS = {
+        "status", "log", "add", "commit", "checkout", "merge",
+    };
+    /** Relative frequency of each command in COMMANDS, with add and
+     *  commit run together. */
+    static final int[] WEIGHTS = {30, 20, 0, 30, 12, 8};
+
+    /** Run the benchmark with the parameters in ARGS. */
+    public static void main(String... args) {
+        String shape = args.length > 0 ? args[0] : "linear";
+        int commits = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+        int files = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        int size = args.length > 3 ? Integer.parseInt(args[3]) : 4096;
+        int runs = args.length > 4 ? Integer.parseInt(args[4]) : 2000;
+
+        long t0 = System.nanoTime();
+        RepositoryGenerator.generate(shape, commits, files, size);
+        double seconds = (System.nanoTime() - t0) / 1e9;
+        System.out.printf("%s: %d commits of %d files of %d bytes"
+                          + " generated in %.1f s (%.0f commits/s)%n",
+                          shape, commits, files, size, seconds,
+                          commits / seconds);
+        if (Repository.tree().getBranchToCommit().size() == 1) {
+            Main.main("branch", "other");
+        }
+
+        Main.resident = true;
+        MacroBenchmark bench = new MacroBenchmark(files);
+        bench.replay(runs / 5);
+        bench.times.clear();
+        bench.errors.clear();
+        t0 = System.nanoTime();
+        bench.replay(runs);
+        seconds = (System.nanoTime() - t0) / 1e9;
+        bench.report();
+        System.out.printf("%d commands in %.1f s: %.1f commands/s%n",
+                          runs, seconds, runs / seconds);
+    }
+
+    /** A replayer of commands on a repository of FILES files. */
+    MacroBenchmark(int files) {
+        this.files = files;
+    }
+
+    /** Replay RUNS commands drawn from the mix. */
+    void replay(int runs) {
+        int total = Arrays.stream(WEIGHTS).sum();
+        for (int r = 0; r < runs; r += 1) {
+            int w = rand.nextInt(total), k = 0;
+            while (w >= WEIGHTS[k]) {
+                w -= WEIGHTS[k];
+                k += 1;
+            }
+            switch (COMMANDS[k]) {
+            case "commit":
+                String name = RepositoryGenerator.name(rand.nextInt(files));
+                File f = Utils.join(Main.CWD, name);
+                Utils.writeContents(f, Utils.readContents(f),
+                                    "edit " + r + "\n");
+                run("add", name);
+                run("commit", "edit " + r + " to " + name);
+                break;
+            case "checkout":
+            case "merge":
+                run(COMMANDS[k], otherBranch());
+                break;
+            default:
+                run(COMMANDS[k]);
+                break;
+            }
+        }
+    }
+
+    /** Run the command ARGS, discarding its output, and record its time
+     *  and whether it ended in an error. */
+    void run(String... args) {
+        PrintStream stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        long t0 = System.nanoTime();
+        try {
+            Main.main(args);
+        } catch (Daemon.Exit excp) {
+            errors.merge(args[0], 1, Integer::sum);
+        } finally {
+            long t = System.nanoTime() - t0;
+            System.setOut(stdout);
+            times.computeIfAbsent(args[0], k -> new ArrayList<>()).add(t);
+        }
+    }
+
+    /** Returns a random branch other than the active one. */
+    String otherBranch() {
+        CommitTree tree = Repository.tree();
+        List<String> names =
+            new ArrayList<>(tree.getBranchToCommit().keySet());
+        names.remove(tree.getActiveBranch());
+        names.sort(null);
+        return names.get(rand.nextInt(names.size()));
+    }
+
+    /** Print the number of runs and errors, percentile latencies and
+     *  throughput of each command. */
+    void report() {
+        System.out.printf("%-9s %6s %6s %9s %9s %9s %9s %10s%n", "command",
+                          "runs", "errors", "p50 ms", "p90 ms", "p99 ms",
+                          "max ms", "ops/s");
+        for (String command : COMMANDS) {
+            List<Long> list = times.get(command);
+            if (list == null) {
+                continue;
+            }
+            long[] t = list.stream().mapToLong(Long::longValue).sorted()
+                .toArray();
+            System.out.printf("%-9s %6d %6d %9.2f %9.2f %9.2f %9.2f %10.1f%n",
+                              command, t.length,
+                              errors.getOrDefault(command, 0),
+                              percentile(t, 0.5) / 1e6,
+                              percentile(t, 0.9) / 1e6,
+                              percentile(t, 0.99) / 1e6,
+                              t[t.length - 1] / 1e6,
+                              t.length / (Arrays.stream(t).sum() / 1e9));
+        }
+    }
+
+    /** Returns the Qth quantile of SORTED, by the nearest-rank method. */
+    static long percentile(long[] sorted, double q) {
+        int rank = (int) Math.ceil(q * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    /** Number of tracked files. */
+    private final int files;
+    /** Source of the commands and their arguments. */
+    private final Random rand = new Random(SEED);
+    /** Times of the runs of each command, in nanoseconds. */
+    private final Map<String, List<Long>> times = new LinkedHashMap<>();
+    /** Number of runs of each command that ended in an error. */
+    private final Map<String, Integer> errors = new LinkedHashMap<>();
+}
@@ -0,0 +1,187 @@
+package gitlet;
+
+import java.util.BitSet;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+
+/** Compares CommitGraph.mergeBases, which paints the commit graph, with
+ *  the breadth-first search that Main.lca used before it, with
+ *  Reachability.mergeBases, which works on reachability bitmaps, and with
+ *  Main.mergeBases, which Main.lca uses now and which paints until that
+ *  grows long and then turns to the bitmaps.  The histories are
+ *  synthetic commits of the empty tree, descended from the initial
+ *  commit and written straight into Main.COMMITS and the commit graph.
+ *  Bitmaps are stored for both tips first, as they are for branch heads
+ *  at the end of a command.  Must be run in an empty directory.
+ *  Usage: java gitlet.MergeBaseBenchmark [DEPTH [RUNS]]
+ *  @author Sasmit Agarwal
+ */
+public class MergeBaseBenchmark {
+
+    /** Run the benchmark with the parameters in ARGS. */
+    public static void main(String... args) {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        Main.COMMITS.mkdirs();
+        INITIAL.save(Utils.join(Main.COMMITS, INITIAL.getId()));
+
+        System.out.printf("%-14s %8s %6s %10s %10s %10s %10s%n", "history",
+                          "commits", "bases", "bfs ms", "paint ms",
+                          "bitmap ms", "lca ms");
+
+        String trunk = chain("deep", null, depth);
+        measure("deep-recent", depth, runs,
+                chain("deep-a", trunk, 1), chain("deep-b", trunk, 1));
+
+        String root = chain("split", null, 1);
+        measure("deep-early", depth, runs,
+                chain("split-a", root, depth / 2),
+                chain("split-b", root, depth / 2));
+
+        int rungs = depth / 10;
+        String[] tips = crissCross("criss", rungs);
+        measure("criss-cross", 2 * rungs, runs, tips[0], tips[1]);
+
+        String[] bushy = bushy("bushy", depth / 10, 8);
+        measure("bushy", depth / 10 * 9, runs, bushy[0], bushy[1]);
+    }
+
+    /** Print the mean time over RUNS runs of each algorithm, after as
+     *  many warm-up runs, on the commits A and B of the history NAME,
+     *  which has COMMITS commits. */
+    static void measure(String name, int commits, int runs,
+                        String a, String b) {
+        int pa = CommitGraph.position(a), pb = CommitGraph.position(b);
+        Reachability.store(pa);
+        Reachability.store(pb);
+        List<Integer> bases = CommitGraph.mergeBases(pa, pb);
+        int old = bfs(pa, pb);
+        if (!bases.contains(old)) {
+            System.out.printf("%s: bfs found %d, not among %s%n",
+                              name, old, bases);
+        }
+        if (!bases.equals(Reachability.mergeBases(pa, pb))
+            || !bases.equals(Main.mergeBases(pa, pb))) {
+            System.out.printf("%s: bitmaps found %s and lca %s, not %s%n",
+                              name, Reachability.mergeBases(pa, pb),
+                              Main.mergeBases(pa, pb), bases);
+        }
+        for (int r = 0; r < runs; r += 1) {
+            bfs(pa, pb);
+            CommitGraph.mergeBases(pa, pb);
+            Reachability.mergeBases(pa, pb);
+            Main.mergeBases(pa, pb);
+        }
+        long t0 = System.nanoTime();
+        for (int r = 0; r < runs; r += 1) {
+            bfs(pa, pb);
+        }
+        long t1 = System.nanoTime();
+        for (int r = 0; r < runs; r += 1) {
+            CommitGraph.mergeBases(pa, pb);
+        }
+        long t2 = System.nanoTime();
+        for (int r = 0; r < runs; r += 1) {
+            Reachability.mergeBases(pa, pb);
+        }
+        long t3 = System.nanoTime();
+        for (int r = 0; r < runs; r += 1) {
+            Main.mergeBases(pa, pb);
+        }
+        long t4 = System.nanoTime();
+        System.out.printf("%-14s %8d %6d %10.3f %10.3f %10.3f %10.3f%n",
+                          name, commits, bases.size(),
+                          (t1 - t0) / 1e6 / runs, (t2 - t1) / 1e6 / runs,
+                          (t3 - t2) / 1e6 / runs, (t4 - t3) / 1e6 / runs);
+    }
+
+    /** Returns the position of the first ancestor of CURR, in
+     *  breadth-first order, that is also an ancestor of GIVEN: the former
+     *  Main.lca. */
+    static int bfs(int curr, int given) {
+        LinkedList<Integer> q = new LinkedList<>();
+        BitSet ancestors = new BitSet();
+        q.add(given);
+        while (!q.isEmpty()) {
+            int c = q.poll();
+            if (c == CommitGraph.NONE || ancestors.get(c)) {
+                continue;
+            }
+            ancestors.set(c);
+            q.add(CommitGraph.parent(c));
+            q.add(CommitGraph.mergeParent(c));
+        }
+        BitSet seen = new BitSet();
+        q.add(curr);
+        while (!q.isEmpty()) {
+            int c = q.poll();
+            if (c == CommitGraph.NONE || seen.get(c)) {
+                continue;
+            }
+            if (ancestors.get(c)) {
+                return c;
+            }
+            seen.set(c);
+            q.add(CommitGraph.parent(c));
+            q.add(CommitGraph.mergeParent(c));
+        }
+        return curr;
+    }
+
+    /** Add LENGTH commits named NAME-0, NAME-1, ... in a line below PARENT
+     *  (null for a new root) and return the id of the last. */
+    static String chain(String name, String parent, int length) {
+        for (int i = 0; i < length; i += 1) {
+            parent = commit(name + "-" + i, parent, null);
+        }
+        return parent;
+    }
+
+    /** Add two branches of RUNGS commits each that merge one another at
+     *  every step, and return their tips. */
+    static String[] crissCross(String name, int rungs) {
+        String root = commit(name, null, null);
+        String a = commit(name + "-a0", root, null),
+            b = commit(name + "-b0", root, null);
+        for (int i = 1; i < rungs; i += 1) {
+            String a1 = commit(name + "-a" + i, a, b);
+            b = commit(name + "-b" + i, b, a);
+            a = a1;
+        }
+        return new String[] {a, b};
+    }
+
+    /** Add a trunk of LENGTH commits, each merging in a side branch of
+     *  WIDTH commits forked from the trunk WIDTH steps earlier, and return
+     *  the trunk tip and the tip of a branch forked from near its root. */
+    static String[] bushy(String name, int length, int width) {
+        String[] trunk = new String[length];
+        trunk[0] = commit(name, null, null);
+        for (int i = 1; i < length; i += 1) {
+            String side = chain(name + "-side" + i,
+                                trunk[Math.max(0, i - width)], width);
+            trunk[i] = commit(name + "-" + i, trunk[i - 1], side);
+        }
+        return new String[] {trunk[length - 1],
+                             chain(name + "-old", trunk[1], 1)};
+    }
+
+    /** Add a commit named NAME with the given PARENT (the initial commit
+     *  if null) and MERGEPARENT, and return its id. */
+    static String commit(String name, String parent, String mergeParent) {
+        Commit c = new Commit(name, new Date(0),
+                              parent == null ? INITIAL : COMMITS.get(parent),
+                              COMMITS.get(mergeParent), FileTree.EMPTY);
+        c.save(Utils.join(Main.COMMITS, c.getId()));
+        CommitGraph.add(c);
+        COMMITS.put(c.getId(), c);
+        return c.getId();
+    }
+
+    /** The initial commit. */
+    static final Commit INITIAL = new Commit();
+    /** The commits added, by id. */
+    static final HashMap<String, Commit> COMMITS = new HashMap<>();
+}
@@ -0,0 +1,109 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Objects;
+import java.util.Random;
+
+/** Compares "log -- NAME", which skips the commits whose changed-path
+ *  filters rule NAME out, with the walk it replaces, which reads every
+ *  commit of the first-parent history and its parent's blob id for NAME.
+ *  Builds a linear history with RepositoryGenerator, each commit changing
+ *  one to three files, then for a sample of files checks that both print
+ *  the same commits and reports their times, the commits each reads, and
+ *  the rate at which the filters said "maybe" for a commit that had not
+ *  changed the file.  In-memory caches are cleared before each timed run.
+ *  Also times building the filters of the whole history from scratch, as
+ *  the first "log -- NAME" in a repository made before them does.  Must
+ *  be run in an empty directory.
+ *  Usage: java gitlet.PathLogBenchmark [COMMITS [FILES [PATHS]]]
+ *  @author Sasmit Agarwal
+ */
+public class PathLogBenchmark {
+
+    /** Seed for the choice of files. */
+    static final long SEED = 61;
+
+    /** Run the benchmark with the parameters in ARGS. */
+    public static void main(String... args) {
+        int commits = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int files = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int paths = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+
+        RepositoryGenerator.generate("linear", commits, files, 1024);
+        int head = CommitGraph.position(Repository.tree().headCommitID());
+
+        Daemon.reset();
+        Main.PATH_FILTERS.delete();
+        long t0 = System.nanoTime();
+        PathFilter.mayHaveChanged(head, RepositoryGenerator.name(0));
+        System.out.printf("commits=%d files=%d: filters built in %.1f ms"
+                          + " (%d bytes)%n", commits, files,
+                          (System.nanoTime() - t0) / 1e6,
+                          Main.PATH_FILTERS.length());
+
+        Random rand = new Random(SEED);
+        long filtered = 0, full = 0, maybes = 0, changes = 0, walked = 0;
+        for (int k = 0; k < paths; k += 1) {
+            String name = RepositoryGenerator.name(rand.nextInt(files));
+            Daemon.reset();
+            t0 = System.nanoTime();
+            String expected = walk(name);
+            full += System.nanoTime() - t0;
+
+            Daemon.reset();
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            PrintStream stdout = System.out;
+            System.setOut(new PrintStream(bytes));
+            t0 = System.nanoTime();
+            try {
+                Main.log(name);
+            } finally {
+                filtered += System.nanoTime() - t0;
+                System.setOut(stdout);
+            }
+            if (!bytes.toString().equals(expected)) {
+                throw new IllegalStateException("log -- " + name
+                                                 + " differs from the walk");
+            }
+
+            for (int c = head; c != CommitGraph.NONE;
+                 c = CommitGraph.parent(c)) {
+                walked += 1;
+                if (PathFilter.mayHaveChanged(c, name)) {
+                    maybes += 1;
+                }
+            }
+            changes += expected.split("===", -1).length - 1;
+        }
+        System.out.printf("%d paths, %d commits walked, %d changes%n",
+                          paths, walked, changes);
+        System.out.printf("  full walk:      %9.2f ms/path %9d commits"
+                          + " read%n", full / 1e6 / paths, 2 * walked);
+        System.out.printf("  filtered log:   %9.2f ms/path %9d commits"
+                          + " read%n", filtered / 1e6 / paths, 2 * maybes);
+        System.out.printf("  false positives: %.2f%% of commits that did"
+                          + " not change the path%n",
+                          100.0 * (maybes - changes) / (walked - changes));
+    }
+
+    /** Returns what log -- NAME prints, found by reading every commit of
+     *  the first-parent history of the head and that of its parent. */
+    static String walk(String name) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(bytes);
+        int c = CommitGraph.position(Repository.tree().headCommitID());
+        while (c != CommitGraph.NONE) {
+            int p = CommitGraph.parent(c);
+            Commit commit = CommitGraph.commit(c);
+            String before = p == CommitGraph.NONE ? null
+                : CommitGraph.commit(p).getBlobID(name);
+            if (!Objects.equals(commit.getBlobID(name), before)) {
+                out.println(commit);
+            }
+            c = p;
+        }
+        out.flush();
+        return bytes.toString();
+    }
+}
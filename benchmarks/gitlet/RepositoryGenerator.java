@@ -0,0 +1,234 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+/** Builds a synthetic repository in the current directory by writing
+ *  blobs, trees and commits straight into .gitlet, without the stage,
+ *  so that a history of 100k commits takes minutes rather than 100k
+ *  runs of Main.  The first commit adds FILES files of about SIZE bytes
+ *  of random lines; each later commit edits a line in one to three of
+ *  them, so that blobs are delta-compressed as they are when committed
+ *  through Main.  The working directory is left checked out at the
+ *  head of master.  The SHAPE of the history is one of
+ *    linear:   one branch;
+ *    branches: commits spread at random over 32 branches;
+ *    merges:   8 branches, every fourth commit merging another branch,
+ *              taking its version of a few of the files that differ;
+ *    hot:      one branch, four in five edits to the first twentieth of
+ *              the files;
+ *    longtail: one branch, file sizes drawn from a Pareto distribution
+ *              of mean SIZE, so that a few files are very large.
+ *  Must be run in an empty directory.
+ *  Usage: java gitlet.RepositoryGenerator
+ *             [SHAPE [COMMITS [FILES [SIZE]]]]
+ *  @author Sasmit Agarwal
+ */
+public class RepositoryGenerator {
+
+    /** Seed for all random data. */
+    static final long SEED = 61;
+    /** Number of commits written between flushes of the pack and commit
+     *  tree. */
+    static final int FLUSH_EVERY = 1000;
+    /** The most files edited by one commit. */
+    static final int MAX_EDITS = 3;
+
+    /** Build the repository described by ARGS and report the time
+     *  taken. */
+    public static void main(String... args) {
+        String shape = args.length > 0 ? args[0] : "linear";
+        int commits = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+        int files = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        int size = args.length > 3 ? Integer.parseInt(args[3]) : 4096;
+        long t0 = System.nanoTime();
+        generate(shape, commits, files, size);
+        double seconds = (System.nanoTime() - t0) / 1e9;
+        System.out.printf("%s: %d commits of %d files in %.1f s"
+                          + " (%.0f commits/s)%n", shape, commits, files,
+                          seconds, commits / seconds);
+    }
+
+    /** Initialize a repository in the current directory and write a
+     *  history of the given SHAPE with COMMITS commits, counting the
+     *  initial one, of FILES files of about SIZE bytes. */
+    static void generate(String shape, int commits, int files, int size) {
+        int branches = 1, mergeEvery = 0;
+        switch (shape) {
+        case "linear":
+        case "hot":
+        case "longtail":
+            break;
+        case "branches":
+            branches = 32;
+            break;
+        case "merges":
+            branches = 8;
+            mergeEvery = 4;
+            break;
+        default:
+            throw new IllegalArgumentException("unknown shape " + shape);
+        }
+        new RepositoryGenerator(shape, files, size)
+            .write(commits, branches, mergeEvery);
+    }
+
+    /** A generator of a history of SHAPE over FILES files of about
+     *  SIZE bytes. */
+    RepositoryGenerator(String shape, int files, int size) {
+        this.files = files;
+        this.size = size;
+        hot = shape.equals("hot");
+        longTail = shape.equals("longtail");
+    }
+
+    /** Write COMMITS commits over BRANCHES branches, every MERGEEVERY-th
+     *  a merge (none if 0). */
+    void write(int commits, int branches, int mergeEvery) {
+        Main.main("init");
+        CommitTree tree = Repository.tree();
+        Commit[] heads = new Commit[branches];
+        heads[0] = tree.headCommit();
+
+        TreeMap<String, String> all = new TreeMap<>();
+        for (int i = 0; i < files; i += 1) {
+            all.put(name(i), store(name(i), text(fileSize()), null));
+        }
+        heads[0] = commit(tree, "master", "add " + files + " files",
+                          heads[0], null, all);
+        String[] names = new String[branches];
+        names[0] = "master";
+        for (int b = 1; b < branches; b += 1) {
+            names[b] = "branch" + b;
+            heads[b] = heads[0];
+            tree.record(names[b], heads[0]);
+        }
+
+        for (int c = 2; c < commits; c += 1) {
+            int b = rand.nextInt(branches);
+            Commit parent = heads[b], other = null;
+            TreeMap<String, String> changes = new TreeMap<>();
+            if (mergeEvery > 0 && c % mergeEvery == 0 && branches > 1) {
+                other = heads[(b + 1 + rand.nextInt(branches - 1))
+                              % branches];
+                List<String> differ = new ArrayList<>(FileTree.diff(
+                    parent.getTreeID(), other.getTreeID()).keySet());
+                for (int k = 0; k < MAX_EDITS && !differ.isEmpty(); k += 1) {
+                    String f = differ.remove(rand.nextInt(differ.size()));
+                    changes.put(f, other.getBlobID(f));
+                }
+            }
+            for (int k = 1 + rand.nextInt(MAX_EDITS); k > 0; k -= 1) {
+                String f = name(pick());
+                String blob = changes.getOrDefault(f, parent.getBlobID(f));
+                changes.put(f, store(f, edit(Main.getBlob(blob)), blob));
+            }
+            heads[b] = commit(tree, names[b], "commit " + c + " on "
+                              + names[b], parent, other, changes);
+            if (c % FLUSH_EVERY == 0) {
+                Repository.setTree(tree);
+                Main.flush();
+                tree = Repository.tree();
+            }
+        }
+        Repository.setTree(tree);
+        Main.flush();
+        Main.checkoutCommit(heads[0]);
+        Main.flush();
+    }
+
+    /** Store and return the commit MSG on BRANCH of TREE, whose parents
+     *  are PARENT and OTHER (null unless a merge) and whose files are
+     *  those of PARENT with CHANGES. */
+    Commit commit(CommitTree tree, String branch, String msg, Commit parent,
+                  Commit other, Map<String, String> changes) {
+        date += DATE_STEP;
+        Commit c = new Commit(msg, new Date(date), parent, other,
+                              FileTree.update(parent.getTreeID(), changes));
+        tree.record(branch, c);
+        return c;
+    }
+
+    /** Store CONTENTS as the new version of the file NAME, whose previous
+     *  version was BASE (null if none), and return its blob id. */
+    String store(String name, byte[] contents, String base) {
+        if (contents.length > Pack.LARGE_OBJECT) {
+            File tmp = Utils.join(Main.GITLET_FOLDER, "generated.tmp");
+            Utils.writeContents(tmp, contents);
+            String id = Pack.write(name, tmp);
+            tmp.delete();
+            return id;
+        }
+        String id = Utils.sha1(name, contents);
+        Pack.write(id, contents, base);
+        return id;
+    }
+
+    /** Returns the number of a file to edit: in a hot history, four
+     *  times in five one of the first twentieth of the files. */
+    int pick() {
+        if (hot && rand.nextInt(5) != 0) {
+            return rand.nextInt(Math.max(1, files / 20));
+        }
+        return rand.nextInt(files);
+    }
+
+    /** Returns the size of a new file: SIZE, or, for a long tail, drawn
+     *  from a Pareto distribution of shape 1.5 with mean SIZE, capped at
+     *  256 times SIZE. */
+    int fileSize() {
+        if (!longTail) {
+            return size;
+        }
+        double x = size / 3.0 / Math.pow(1 - rand.nextDouble(), 1 / 1.5);
+        return (int) Math.min(x, 256.0 * size);
+    }
+
+    /** Returns about N bytes of random lines. */
+    byte[] text(int n) {
+        StringBuilder result = new StringBuilder();
+        while (result.length() < n) {
+            result.append(line()).append('\n');
+        }
+        return result.toString().getBytes();
+    }
+
+    /** Returns CONTENTS with one random line replaced. */
+    byte[] edit(byte[] contents) {
+        String[] lines = new String(contents).split("\n", -1);
+        lines[rand.nextInt(Math.max(1, lines.length - 1))] = line();
+        return String.join("\n", lines).getBytes();
+    }
+
+    /** Returns a random line resembling source code. */
+    String line() {
+        return "    int x" + rand.nextInt(1 << 30) + " = "
+            + rand.nextInt(1000) + ";";
+    }
+
+    /** Returns the name of file number I. */
+    static String name(int i) {
+        return String.format("dir%02d.file%05d.txt", i % 37, i);
+    }
+
+    /** Milliseconds between the dates of successive commits. */
+    static final long DATE_STEP = 60_000;
+
+    /** Number of files in the history. */
+    private final int files;
+    /** Size, or mean size, of a file. */
+    private final int size;
+    /** True iff edits favour a few hot files. */
+    private final boolean hot;
+    /** True iff file sizes have a long tail. */
+    private final boolean longTail;
+    /** Source of all random choices and text. */
+    private final Random rand = new Random(SEED);
+    /** Date of the last commit written, in milliseconds. */
+    private long date = 1_600_000_000_000L;
+}
@@ -0,0 +1,65 @@
+package gitlet;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Measures Main.checkoutCommit moving between two commits of FILES
+ *  files that differ in a fraction CHANGED of them, so that each call
+ *  rewrites those files and checks the rest against the stat cache.
+ *  @author Sasmit Agarwal
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CheckoutBench {
+
+    /** Number of files in each commit. */
+    @Param({"1000", "10000"})
+    int files;
+
+    /** Fraction of the files that differ between the commits. */
+    @Param({"0.01", "1"})
+    double changed;
+
+    /** The two commits, checked out in turn. */
+    Commit[] commits = new Commit[2];
+
+    /** Index in COMMITS of the commit checked out. */
+    int current;
+
+    /** Build the two commits; the second is left checked out. */
+    @Setup
+    public void setUp() throws IOException {
+        Fixtures.init();
+        commits[0] = Fixtures.commit("first", files, i -> "v0 " + i);
+        int stride = (int) Math.round(1 / changed);
+        commits[1] = Fixtures.commit("second", files,
+            i -> (i % stride == 0 ? "v1 " : "v0 ") + i);
+        current = 1;
+    }
+
+    /** Check out the commit not checked out, and make it the head. */
+    @Benchmark
+    public void checkoutCommit() {
+        current ^= 1;
+        Commit c = commits[current];
+        Main.checkoutCommit(c);
+        CommitTree tree = Repository.tree();
+        tree.getBranchToCommit().put(tree.getActiveBranch(), c.getId());
+    }
+}
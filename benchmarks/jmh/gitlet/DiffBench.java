@@ -0,0 +1,79 @@
+package gitlet;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Measures Diff.lls and Diff.diffs, with each algorithm, on synthetic
+ *  files of several sizes and edit densities.  Each call starts from
+ *  new sequences, so nothing computed by the one before is reused.
+ *  @author Sasmit Agarwal
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DiffBench {
+
+    /** A pair of files compared. */
+    @State(Scope.Benchmark)
+    public static class Texts {
+        /** Number of lines in the first file. */
+        @Param({"1000", "10000"})
+        int lines;
+
+        /** Fraction of its lines edited to make the second. */
+        @Param({"0.01", "0.1"})
+        double density;
+
+        /** The files compared. */
+        List<String> a, b;
+
+        /** Draw the files. */
+        @Setup
+        public void setUp() {
+            Random rand = Fixtures.random(lines);
+            a = Fixtures.text(rand, lines);
+            b = Fixtures.edit(rand, a, density);
+        }
+    }
+
+    /** The algorithm used by diffs. */
+    @State(Scope.Benchmark)
+    public static class Algorithm {
+        /** The algorithm. */
+        @Param({"MYERS", "HISTOGRAM"})
+        Diff.Algorithm algorithm;
+    }
+
+    /** Returns the length of a longest common subsequence of FILES. */
+    @Benchmark
+    public int lls(Texts files) {
+        Diff diff = new Diff();
+        diff.setSequences(files.a, files.b);
+        return diff.lls();
+    }
+
+    /** Returns the edits converting the first of FILES to the second,
+     *  found by ALG. */
+    @Benchmark
+    public int[] diffs(Texts files, Algorithm alg) {
+        Diff diff = new Diff();
+        diff.setAlgorithm(alg.algorithm);
+        diff.setSequences(files.a, files.b);
+        return diff.diffs();
+    }
+}
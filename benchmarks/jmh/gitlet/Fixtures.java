@@ -0,0 +1,172 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.IntFunction;
+import java.util.stream.Stream;
+
+/** Fixtures shared by the JMH benchmarks: seeded random text, and
+ *  repositories built in the working directory, which Main requires.
+ *  The jmh target of benchmarks/Makefile runs every fork in a new
+ *  temporary directory, and each repository fixture first clears what
+ *  the one before it left there.
+ *  @author Sasmit Agarwal
+ */
+class Fixtures {
+
+    /** Seed for all random data. */
+    static final long SEED = 61;
+
+    /** Marks a working directory holding a fixture, which may be
+     *  cleared. */
+    static final File MARKER = Utils.join(Main.CWD, ".jmh-fixture");
+
+    /** Returns a Random seeded with SEED and SALT, so that each fixture
+     *  draws the same data on every run. */
+    static Random random(long salt) {
+        return new Random(SEED * 31 + salt);
+    }
+
+    /** Returns SIZE random bytes drawn from RAND. */
+    static byte[] bytes(Random rand, int size) {
+        byte[] result = new byte[size];
+        rand.nextBytes(result);
+        return result;
+    }
+
+    /** Returns SIZE random lines drawn from RAND, resembling source code:
+     *  a tenth are braces or blank. */
+    static List<String> text(Random rand, int size) {
+        ArrayList<String> result = new ArrayList<>();
+        for (int i = 0; i < size; i += 1) {
+            result.add(line(rand));
+        }
+        return result;
+    }
+
+    /** Returns a random line drawn from RAND. */
+    static String line(Random rand) {
+        int kind = rand.nextInt(20);
+        if (kind == 0) {
+            return "";
+        } else if (kind == 1) {
+            return "    }";
+        }
+        return "    int x" + rand.nextInt(1 << 30) + " = "
+            + rand.nextInt(1000) + ";";
+    }
+
+    /** Returns A with about DENSITY of its lines replaced, deleted, or
+     *  preceded by new lines, chosen by RAND. */
+    static List<String> edit(Random rand, List<String> a, double density) {
+        ArrayList<String> result = new ArrayList<>();
+        for (String s : a) {
+            if (rand.nextDouble() >= density) {
+                result.add(s);
+                continue;
+            }
+            switch (rand.nextInt(3)) {
+            case 0:
+                result.add(line(rand));
+                break;
+            case 1:
+                break;
+            default:
+                result.add(line(rand));
+                result.add(s);
+                break;
+            }
+        }
+        return result;
+    }
+
+    /** Clear the working directory and initialize an empty repository
+     *  in it, forgetting anything cached from a previous fixture.  Throws
+     *  IllegalStateException, having touched nothing, if the directory
+     *  holds anything but an earlier fixture. */
+    static void init() throws IOException {
+        Path cwd = Main.CWD.toPath();
+        try (Stream<Path> files = Files.list(cwd)) {
+            if (!MARKER.exists() && files.findAny().isPresent()) {
+                throw new IllegalStateException(
+                    "JMH benchmarks must be run in an empty directory");
+            }
+        }
+        try (Stream<Path> files = Files.walk(cwd)) {
+            for (Path p : (Iterable<Path>) files
+                     .sorted(Comparator.reverseOrder())::iterator) {
+                if (!p.equals(cwd)) {
+                    Files.delete(p);
+                }
+            }
+        }
+        Daemon.reset();
+        Utils.writeContents(MARKER, "");
+        Main.main("init");
+    }
+
+    /** Returns the name of file number I of a fixture, spread over 37
+     *  directory-like prefixes as in CodecBenchmark. */
+    static String name(int i) {
+        return String.format("dir%02d.file%05d.txt", i % 37, i);
+    }
+
+    /** Write, add and commit with message MSG the files numbered in
+     *  [0, FILES) whose contents CONTENTS gives, and return the new
+     *  head. */
+    static Commit commit(String msg, int files,
+                         IntFunction<String> contents) {
+        for (int i = 0; i < files; i += 1) {
+            Utils.writeContents(Utils.join(Main.CWD, name(i)),
+                                contents.apply(i));
+        }
+        Main.main("add", "*.txt");
+        Main.main("commit", msg);
+        return Repository.head();
+    }
+
+    /** Store and return a commit named NAME, with no files, whose parents
+     *  are the commits PARENT and MERGEPARENT (either may be null),
+     *  without going through the stage, so that large histories are
+     *  quick to build. */
+    static Commit commit(String name, Commit parent, Commit mergeParent) {
+        int depth = 0;
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(Commit.MAGIC);
+            out.writeByte(Commit.VERSION);
+            out.writeLong(SEED);
+            Codec.writeString(out, name);
+            Codec.writeId(out, Utils.sha1(name));
+            out.writeByte((parent == null ? 0 : 1)
+                          | (mergeParent == null ? 0 : 2));
+            if (parent != null) {
+                Codec.writeId(out, parent.getId());
+                depth = parent.getDepth() + 1;
+            }
+            if (mergeParent != null) {
+                Codec.writeId(out, mergeParent.getId());
+                depth = Math.max(depth, mergeParent.getDepth() + 1);
+            }
+            Codec.writeVarint(out, depth);
+            Codec.writeId(out, FileTree.EMPTY);
+            Commit result =
+                Commit.read(new ByteArrayInputStream(bytes.toByteArray()));
+            result.save(Utils.join(Main.COMMITS, result.getId()));
+            CommitGraph.add(result);
+            return result;
+        } catch (IOException | ClassNotFoundException excp) {
+            throw new IllegalStateException(excp);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package gitlet;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Measures Main.lca on histories of about COMMITS commits of three
+ *  shapes, built as in MergeBaseBenchmark: "linear", two straight
+ *  branches forked from the root; "bushy", a trunk merging a side branch
+ *  of 8 commits at every step, against a branch forked near its root;
+ *  and "crisscross", two branches merging one another at every step.
+ *  @author Sasmit Agarwal
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LcaBench {
+
+    /** Width of the side branches of a bushy history. */
+    static final int WIDTH = 8;
+
+    /** The shape of the history. */
+    @Param({"linear", "bushy", "crisscross"})
+    String shape;
+
+    /** About the number of commits in the history. */
+    @Param({"10000"})
+    int commits;
+
+    /** The commits whose latest common ancestor is found. */
+    Commit a, b;
+
+    /** Build the history. */
+    @Setup
+    public void setUp() throws IOException {
+        Fixtures.init();
+        Commit root = Fixtures.commit(shape, null, null);
+        switch (shape) {
+        case "linear":
+            a = chain("a", root, commits / 2);
+            b = chain("b", root, commits / 2);
+            break;
+        case "bushy":
+            Commit[] trunk = new Commit[commits / (WIDTH + 1)];
+            trunk[0] = root;
+            for (int i = 1; i < trunk.length; i += 1) {
+                Commit side = chain("side" + i,
+                                    trunk[Math.max(0, i - WIDTH)], WIDTH);
+                trunk[i] = Fixtures.commit("trunk" + i, trunk[i - 1], side);
+            }
+            a = trunk[trunk.length - 1];
+            b = chain("old", trunk[1], 1);
+            break;
+        case "crisscross":
+            a = Fixtures.commit("a0", root, null);
+            b = Fixtures.commit("b0", root, null);
+            for (int i = 1; i < commits / 2; i += 1) {
+                Commit a1 = Fixtures.commit("a" + i, a, b);
+                b = Fixtures.commit("b" + i, b, a);
+                a = a1;
+            }
+            break;
+        default:
+            throw new IllegalArgumentException("unknown shape " + shape);
+        }
+    }
+
+    /** Returns the latest common ancestor of the two commits. */
+    @Benchmark
+    public Commit lca() {
+        return Main.lca(a, b);
+    }
+
+    /** Returns the last of LENGTH commits named NAME-0, NAME-1, ... in a
+     *  line below PARENT. */
+    static Commit chain(String name, Commit parent, int length) {
+        for (int i = 0; i < length; i += 1) {
+            parent = Fixtures.commit(name + "-" + i, parent, null);
+        }
+        return parent;
+    }
+}
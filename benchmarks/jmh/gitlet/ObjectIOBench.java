@@ -0,0 +1,135 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Measures writing and reading a Commit and a CommitTree to and from
+ *  files in a temporary directory, both through Utils.writeObject and
+ *  Utils.readObject, as Java serialization streams, and through save and
+ *  read, in the binary format the repository now stores.  The commit
+ *  holds FILES files, and its file map is loaded, as it was when commits
+ *  were serialized whole; the tree holds BRANCHES branches.
+ *  @author Sasmit Agarwal
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ObjectIOBench {
+
+    /** Number of files in the commit. */
+    @Param({"100", "10000"})
+    int files;
+
+    /** Number of branches in the tree. */
+    @Param({"100"})
+    int branches;
+
+    /** The commit and tree written. */
+    Commit commit;
+    CommitTree tree;
+
+    /** Temporary directory holding the files written. */
+    Path dir;
+
+    /** Files holding the commit and tree in each format. */
+    File commitSerial, commitBinary, treeSerial, treeBinary;
+
+    /** Build a repository holding the commit and tree, and write each to
+     *  the files read back. */
+    @Setup
+    public void setUp() throws IOException {
+        Fixtures.init();
+        commit = Fixtures.commit("many files", files, i -> "contents " + i);
+        commit.getFileToBlobID();
+        for (int i = 0; i < branches; i += 1) {
+            Main.main("branch", "branch" + i);
+        }
+        tree = Repository.tree();
+        dir = Files.createTempDirectory("gitlet-jmh");
+        commitSerial = dir.resolve("commit.serial").toFile();
+        commitBinary = dir.resolve("commit.binary").toFile();
+        treeSerial = dir.resolve("tree.serial").toFile();
+        treeBinary = dir.resolve("tree.binary").toFile();
+        writeCommitSerial();
+        writeCommitBinary();
+        writeTreeSerial();
+        writeTreeBinary();
+    }
+
+    /** Delete the temporary directory. */
+    @TearDown
+    public void tearDown() throws IOException {
+        for (File f : new File[] {commitSerial, commitBinary,
+                                  treeSerial, treeBinary}) {
+            Files.deleteIfExists(f.toPath());
+        }
+        Files.delete(dir);
+    }
+
+    /** Write the commit through Utils.writeObject. */
+    @Benchmark
+    public void writeCommitSerial() {
+        Utils.writeObject(commitSerial, commit);
+    }
+
+    /** Returns the commit read through Utils.readObject. */
+    @Benchmark
+    public Commit readCommitSerial() {
+        return Utils.readObject(commitSerial, Commit.class);
+    }
+
+    /** Write the commit in the binary format. */
+    @Benchmark
+    public void writeCommitBinary() {
+        commit.save(commitBinary);
+    }
+
+    /** Returns the commit read from the binary format. */
+    @Benchmark
+    public Commit readCommitBinary() {
+        return Commit.read(commitBinary);
+    }
+
+    /** Write the tree through Utils.writeObject. */
+    @Benchmark
+    public void writeTreeSerial() {
+        Utils.writeObject(treeSerial, tree);
+    }
+
+    /** Returns the tree read through Utils.readObject. */
+    @Benchmark
+    public CommitTree readTreeSerial() {
+        return Utils.readObject(treeSerial, CommitTree.class);
+    }
+
+    /** Write the tree in the binary format. */
+    @Benchmark
+    public void writeTreeBinary() {
+        tree.save(treeBinary);
+    }
+
+    /** Returns the tree read from the binary format. */
+    @Benchmark
+    public CommitTree readTreeBinary() {
+        return CommitTree.read(treeBinary);
+    }
+}
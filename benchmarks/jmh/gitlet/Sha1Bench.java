@@ -0,0 +1,47 @@
+package gitlet;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Measures Utils.sha1 on a blob of each payload size, hashed with its
+ *  file name as Commit and Main.add hash blobs.
+ *  @author Sasmit Agarwal
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Sha1Bench {
+
+    /** Size of the payload, in bytes. */
+    @Param({"64", "4096", "65536", "1048576"})
+    int size;
+
+    /** The payload hashed. */
+    byte[] payload;
+
+    /** Draw the payload. */
+    @Setup
+    public void setUp() {
+        payload = Fixtures.bytes(Fixtures.random(size), size);
+    }
+
+    /** Returns the id of the payload as a blob named "file.txt". */
+    @Benchmark
+    public String sha1() {
+        return Utils.sha1("file.txt", payload);
+    }
+}
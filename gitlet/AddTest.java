@@ -0,0 +1,120 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.TreeSet;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of the add command with several paths and with globs: that a
+ *  name holding glob characters is staged literally when such a file
+ *  exists, that a glob matching nothing is an error, and that globs and
+ *  plain names may be mixed.
+ *  @author Sasmit Agarwal
+ */
+public class AddTest {
+
+    /** Names of the working files of the tests. */
+    static final String[] NAMES = {
+        "add*Test.txt", "addXTest.txt", "add?.txt", "addA.txt",
+        "addTest1.txt", "addTest2.txt", "addTest3.txt", "addTest.dat",
+    };
+
+    @Before
+    public void setUp() {
+        TestRepository.create();
+        for (String name : NAMES) {
+            Utils.writeContents(Utils.join(Main.CWD, name), name);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        TestRepository.delete(NAMES);
+    }
+
+    /** Returns the names of the files staged for addition, as read from
+     *  the repository. */
+    private static TreeSet<String> staged() {
+        return new TreeSet<>(Main.filesIn(Main.ADDITION));
+    }
+
+    /** Returns a set of NAMES. */
+    private static TreeSet<String> set(String... names) {
+        return new TreeSet<>(Arrays.asList(names));
+    }
+
+    /** Run add on PATHS, which must fail, and return what it printed. */
+    private static String failedAdd(String... paths) {
+        PrintStream stdout = System.out;
+        ByteArrayOutputStream printed = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(printed));
+        Main.resident = true;
+        try {
+            String[] args = new String[paths.length + 1];
+            args[0] = "add";
+            System.arraycopy(paths, 0, args, 1, paths.length);
+            Main.main(args);
+            fail("add succeeded");
+        } catch (Daemon.Exit excp) {
+            /* Expected. */
+        } finally {
+            Main.resident = false;
+            System.setOut(stdout);
+        }
+        return printed.toString().trim();
+    }
+
+    @Test
+    public void literalNamesWithGlobCharacters() {
+        Main.main("add", "add*Test.txt");
+        assertEquals(set("add*Test.txt"), staged());
+        Main.main("add", "add?.txt");
+        assertEquals(set("add*Test.txt", "add?.txt"), staged());
+    }
+
+    @Test
+    public void globs() {
+        Main.main("add", "addTest?.txt");
+        assertEquals(set("addTest1.txt", "addTest2.txt", "addTest3.txt"),
+                     staged());
+        Main.main("add", "add[AX]*");
+        assertEquals(set("addTest1.txt", "addTest2.txt", "addTest3.txt",
+                         "addA.txt", "addXTest.txt"), staged());
+    }
+
+    @Test
+    public void globMatchingNothing() {
+        assertEquals("File does not exist.", failedAdd("*.missing"));
+        assertEquals(set(), staged());
+    }
+
+    @Test
+    public void globsAndNames() {
+        Main.main("add", "addTest[12].txt", "addTest.dat", "add*Test.txt");
+        assertEquals(set("addTest1.txt", "addTest2.txt", "addTest.dat",
+                         "add*Test.txt"), staged());
+        assertEquals("File does not exist.",
+                     failedAdd("addTest3.txt", "*.missing"));
+        assertEquals("File does not exist.",
+                     failedAdd("addTest3.txt", "missing.txt", "addA*"));
+        assertEquals("nothing is staged by a failed add",
+                     set("addTest1.txt", "addTest2.txt", "addTest.dat",
+                         "add*Test.txt"), staged());
+    }
+
+    @Test
+    public void removedNames() {
+        Main.main("add", "addTest1.txt");
+        Main.main("commit", "AddTest");
+        Main.main("rm", "addTest1.txt");
+        assertFalse(Utils.join(Main.CWD, "addTest1.txt").exists());
+        Main.main("add", "addTest1.txt", "addTest2.txt");
+        assertEquals(set("addTest2.txt"), staged());
+        assertTrue(Main.filesIn(Main.REMOVAL).isEmpty());
+    }
+}
@@ -0,0 +1,92 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Random;
+
+/** Content-defined chunking of large objects.  A file is cut wherever a
+ *  Gear rolling hash of the preceding bytes has its top AVG_BITS bits
+ *  clear, subject to MIN_CHUNK and MAX_CHUNK, so that cut points depend
+ *  only on nearby content: an edit moves only the boundaries around it,
+ *  and the chunks elsewhere keep their ids.  Chunks are stored in the
+ *  Pack under the SHA-1 hash of their contents, so those shared between
+ *  versions or between files are stored once, and the object itself is
+ *  a list of chunk lengths and ids.
+ *  @author Sasmit Agarwal
+ */
+class Chunker {
+
+    /** The smallest chunk cut before the end of a file. */
+    static final int MIN_CHUNK = 16 << 10;
+    /** The largest chunk. */
+    static final int MAX_CHUNK = 256 << 10;
+    /** Number of hash bits that must be clear at a cut point, so that
+     *  chunks average about MIN_CHUNK + 2^AVG_BITS bytes. */
+    static final int AVG_BITS = 15;
+    /** Mask selecting the top AVG_BITS bits of the hash.  The low bits of
+     *  a Gear hash depend only on the last few bytes. */
+    private static final long MASK = -1L << (Long.SIZE - AVG_BITS);
+    /** Random values mixed into the hash for each byte value.  The seed is
+     *  fixed, since changing it would move every cut point. */
+    private static final long[] GEAR = new long[256];
+
+    static {
+        Random random = new Random(0x676c6574L);
+        for (int i = 0; i < GEAR.length; i += 1) {
+            GEAR[i] = random.nextLong();
+        }
+    }
+
+    /** Store the chunks of SOURCE, a file named NAME, in the pack, write
+     *  their list to the large object file LIST, and return the object's
+     *  id, sha1(NAME, contents). */
+    static String write(String name, File source, File list)
+        throws IOException {
+        MessageDigest md = Utils.sha1Digest();
+        md.update(name.getBytes(StandardCharsets.UTF_8));
+        byte[] buf = new byte[MAX_CHUNK];
+        try (InputStream in = Files.newInputStream(source.toPath());
+             DataOutputStream out = new DataOutputStream(
+                 new BufferedOutputStream(Files.newOutputStream(
+                     list.toPath())))) {
+            out.writeByte(Pack.CHUNKED);
+            int len = in.readNBytes(buf, 0, MAX_CHUNK);
+            while (len > 0) {
+                int n = cut(buf, len);
+                byte[] chunk = Arrays.copyOf(buf, n);
+                md.update(chunk);
+                String id = Utils.sha1(chunk);
+                Pack.write(id, chunk);
+                out.writeInt(n);
+                Codec.writeId(out, id);
+                System.arraycopy(buf, n, buf, 0, len - n);
+                len -= n;
+                len += in.readNBytes(buf, len, MAX_CHUNK - len);
+            }
+        }
+        return Utils.hexId(md.digest(), 0);
+    }
+
+    /** Returns the length of the first chunk of the LEN bytes at the start
+     *  of BUF, which are either MAX_CHUNK bytes or the rest of a file. */
+    static int cut(byte[] buf, int len) {
+        if (len <= MIN_CHUNK) {
+            return len;
+        }
+        long hash = 0;
+        for (int i = MIN_CHUNK - Long.SIZE; i < len; i += 1) {
+            hash = (hash << 1) + GEAR[buf[i] & 0xff];
+            if (i >= MIN_CHUNK && (hash & MASK) == 0) {
+                return i + 1;
+            }
+        }
+        return len;
+    }
+}
@@ -0,0 +1,230 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of content-defined chunking: that a chunked object is read and
+ *  checked out whole, that chunks respect MIN_CHUNK and MAX_CHUNK, and
+ *  that an edit changes only the chunks around it.
+ *  @author Sasmit Agarwal
+ */
+public class ChunkerTest {
+
+    /** Name of the working file. */
+    static final String NAME = "chunkerTest.bin";
+    /** Name of the file to which objects are checked out. */
+    static final String COPY = "chunkerTest.out";
+
+    @Before
+    public void setUp() {
+        TestRepository.create();
+    }
+
+    @After
+    public void tearDown() {
+        TestRepository.delete(NAME, COPY);
+    }
+
+    /** Returns N bytes, random with SEED. */
+    private static byte[] random(int n, long seed) {
+        byte[] result = new byte[n];
+        new Random(seed).nextBytes(result);
+        return result;
+    }
+
+    /** Returns the working file NAME. */
+    private static File file(String name) {
+        return Utils.join(Main.CWD, name);
+    }
+
+    /** Store DATA as the chunked contents of NAME and return its id. */
+    private static String write(byte[] data) {
+        Utils.writeContents(file(NAME), data);
+        String id = Pack.write(NAME, file(NAME), true);
+        assertEquals(Utils.sha1(NAME, data), id);
+        return id;
+    }
+
+    /** Returns the chunks listed by the large object ID, each as {id,
+     *  length}. */
+    private static List<String[]> chunks(String id) throws IOException {
+        List<String[]> result = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(
+                 Utils.join(Main.LARGE_OBJECTS, id).toPath()))) {
+            assertEquals(Pack.CHUNKED, in.readByte());
+            while (true) {
+                int n;
+                try {
+                    n = in.readInt();
+                } catch (EOFException excp) {
+                    return result;
+                }
+                result.add(new String[] {Codec.readId(in), "" + n});
+            }
+        }
+    }
+
+    /** Returns the ids of the chunks of object ID. */
+    private static List<String> ids(String id) throws IOException {
+        List<String> result = new ArrayList<>();
+        for (String[] chunk : chunks(id)) {
+            result.add(chunk[0]);
+        }
+        return result;
+    }
+
+    /** Returns the number of ids of AFTER not at the same distance from
+     *  the start or end of BEFORE. */
+    private static int changed(List<String> before, List<String> after) {
+        int prefix = 0, suffix = 0;
+        int n = Math.min(before.size(), after.size());
+        while (prefix < n && before.get(prefix).equals(after.get(prefix))) {
+            prefix += 1;
+        }
+        while (suffix < n - prefix
+               && before.get(before.size() - 1 - suffix)
+                  .equals(after.get(after.size() - 1 - suffix))) {
+            suffix += 1;
+        }
+        return after.size() - prefix - suffix;
+    }
+
+    @Test
+    public void roundTrip() throws IOException {
+        byte[] data = random(2 << 20, 1);
+        String id = write(data);
+        List<String[]> chunks = chunks(id);
+        assertTrue(chunks.size() > 4);
+        long total = 0;
+        for (int k = 0; k < chunks.size(); k += 1) {
+            int n = Integer.parseInt(chunks.get(k)[1]);
+            assertTrue(n <= Chunker.MAX_CHUNK);
+            assertTrue(n > Chunker.MIN_CHUNK || k == chunks.size() - 1);
+            total += n;
+        }
+        assertEquals(data.length, total);
+        Main.flush();
+        Daemon.reset();
+        Pack.copy(id, file(COPY));
+        assertArrayEquals(data, Utils.readContents(file(COPY)));
+        assertArrayEquals(data, Pack.read(id));
+        assertEquals(ids(id), Pack.chunks(id));
+        assertTrue(Pack.chunks(chunks.get(0)[0]).isEmpty());
+    }
+
+    @Test
+    public void longChunkList() throws IOException {
+        byte[] chunk = random(1000, 6);
+        String chunkId = Utils.sha1(chunk);
+        Pack.write(chunkId, chunk);
+        Main.flush();
+        int n = 2000;
+        ByteArrayOutputStream list = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(list);
+        out.writeByte(Pack.CHUNKED);
+        ByteArrayOutputStream contents = new ByteArrayOutputStream();
+        for (int k = 0; k < n; k += 1) {
+            out.writeInt(chunk.length);
+            Codec.writeId(out, chunkId);
+            contents.write(chunk);
+        }
+        String id = Utils.sha1(NAME, contents.toByteArray());
+        Main.LARGE_OBJECTS.mkdirs();
+        Utils.writeContents(Utils.join(Main.LARGE_OBJECTS, id),
+                            list.toByteArray());
+        Pack.copy(id, file(COPY));
+        assertArrayEquals("a list longer than a stream buffer",
+                          contents.toByteArray(),
+                          Utils.readContents(file(COPY)));
+
+        String torn = Utils.sha1("torn");
+        Utils.writeContents(Utils.join(Main.LARGE_OBJECTS, torn),
+                            Arrays.copyOf(list.toByteArray(),
+                                          list.size() - 5));
+        try {
+            Pack.copy(torn, file(COPY));
+            fail("a list ending inside an entry");
+        } catch (GitletException excp) {
+            assertTrue(excp.getMessage().startsWith("Internal error"));
+        }
+    }
+
+    @Test
+    public void commitAndCheckout() {
+        int size = (int) Math.max(8 * Chunker.MAX_CHUNK,
+                                  Pack.LARGE_OBJECT + 1000);
+        byte[] data = random(size, 2);
+        Utils.writeContents(file(NAME), data);
+        Main.main("add", NAME);
+        Main.main("commit", "ChunkerTest");
+        String id = Repository.tree().headCommit().getBlobID(NAME);
+        assertTrue(Utils.join(Main.LARGE_OBJECTS, id).isFile());
+        Daemon.reset();
+        file(NAME).delete();
+        Main.main("checkout", "--", NAME);
+        assertArrayEquals(data, Utils.readContents(file(NAME)));
+    }
+
+    @Test
+    public void editsChangeNearbyChunks() throws IOException {
+        byte[] data = random(4 << 20, 3);
+        List<String> before = ids(write(data));
+
+        byte[] overwritten = data.clone();
+        System.arraycopy(random(100, 4), 0, overwritten, 2 << 20, 100);
+        List<String> after = ids(write(overwritten));
+        assertTrue("an overwrite", changed(before, after) <= 2);
+
+        byte[] inserted = new byte[data.length + 10];
+        System.arraycopy(data, 0, inserted, 0, 1000);
+        System.arraycopy(data, 1000, inserted, 1010, data.length - 1000);
+        after = ids(write(inserted));
+        assertTrue("an insertion near the start",
+                   changed(before, after) <= 2);
+        assertEquals(before.subList(2, before.size()),
+                     after.subList(after.size() - before.size() + 2,
+                                   after.size()));
+    }
+
+    @Test
+    public void uniformContents() throws IOException {
+        byte[] zeros = new byte[4 * Chunker.MAX_CHUNK + 5];
+        assertEquals(100, Chunker.cut(zeros, 100));
+        assertEquals(Chunker.MAX_CHUNK, Chunker.cut(zeros, Chunker.MAX_CHUNK));
+        List<String[]> chunks = chunks(write(zeros));
+        assertEquals(5, chunks.size());
+        for (int k = 0; k < 4; k += 1) {
+            assertEquals("" + Chunker.MAX_CHUNK, chunks.get(k)[1]);
+            assertEquals("identical chunks share an id", chunks.get(0)[0],
+                         chunks.get(k)[0]);
+        }
+        assertEquals("5", chunks.get(4)[1]);
+    }
+
+    @Test
+    public void cutPointsDependOnContent() {
+        byte[] data = random(Chunker.MAX_CHUNK, 5);
+        int cut = Chunker.cut(data, data.length);
+        assertTrue(cut > Chunker.MIN_CHUNK && cut <= Chunker.MAX_CHUNK);
+        byte[] shifted = new byte[data.length];
+        System.arraycopy(data, 0, shifted, 7, data.length - 7);
+        assertEquals("a cut moves with the bytes before it", cut + 7,
+                     Chunker.cut(shifted, shifted.length));
+        assertEquals("the end of a file may cut a short chunk",
+                     Chunker.MIN_CHUNK, Chunker.cut(data, Chunker.MIN_CHUNK));
+    }
+}
@@ -0,0 +1,71 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.SocketException;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/** Runs a command in the Daemon serving the repository in the current
+ *  directory, printing its output, or runs it itself through Main if no
+ *  daemon is listening.  Only a few JDK classes are loaded to forward a
+ *  command, so the client starts faster than Main.
+ *  Usage: java gitlet.Client ARGS, with the same ARGS as gitlet.Main.
+ *  @author Sasmit Agarwal
+ */
+public class Client {
+
+    /** The socket Main.DAEMON_SOCKET, named without loading Main. */
+    static final Path SOCKET = Path.of(".gitlet", "daemon.sock");
+
+    /** Forward ARGS to the daemon, or run them. */
+    public static void main(String... args) throws IOException {
+        if (!forward(System.out, args)) {
+            Main.main(args);
+        }
+        System.out.flush();
+    }
+
+    /** Send the command ARGS to the daemon and copy its output to OUT.
+     *  Returns false, having sent nothing, if no daemon is listening. */
+    static boolean forward(OutputStream out, String... args)
+        throws IOException {
+        SocketChannel ch = connect();
+        if (ch == null) {
+            return false;
+        }
+        try (ch) {
+            ByteArrayOutputStream request = new ByteArrayOutputStream();
+            for (String arg : args) {
+                request.write(arg.getBytes(StandardCharsets.UTF_8));
+                request.write(0);
+            }
+            ByteBuffer buf = ByteBuffer.wrap(request.toByteArray());
+            while (buf.hasRemaining()) {
+                ch.write(buf);
+            }
+            ch.shutdownOutput();
+            Channels.newInputStream(ch).transferTo(out);
+        }
+        return true;
+    }
+
+    /** Returns a connection to the daemon, or null if none is
+     *  listening. */
+    static SocketChannel connect() throws IOException {
+        if (!Files.exists(SOCKET)) {
+            return null;
+        }
+        try {
+            return SocketChannel.open(UnixDomainSocketAddress.of(SOCKET));
+        } catch (SocketException excp) {
+            return null;
+        }
+    }
+}
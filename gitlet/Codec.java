@@ -0,0 +1,109 @@
+package gitlet;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/** Building blocks of the binary formats of commits and commit trees.
+ *  Counts and lengths are unsigned varints (seven bits per byte, least
+ *  significant group first, high bit set on all but the last byte);
+ *  strings are a varint length followed by UTF-8 bytes; ids are their
+ *  Utils.RAW_UID_LENGTH raw bytes.
+ *  @author Sasmit Agarwal
+ */
+class Codec {
+
+    /** The most bytes readBytes allocates before any are read. */
+    static final int BLOCK = 8192;
+
+    /** Write the non-negative integer N to OUT as a varint. */
+    static void writeVarint(DataOutput out, int n) throws IOException {
+        while ((n & ~0x7f) != 0) {
+            out.writeByte((n & 0x7f) | 0x80);
+            n >>>= 7;
+        }
+        out.writeByte(n);
+    }
+
+    /** Return the varint read from IN, which must be a non-negative
+     *  int: a fifth byte may hold only the three bits left. */
+    static int readVarint(DataInput in) throws IOException {
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            if (shift == 28 && b > 0x07) {
+                break;
+            }
+            result |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IOException("malformed varint");
+    }
+
+    /** Write S to OUT as a length-prefixed UTF-8 string. */
+    static void writeString(DataOutput out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length);
+        out.write(bytes);
+    }
+
+    /** Return the length-prefixed UTF-8 string read from IN. */
+    static String readString(DataInput in) throws IOException {
+        return new String(readBytes(in), StandardCharsets.UTF_8);
+    }
+
+    /** Return the bytes, preceded by their number as a varint, read from
+     *  IN.  The result grows as the bytes are read, so that a corrupt
+     *  length ends in an EOFException at the end of IN rather than in
+     *  allocating that many bytes. */
+    static byte[] readBytes(DataInput in) throws IOException {
+        int n = readVarint(in);
+        byte[] result = new byte[Math.min(n, BLOCK)];
+        int size = 0;
+        while (true) {
+            in.readFully(result, size, result.length - size);
+            size = result.length;
+            if (size == n) {
+                return result;
+            }
+            result = Arrays.copyOf(result, (int) Math.min(n, 2L * size));
+        }
+    }
+
+    /** Write the hexadecimal id ID to OUT as raw bytes. */
+    static void writeId(DataOutput out, String id) throws IOException {
+        out.write(Utils.rawId(id));
+    }
+
+    /** Return the hexadecimal form of the raw id read from IN. */
+    static String readId(DataInput in) throws IOException {
+        byte[] raw = new byte[Utils.RAW_UID_LENGTH];
+        in.readFully(raw);
+        return Utils.hexId(raw, 0);
+    }
+
+    /** If STR, which must support mark, begins with the four bytes of
+     *  MAGIC, skip them and return true.  Otherwise leave STR unchanged
+     *  and return false. */
+    static boolean readMagic(InputStream str, int magic) throws IOException {
+        str.mark(4);
+        int found = 0;
+        for (int i = 0; i < 4; i += 1) {
+            int b = str.read();
+            if (b < 0) {
+                break;
+            }
+            found = (found << 8) | b;
+            if (i == 3 && found == magic) {
+                return true;
+            }
+        }
+        str.reset();
+        return false;
+    }
+}
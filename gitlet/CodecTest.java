@@ -0,0 +1,216 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of the binary formats of commits and commit trees, and of the
+ *  Codec they are built from.
+ *  @author Sasmit Agarwal
+ */
+public class CodecTest {
+
+    /** A name that is not ASCII. */
+    private static final String NAME = "caf\u00e9 \u6587\u4ef6.txt";
+
+    /** Returns a stream reading BYTES. */
+    private static DataInputStream input(byte[] bytes) {
+        return new DataInputStream(new ByteArrayInputStream(bytes));
+    }
+
+    @Test
+    public void varints() throws IOException {
+        int[] values = {0, 1, 127, 128, 16383, 16384, 1 << 21, 1 << 28,
+                        Integer.MAX_VALUE};
+        int[] sizes = {1, 1, 1, 2, 2, 3, 4, 5, 5};
+        for (int i = 0; i < values.length; i += 1) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            Codec.writeVarint(new DataOutputStream(bytes), values[i]);
+            assertEquals(sizes[i], bytes.size());
+            assertEquals(values[i],
+                         Codec.readVarint(input(bytes.toByteArray())));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void malformedVarint() throws IOException {
+        Codec.readVarint(input(new byte[] {-1, -1, -1, -1, -1, 1}));
+    }
+
+    @Test(expected = IOException.class)
+    public void negativeVarint() throws IOException {
+        Codec.readVarint(input(new byte[] {-128, -128, -128, -128, 8}));
+    }
+
+    @Test
+    public void corruptLengths() throws IOException {
+        for (int n : new int[] {Integer.MAX_VALUE, Codec.BLOCK + 1, 100}) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            Codec.writeVarint(out, n);
+            out.write(new byte[20]);
+            try {
+                Codec.readString(input(bytes.toByteArray()));
+                fail("a length past the end of the stream");
+            } catch (EOFException excp) {
+                /* Expected. */
+            }
+        }
+    }
+
+    @Test
+    public void corruptCommit() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(Commit.MAGIC);
+        out.writeByte(Commit.VERSION);
+        out.writeLong(0);
+        out.write(new byte[] {-1, -1, -1, -1, 15});
+        try {
+            Commit.read(new ByteArrayInputStream(bytes.toByteArray()));
+            fail("a negative message length");
+        } catch (IOException excp) {
+            assertEquals("malformed varint", excp.getMessage());
+        }
+    }
+
+    @Test
+    public void stringsAndIds() throws IOException {
+        String id = Utils.sha1("CodecTest");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        Codec.writeString(out, "");
+        Codec.writeString(out, NAME);
+        Codec.writeId(out, id);
+        assertEquals(2 + NAME.getBytes(StandardCharsets.UTF_8).length
+                     + Utils.RAW_UID_LENGTH, bytes.size());
+        DataInputStream in = input(bytes.toByteArray());
+        assertEquals("", Codec.readString(in));
+        assertEquals(NAME, Codec.readString(in));
+        assertEquals(id, Codec.readId(in));
+    }
+
+    @Test
+    public void magic() throws IOException {
+        byte[] bytes = {0x47, 0x4c, 0x43, 0x4d, 7};
+        ByteArrayInputStream str = new ByteArrayInputStream(bytes);
+        assertFalse(Codec.readMagic(str, 0x474c4354));
+        assertEquals("a mismatch leaves the stream unread", 0x47, str.read());
+        str = new ByteArrayInputStream(bytes);
+        assertTrue(Codec.readMagic(str, Commit.MAGIC));
+        assertEquals(7, str.read());
+        str = new ByteArrayInputStream(new byte[] {0x47, 0x4c});
+        assertFalse(Codec.readMagic(str, Commit.MAGIC));
+        assertEquals(0x47, str.read());
+    }
+
+    @Test
+    public void initialCommitId() {
+        assertEquals("ids are those of earlier versions",
+                     "10e3146e2caf4782b3ebf85b5e354edcd9334c95",
+                     new Commit().getId());
+    }
+
+    @Test
+    public void commitRoundTrip() throws Exception {
+        Commit initial = new Commit();
+        Commit other = new Commit("other", new Date(5000), initial, null,
+                                  Utils.sha1("CodecTest other tree"));
+        Commit merge = new Commit("merge \u00e9", new Date(123456789L),
+                                  other, initial,
+                                  Utils.sha1("CodecTest tree"));
+        for (Commit c : new Commit[] {initial, other, merge}) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            c.write(new DataOutputStream(bytes));
+            Commit read = Commit.read(
+                new ByteArrayInputStream(bytes.toByteArray()));
+            assertEquals(c.getId(), read.getId());
+            assertEquals(c.getMsg(), read.getMsg());
+            assertEquals(c.getDate(), read.getDate());
+            assertEquals(c.getParentID(), read.getParentID());
+            assertEquals(c.getMergeParentID(), read.getMergeParentID());
+            assertEquals(c.getDepth(), read.getDepth());
+            assertEquals(c.getTreeID(), read.getTreeID());
+        }
+    }
+
+    @Test
+    public void serializedCommit() throws Exception {
+        Commit c = new Commit();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(c);
+        }
+        Commit read = Commit.read(
+            new ByteArrayInputStream(bytes.toByteArray()));
+        assertEquals(c.getId(), read.getId());
+        assertEquals(c.getMsg(), read.getMsg());
+        assertTrue(read.getFileToBlobID().isEmpty());
+    }
+
+    @Test
+    public void version1Commit() throws Exception {
+        String id = Utils.sha1("CodecTest version 1");
+        String parent = Utils.sha1("CodecTest parent");
+        String blob = Utils.sha1("CodecTest blob");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(Commit.MAGIC);
+        out.writeByte(1);
+        out.writeLong(42);
+        Codec.writeString(out, "version 1");
+        Codec.writeId(out, id);
+        out.writeByte(1);
+        Codec.writeId(out, parent);
+        Codec.writeVarint(out, 3);
+        Codec.writeVarint(out, 1);
+        Codec.writeString(out, "a.txt");
+        Codec.writeId(out, blob);
+        Commit read = Commit.read(
+            new ByteArrayInputStream(bytes.toByteArray()));
+        assertEquals(id, read.getId());
+        assertEquals(parent, read.getParentID());
+        assertNull(read.getMergeParentID());
+        assertEquals(3, read.getDepth());
+        assertEquals(new Date(42), read.getDate());
+        assertEquals(blob, read.getBlobID("a.txt"));
+        assertNull(read.getBlobID("b.txt"));
+    }
+
+    @Test(expected = IOException.class)
+    public void unknownCommitVersion() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(Commit.MAGIC);
+        out.writeByte(Commit.VERSION + 1);
+        out.writeLong(0);
+        Commit.read(new ByteArrayInputStream(bytes.toByteArray()));
+    }
+
+    @Test
+    public void treeRoundTrip() throws Exception {
+        TestRepository.create();
+        try {
+            CommitTree tree = Repository.tree();
+            tree.newBranch("dev \u00e9");
+            tree.setActiveBranch("dev \u00e9");
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            tree.write(new DataOutputStream(bytes));
+            CommitTree read = CommitTree.read(
+                new ByteArrayInputStream(bytes.toByteArray()));
+            assertEquals("dev \u00e9", read.getActiveBranch());
+            assertEquals(tree.getBranchToCommit(), read.getBranchToCommit());
+        } finally {
+            TestRepository.delete();
+        }
+    }
+}
@@ -3,19 +3,36 @@ package gitlet;
 import java.io.Serializable;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.List;
+import java.util.TreeMap;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
 
 public class Commit implements Serializable {
+    /** Used to keep commits written by earlier versions readable. */
+    private static final long serialVersionUID = 6404654710311358125L;
+    /** Used to recognize commit files in the binary format. */
+    static final int MAGIC = 0x474c434d;
+    /** Used to store the version of the binary format.  Version 1
+     *  stored the whole file map instead of a tree id. */
+    static final int VERSION = 2;
     /** Used to store exact date and time of commit. */
     private Date date;
     /** Fields for the message and id of commit,
      * as well as id of both parents. */
     private String msg, id, parentID, mergeParentID;
-    /** Used to store exact depth of commit within tree. */
+    /** Used to store exact depth of commit within tree: one more than
+     *  the depth of its deepest parent. */
     private int depth;
-    /** Used to store files in the commit and their respective blobs. */
+    /** Used to store files in the commit and their respective blobs.
+     *  Read from the tree when first needed. */
     private HashMap<String, String> fileToBlobID;
+    /** Used to store the id of the FileTree of files in the commit.  Null
+     *  for commits written before trees, until first needed. */
+    private String treeID;
 
     public Date getDate() {
         return date;
@@ -42,55 +59,118 @@ public class Commit implements Serializable {
     }
 
     public HashMap<String, String> getFileToBlobID() {
+        if (fileToBlobID == null) {
+            fileToBlobID = FileTree.files(treeID);
+        }
         return fileToBlobID;
     }
 
+    public String getTreeID() {
+        if (treeID == null) {
+            treeID = FileTree.build(fileToBlobID);
+        }
+        return treeID;
+    }
+
+    public String getBlobID(String fname) {
+        if (fileToBlobID != null) {
+            return fileToBlobID.get(fname);
+        }
+        return FileTree.get(treeID, fname);
+    }
+
     public Commit() {
         date = new Date(0);
         msg = "initial commit";
-        id = Utils.sha1(Utils.serialize(date), msg);
+        id = hash(date, msg);
         parentID = null;
         mergeParentID = null;
         depth = 0;
         fileToBlobID = new HashMap<>();
-        updateShortenedCommits(id);
+        treeID = FileTree.EMPTY;
     }
 
     public Commit(String m, Commit parent) {
         date = new Date();
         this.msg = m;
-        id = Utils.sha1(Utils.serialize(date), m);
+        id = hash(date, m);
 
         parentID = parent.getId();
         mergeParentID = null;
         depth = parent.getDepth() + 1;
-        fileToBlobID = new HashMap<>();
-        fileToBlobID.putAll(parent.getFileToBlobID());
-        updateShortenedCommits(id);
-
-        List<String> x = Utils.plainFilenamesIn(Main.ADDITION);
-        if (x != null && !x.isEmpty()) {
-            for (String fname : x) {
-                File f = Utils.join(Main.ADDITION, fname);
-                String hash = Utils.sha1(fname, Utils.readContents(f));
 
-                f.renameTo(Utils.join(Main.BLOBS, hash));
-                fileToBlobID.put(fname, hash);
+        TreeMap<String, String> changes = new TreeMap<>();
+        for (String fname : Repository.staged()) {
+            File f = Utils.join(Main.ADDITION, fname);
+            String hash;
+            if (f.length() > Pack.LARGE_OBJECT) {
+                hash = Pack.write(fname, f);
+            } else {
+                byte[] contents = Utils.readContents(f);
+                hash = Utils.sha1(fname, contents);
+                Pack.write(hash, contents, parent.getBlobID(fname));
             }
+            changes.put(fname, hash);
         }
-
-        x = Utils.plainFilenamesIn(Main.REMOVAL);
-        if (x != null && !x.isEmpty()) {
-            for (String fname : x) {
-                Utils.join(Main.REMOVAL, fname).delete();
-                fileToBlobID.remove(fname);
-            }
+        for (String fname : Repository.removed()) {
+            changes.put(fname, null);
         }
+        Repository.clearStage();
+        treeID = FileTree.update(parent.getTreeID(), changes);
+        Pack.flush();
     }
 
     public Commit(String m, Commit parent, Commit secondParent) {
         this(m, parent);
         mergeParentID = secondParent.getId();
+        depth = Math.max(depth, secondParent.getDepth() + 1);
+    }
+
+    /** Used to make a commit at D with message M of the files in the tree
+     *  TREEID, with parents PARENT and SECONDPARENT (null for none),
+     *  without going through the stage, to build histories directly. */
+    Commit(String m, Date d, Commit parent, Commit secondParent,
+           String treeID) {
+        date = d;
+        msg = m;
+        id = hash(d, m);
+        parentID = parent.getId();
+        depth = parent.getDepth() + 1;
+        if (secondParent != null) {
+            mergeParentID = secondParent.getId();
+            depth = Math.max(depth, secondParent.getDepth() + 1);
+        }
+        this.treeID = treeID;
+    }
+
+    private Commit(DataInputStream in) throws IOException {
+        int version = in.readUnsignedByte();
+        if (version != 1 && version != VERSION) {
+            throw new IOException("unknown commit format " + version);
+        }
+        date = new Date(in.readLong());
+        msg = Codec.readString(in);
+        id = Codec.readId(in);
+        int parents = in.readUnsignedByte();
+        parentID = (parents & 1) != 0 ? Codec.readId(in) : null;
+        mergeParentID = (parents & 2) != 0 ? Codec.readId(in) : null;
+        depth = Codec.readVarint(in);
+        if (version == 1) {
+            int n = Codec.readVarint(in);
+            fileToBlobID = new HashMap<>(n * 4 / 3 + 1);
+            for (int i = 0; i < n; i += 1) {
+                fileToBlobID.put(Codec.readString(in), Codec.readId(in));
+            }
+        } else {
+            treeID = Codec.readId(in);
+        }
+    }
+
+    /** Used to compute the id of a commit made at D with message M.  The
+     *  date is hashed in its serialized form, as it always has been, so
+     *  that ids stay those of repositories made by earlier versions. */
+    private static String hash(Date d, String m) {
+        return Utils.sha1(Utils.serialize(d), m);
     }
 
     public Commit parent() {
@@ -108,18 +188,67 @@ public class Commit implements Serializable {
     }
 
     public static Commit getCommit(String id) {
-        return Utils.readObject(
-                Utils.join(Main.COMMITS, id), Commit.class);
+        return Repository.commit(id);
     }
 
-    public boolean isTracked(String fname) {
-        return fileToBlobID.containsKey(fname);
+    /** Used to read the commit in FILE, in either the binary format or
+     *  the serialized form written by earlier versions. */
+    static Commit read(File file) {
+        Trace.Span span = Trace.start(Trace.Phase.READ_COMMITS);
+        try (InputStream str = Utils.objectInput(file)) {
+            return read(str);
+        } catch (IOException | ClassNotFoundException | ClassCastException
+                 excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } finally {
+            Trace.end(span, 0);
+        }
+    }
+
+    /** Used to read a commit from STR, which must support mark. */
+    static Commit read(InputStream str)
+        throws IOException, ClassNotFoundException {
+        Trace.add(Trace.Counter.OBJECTS, 1);
+        if (Codec.readMagic(str, MAGIC)) {
+            return new Commit(new DataInputStream(str));
+        }
+        return (Commit) new ObjectInputStream(str).readObject();
     }
 
-    public static void updateShortenedCommits(String commitId) {
-        HashMap<String, String> h = Main.getShortenedCommits();
-        h.put(commitId.substring(0, 6), commitId);
-        Main.saveShortenedCommits(h);
+    /** Used to write this commit to FILE in the binary format. */
+    void save(File file) {
+        try (DataOutputStream out =
+                new DataOutputStream(Utils.objectOutput(file))) {
+            write(out);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Used to write this commit to OUT in the binary format: the magic
+     *  number and version, the date in milliseconds, the message and id,
+     *  a byte whose low bits say which parents follow, the parents, the
+     *  depth, and the id of the tree of files. */
+    void write(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeLong(date.getTime());
+        Codec.writeString(out, msg);
+        Codec.writeId(out, id);
+        out.writeByte((parentID == null ? 0 : 1)
+                | (mergeParentID == null ? 0 : 2));
+        if (parentID != null) {
+            Codec.writeId(out, parentID);
+        }
+        if (mergeParentID != null) {
+            Codec.writeId(out, mergeParentID);
+        }
+        Codec.writeVarint(out, depth);
+        Codec.writeId(out, getTreeID());
+    }
+
+    public boolean isTracked(String fname) {
+        return getBlobID(fname) != null;
     }
 
     public String toString() {
@@ -0,0 +1,600 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/** The commit graph: a memory-mapped file of fixed-width records, one per
+ *  commit, holding its raw id, the positions of its parents, its
+ *  generation number and its timestamp.  Parents always precede their
+ *  children, and records are only ever appended, so ancestry walks need
+ *  no Commit objects at all.  The generation of a commit is one more
+ *  than the largest generation of its parents (0 for the initial
+ *  commit).  Commits are found by id through a second file,
+ *  Main.GRAPH_LOOKUP, of (raw id, position) entries laid out as in
+ *  CommitIndex: a sorted run, which is binary-searched, followed by a
+ *  tail of at most MAX_TAIL entries of commits added since, which is
+ *  scanned and is merged into the run only when full.
+ *  @author Sasmit Agarwal
+ */
+class CommitGraph {
+
+    /** Magic number at the start of the graph file. */
+    static final int MAGIC = 0x474c4347;
+    /** Version of the graph format. */
+    static final int VERSION = 1;
+    /** Size of the header: magic and version. */
+    static final int HEADER_SIZE = 8;
+    /** Size of one record: raw id, parent, merge parent, generation and
+     *  timestamp. */
+    static final int RECORD_SIZE = Utils.RAW_UID_LENGTH + 20;
+    /** The position of a missing parent or unknown commit. */
+    static final int NONE = -1;
+    /** Magic number at the start of the lookup file. */
+    static final int LOOKUP_MAGIC = 0x474c4350;
+    /** Size of the lookup header: magic, version and length of the
+     *  sorted run. */
+    static final int LOOKUP_HEADER_SIZE = 12;
+    /** Size of one lookup entry: raw id and position. */
+    static final int ENTRY_SIZE = Utils.RAW_UID_LENGTH + 4;
+    /** The largest number of unsorted entries kept after the sorted run
+     *  of the lookup file. */
+    static final int MAX_TAIL = 4096;
+
+    /** Flags used by mergeBases: reachable from the first commit, from
+     *  the second, an ancestor of a common ancestor, and already
+     *  recorded as a common ancestor. */
+    private static final int FROM_A = 1, FROM_B = 2, STALE = 4, RESULT = 8;
+
+    /** Returns the number of commits in the graph. */
+    static int size() {
+        return (graph().limit() - HEADER_SIZE) / RECORD_SIZE;
+    }
+
+    /** Returns the position of commit ID in the graph, or NONE if there
+     *  is no such commit.  A commit that has been written to Main.COMMITS
+     *  but is missing from the graph is added. */
+    static int position(String id) {
+        Integer known = positions.get(id);
+        if (known != null) {
+            return known;
+        }
+        int pos = find(id);
+        if (pos == NONE && id.length() == Utils.UID_LENGTH
+            && Utils.join(Main.COMMITS, id).isFile()) {
+            pos = add(Commit.getCommit(id));
+        }
+        if (pos != NONE) {
+            positions.put(id, pos);
+        }
+        return pos;
+    }
+
+    /** Returns the id of the commit at position POS. */
+    static String id(int pos) {
+        byte[] raw = new byte[Utils.RAW_UID_LENGTH];
+        graph().get(offset(pos), raw);
+        return Utils.hexId(raw, 0);
+    }
+
+    /** Returns the first four bytes of the id of the commit at POS. */
+    static int prefix(int pos) {
+        return graph().getInt(offset(pos));
+    }
+
+    /** Returns the position of the first parent of the commit at POS, or
+     *  NONE. */
+    static int parent(int pos) {
+        return graph().getInt(offset(pos) + Utils.RAW_UID_LENGTH);
+    }
+
+    /** Returns the position of the merge parent of the commit at POS, or
+     *  NONE. */
+    static int mergeParent(int pos) {
+        return graph().getInt(offset(pos) + Utils.RAW_UID_LENGTH + 4);
+    }
+
+    /** Returns the generation number of the commit at POS. */
+    static int generation(int pos) {
+        return graph().getInt(offset(pos) + Utils.RAW_UID_LENGTH + 8);
+    }
+
+    /** Returns the timestamp, in milliseconds, of the commit at POS. */
+    static long time(int pos) {
+        return graph().getLong(offset(pos) + Utils.RAW_UID_LENGTH + 12);
+    }
+
+    /** Returns the commit at POS. */
+    static Commit commit(int pos) {
+        return Commit.getCommit(id(pos));
+    }
+
+    /** Append a record for C, whose parents are added first if missing,
+     *  and return its position.  Does nothing but return the position if
+     *  C is already present. */
+    static int add(Commit c) {
+        return add(c.getId(), c.getParentID(), c.getMergeParentID(),
+                   c.getDate().getTime());
+    }
+
+    /** Append a record for the commit ID with parents PARENTID and
+     *  MERGEPARENTID (either may be null) and timestamp TIME, and return
+     *  its position.  Missing parents are added first.  Does nothing but
+     *  return the position if ID is already present. */
+    static int add(String id, String parentID, String mergeParentID,
+                   long time) {
+        int pos = find(id);
+        if (pos != NONE) {
+            return pos;
+        }
+        int parent = parentID == null ? NONE : position(parentID);
+        int mergeParent = mergeParentID == null ? NONE
+            : position(mergeParentID);
+        MappedByteBuffer idx = lookup();
+        pos = size();
+        ByteBuffer record = record(id, parent, mergeParent,
+                                   generation(parent, mergeParent), time);
+        try (FileChannel out = FileChannel.open(Main.COMMIT_GRAPH.toPath(),
+                                                StandardOpenOption.WRITE)) {
+            long at = offset(pos);
+            while (record.hasRemaining()) {
+                at += out.write(record, at);
+            }
+        } catch (IOException excp) {
+            throw Utils.error("Internal error writing commit graph: %s",
+                              excp.getMessage());
+        }
+        graph = null;
+        addLookup(idx, id, pos);
+        positions.put(id, pos);
+        return pos;
+    }
+
+    /** Returns the positions of the best common ancestors of the commits
+     *  at A and B (those not ancestors of another common ancestor),
+     *  highest generation first.  The ancestors of A and of B are painted
+     *  together in decreasing order of generation, so that every
+     *  descendant of a commit is seen before it; the walk stops as soon as
+     *  everything still queued lies below a common ancestor already
+     *  found. */
+    static List<Integer> mergeBases(int a, int b) {
+        return mergeBases(a, b, Integer.MAX_VALUE);
+    }
+
+    /** Returns mergeBases(A, B), or null if finding them would paint more
+     *  than LIMIT commits.  Since a commit's parents have lower
+     *  generations than it, every commit that reaches one is taken from
+     *  the queue before it, so each commit is queued once, and its flags
+     *  may still grow while it waits.  The flags of the commits painted
+     *  are kept in a Flags table rather than an array the size of the
+     *  graph, and the number of queued commits not yet STALE is counted
+     *  as flags change, so a walk costs what it paints, however large the
+     *  graph. */
+    static List<Integer> mergeBases(int a, int b, int limit) {
+        ArrayList<Integer> result = new ArrayList<>();
+        if (a == b) {
+            result.add(a);
+            return result;
+        }
+        Flags flags = new Flags();
+        PriorityQueue<Long> queue =
+            new PriorityQueue<>(Collections.reverseOrder());
+        flags.put(a, FROM_A);
+        flags.put(b, FROM_B);
+        queue.add(queueKey(a));
+        queue.add(queueKey(b));
+        int unpainted = 2;
+        while (unpainted > 0) {
+            if (limit == 0) {
+                return null;
+            }
+            limit -= 1;
+            int c = (int) (long) queue.poll();
+            int f = flags.get(c) & (FROM_A | FROM_B | STALE);
+            if ((f & STALE) == 0) {
+                unpainted -= 1;
+            }
+            if (f == (FROM_A | FROM_B)) {
+                if ((flags.get(c) & RESULT) == 0) {
+                    flags.put(c, flags.get(c) | RESULT);
+                    result.add(c);
+                }
+                f |= STALE;
+            }
+            for (int p : new int[] {parent(c), mergeParent(c)}) {
+                if (p == NONE) {
+                    continue;
+                }
+                int old = flags.get(p);
+                if (old == 0) {
+                    flags.put(p, f);
+                    queue.add(queueKey(p));
+                    if ((f & STALE) == 0) {
+                        unpainted += 1;
+                    }
+                } else if ((old & f) != f) {
+                    flags.put(p, old | f);
+                    if ((old & STALE) == 0 && (f & STALE) != 0) {
+                        unpainted -= 1;
+                    }
+                }
+            }
+        }
+        result.removeIf(c -> (flags.get(c) & STALE) != 0);
+        return result;
+    }
+
+    /** Returns the key ordering the commit at POS in the mergeBases
+     *  queue: by generation, then by position. */
+    private static long queueKey(int pos) {
+        return ((long) generation(pos) << 32) | pos;
+    }
+
+    /** The flags of the commits painted by mergeBases, by position: an
+     *  open-addressed hash table of ints, so that painting allocates
+     *  nothing per commit.  Commits not painted have flags 0. */
+    private static final class Flags {
+        /** Returns the flags of the commit at POS. */
+        int get(int pos) {
+            int k = slot(pos);
+            return keys[k] == pos ? values[k] : 0;
+        }
+
+        /** Set the flags of the commit at POS to FLAGS, which is not 0. */
+        void put(int pos, int flags) {
+            int k = slot(pos);
+            if (keys[k] != pos) {
+                if (2 * (size + 1) > keys.length) {
+                    grow();
+                    k = slot(pos);
+                }
+                keys[k] = pos;
+                size += 1;
+            }
+            values[k] = flags;
+        }
+
+        /** Returns the slot holding POS, or the empty slot where it
+         *  belongs. */
+        private int slot(int pos) {
+            int mask = keys.length - 1;
+            int k = (pos * 0x9e3779b9) >>> Integer.numberOfLeadingZeros(mask);
+            while (keys[k] != pos && keys[k] != NONE) {
+                k = (k + 1) & mask;
+            }
+            return k;
+        }
+
+        /** Double the size of the table. */
+        private void grow() {
+            int[] oldKeys = keys, oldValues = values;
+            keys = new int[2 * oldKeys.length];
+            values = new int[keys.length];
+            Arrays.fill(keys, NONE);
+            for (int k = 0; k < oldKeys.length; k += 1) {
+                if (oldKeys[k] != NONE) {
+                    int j = slot(oldKeys[k]);
+                    keys[j] = oldKeys[k];
+                    values[j] = oldValues[k];
+                }
+            }
+        }
+
+        /** Positions in the table, NONE where empty. */
+        private int[] keys = filled(64);
+        /** Flags of the positions in keys. */
+        private int[] values = new int[64];
+        /** Number of positions in the table. */
+        private int size;
+
+        /** Returns an array of N NONEs. */
+        private static int[] filled(int n) {
+            int[] result = new int[n];
+            Arrays.fill(result, NONE);
+            return result;
+        }
+    }
+
+    /** Returns the position of commit ID, or NONE, by binary search of
+     *  the sorted run of the lookup file and a scan of its tail. */
+    private static int find(String id) {
+        if (id.length() != Utils.UID_LENGTH) {
+            return NONE;
+        }
+        byte[] key = Utils.rawId(id);
+        MappedByteBuffer idx = lookup();
+        int sorted = idx.getInt(8);
+        int lo = 0, hi = sorted;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int c = compare(idx, mid, key);
+            if (c == 0) {
+                return idx.getInt(entry(mid) + Utils.RAW_UID_LENGTH);
+            } else if (c < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        int prefix = ByteBuffer.wrap(key).getInt();
+        for (int k = sorted; k < entries(idx); k += 1) {
+            if (idx.getInt(entry(k)) == prefix && compare(idx, k, key) == 0) {
+                return idx.getInt(entry(k) + Utils.RAW_UID_LENGTH);
+            }
+        }
+        return NONE;
+    }
+
+    /** Compare the raw id of lookup entry K of IDX with KEY, returning
+     *  <0, 0 or >0. */
+    private static int compare(MappedByteBuffer idx, int k, byte[] key) {
+        int off = entry(k);
+        for (int i = 0; i < key.length; i += 1) {
+            int c = Byte.compareUnsigned(idx.get(off + i), key[i]);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return 0;
+    }
+
+    /** Record in the lookup file IDX, mapped before the commit was added,
+     *  that commit ID is at POS. */
+    private static void addLookup(MappedByteBuffer idx, String id, int pos) {
+        if (entries(idx) - idx.getInt(8) >= MAX_TAIL) {
+            writeLookup(idx, pos);
+            return;
+        }
+        ByteBuffer entry = ByteBuffer.allocate(ENTRY_SIZE);
+        entry.put(Utils.rawId(id)).putInt(pos).flip();
+        try (FileChannel out = FileChannel.open(Main.GRAPH_LOOKUP.toPath(),
+                                                StandardOpenOption.WRITE)) {
+            long at = entry(entries(idx));
+            while (entry.hasRemaining()) {
+                at += out.write(entry, at);
+            }
+        } catch (IOException excp) {
+            throw Utils.error("Internal error writing commit lookup: %s",
+                              excp.getMessage());
+        }
+        lookup = null;
+    }
+
+    /** Replace the lookup file with one whose sorted run holds the entries
+     *  of IDX (which may be null) and those of the commits at positions
+     *  FROM and later. */
+    private static void writeLookup(MappedByteBuffer idx, int from) {
+        int sorted = idx == null ? 0 : idx.getInt(8);
+        ArrayList<byte[]> added = new ArrayList<>();
+        for (int k = sorted; idx != null && k < entries(idx); k += 1) {
+            byte[] e = new byte[ENTRY_SIZE];
+            idx.get(entry(k), e);
+            added.add(e);
+        }
+        MappedByteBuffer g = graph();
+        for (int pos = from; pos < size(); pos += 1) {
+            byte[] e = new byte[ENTRY_SIZE];
+            g.get(offset(pos), e, 0, Utils.RAW_UID_LENGTH);
+            ByteBuffer.wrap(e).putInt(Utils.RAW_UID_LENGTH, pos);
+            added.add(e);
+        }
+        added.sort((a, b) -> Arrays.compareUnsigned(
+            a, 0, Utils.RAW_UID_LENGTH, b, 0, Utils.RAW_UID_LENGTH));
+
+        ByteBuffer buf = ByteBuffer.allocate(entry(sorted + added.size()));
+        buf.putInt(LOOKUP_MAGIC).putInt(VERSION)
+            .putInt(sorted + added.size());
+        byte[] run = new byte[ENTRY_SIZE];
+        int k = 0;
+        for (byte[] e : added) {
+            while (k < sorted && compare(idx, k, Arrays.copyOf(
+                       e, Utils.RAW_UID_LENGTH)) < 0) {
+                idx.get(entry(k), run);
+                buf.put(run);
+                k += 1;
+            }
+            buf.put(e);
+        }
+        while (k < sorted) {
+            idx.get(entry(k), run);
+            buf.put(run);
+            k += 1;
+        }
+
+        File tmp = Utils.join(Main.GITLET_FOLDER, "commitGraph.idx.tmp");
+        Utils.writeContents(tmp, buf.array());
+        try {
+            Files.move(tmp.toPath(), Main.GRAPH_LOOKUP.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw Utils.error("Internal error writing commit lookup: %s",
+                              excp.getMessage());
+        }
+        lookup = null;
+    }
+
+    /** Returns the number of entries in the lookup file IDX. */
+    private static int entries(MappedByteBuffer idx) {
+        return (idx.limit() - LOOKUP_HEADER_SIZE) / ENTRY_SIZE;
+    }
+
+    /** Returns the offset of lookup entry K. */
+    private static int entry(int k) {
+        return LOOKUP_HEADER_SIZE + k * ENTRY_SIZE;
+    }
+
+    /** Returns the memory-mapped lookup file, building it from the graph
+     *  if this repository does not have a valid one, and adding the
+     *  entries of commits appended to the graph but not to it, as by a
+     *  process that died between the two. */
+    private static MappedByteBuffer lookup() {
+        if (lookup == null) {
+            int size = size();
+            if (Main.GRAPH_LOOKUP.length() < LOOKUP_HEADER_SIZE) {
+                writeLookup(null, 0);
+            }
+            try (FileChannel ch = FileChannel.open(Main.GRAPH_LOOKUP.toPath(),
+                                                   StandardOpenOption.READ)) {
+                long n = (ch.size() - LOOKUP_HEADER_SIZE) / ENTRY_SIZE;
+                lookup = ch.map(FileChannel.MapMode.READ_ONLY, 0,
+                                entry((int) n));
+            } catch (IOException excp) {
+                throw Utils.error("Internal error reading commit lookup: %s",
+                                  excp.getMessage());
+            }
+            if (lookup.getInt(0) != LOOKUP_MAGIC
+                || lookup.getInt(4) != VERSION || entries(lookup) > size
+                || lookup.getInt(8) > entries(lookup)) {
+                writeLookup(null, 0);
+                return lookup();
+            } else if (entries(lookup) < size) {
+                writeLookup(lookup, entries(lookup));
+                return lookup();
+            }
+        }
+        return lookup;
+    }
+
+    /** Returns the generation of a commit whose parents are at PARENT
+     *  and MERGEPARENT. */
+    private static int generation(int parent, int mergeParent) {
+        int result = 0;
+        if (parent != NONE) {
+            result = generation(parent) + 1;
+        }
+        if (mergeParent != NONE) {
+            result = Math.max(result, generation(mergeParent) + 1);
+        }
+        return result;
+    }
+
+    /** Returns the file offset of the record at POS. */
+    private static int offset(int pos) {
+        return HEADER_SIZE + pos * RECORD_SIZE;
+    }
+
+    /** Returns the record for C with parents at PARENT and MERGEPARENT and
+     *  generation GENERATION, ready to be written. */
+    private static ByteBuffer record(Commit c, int parent, int mergeParent,
+                                     int generation) {
+        return record(c.getId(), parent, mergeParent, generation,
+                      c.getDate().getTime());
+    }
+
+    /** Returns the record for commit ID with parents at PARENT and
+     *  MERGEPARENT, generation GENERATION and timestamp TIME, ready to be
+     *  written. */
+    private static ByteBuffer record(String id, int parent, int mergeParent,
+                                     int generation, long time) {
+        ByteBuffer result = ByteBuffer.allocate(RECORD_SIZE);
+        result.put(Utils.rawId(id)).putInt(parent).putInt(mergeParent)
+            .putInt(generation).putLong(time).flip();
+        return result;
+    }
+
+    /** Forget the mapped graph and the positions looked up in it, so
+     *  that it is mapped again when next needed. */
+    static void reset() {
+        graph = null;
+        lookup = null;
+        positions.clear();
+    }
+
+    /** Returns the memory-mapped graph, building it from Main.COMMITS if
+     *  this repository does not have one yet. */
+    private static MappedByteBuffer graph() {
+        if (graph == null) {
+            if (!Main.COMMIT_GRAPH.isFile()) {
+                build();
+            }
+            try (FileChannel ch = FileChannel.open(Main.COMMIT_GRAPH.toPath(),
+                                                   StandardOpenOption.READ)) {
+                long records = (ch.size() - HEADER_SIZE) / RECORD_SIZE;
+                graph = ch.map(FileChannel.MapMode.READ_ONLY, 0,
+                               HEADER_SIZE + records * RECORD_SIZE);
+            } catch (IOException excp) {
+                throw Utils.error("Internal error reading commit graph: %s",
+                                  excp.getMessage());
+            }
+            if (graph.getInt(0) != MAGIC || graph.getInt(4) != VERSION) {
+                throw Utils.error("Unrecognized commit graph format.");
+            }
+        }
+        return graph;
+    }
+
+    /** Write a graph of all the commits in Main.COMMITS, parents before
+     *  children. */
+    private static void build() {
+        HashMap<String, Commit> commits = new HashMap<>();
+        List<String> ids = Utils.plainFilenamesIn(Main.COMMITS);
+        if (ids != null) {
+            for (String id : ids) {
+                commits.put(id, Commit.read(Utils.join(Main.COMMITS, id)));
+            }
+        }
+
+        HashMap<String, Integer> pos = new HashMap<>();
+        ArrayList<Integer> generations = new ArrayList<>();
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_SIZE
+                                             + commits.size() * RECORD_SIZE);
+        buf.putInt(MAGIC).putInt(VERSION);
+        ArrayDeque<Commit> stack = new ArrayDeque<>();
+        for (Commit start : commits.values()) {
+            stack.push(start);
+            while (!stack.isEmpty()) {
+                Commit c = stack.peek();
+                if (pos.containsKey(c.getId())) {
+                    stack.pop();
+                    continue;
+                }
+                boolean ready = true;
+                for (String p : new String[] {c.getParentID(),
+                                              c.getMergeParentID()}) {
+                    if (p != null && !pos.containsKey(p)) {
+                        stack.push(commits.get(p));
+                        ready = false;
+                    }
+                }
+                if (ready) {
+                    stack.pop();
+                    int parent = pos.getOrDefault(c.getParentID(), NONE),
+                        mergeParent =
+                            pos.getOrDefault(c.getMergeParentID(), NONE);
+                    int gen = Math.max(
+                        parent == NONE ? 0 : generations.get(parent) + 1,
+                        mergeParent == NONE ? 0
+                        : generations.get(mergeParent) + 1);
+                    pos.put(c.getId(), generations.size());
+                    generations.add(gen);
+                    buf.put(record(c, parent, mergeParent, gen));
+                }
+            }
+        }
+        Utils.writeContents(Main.COMMIT_GRAPH, buf.array());
+        Main.GRAPH_LOOKUP.delete();
+        lookup = null;
+        Main.BITMAPS.delete();
+        Reachability.reset();
+    }
+
+    /** Positions of commits already looked up. */
+    private static HashMap<String, Integer> positions = new HashMap<>();
+    /** The memory-mapped graph, or null if not yet mapped. */
+    private static MappedByteBuffer graph;
+    /** The memory-mapped lookup file, or null if not yet mapped. */
+    private static MappedByteBuffer lookup;
+}
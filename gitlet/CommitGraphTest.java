@@ -0,0 +1,117 @@
+package gitlet;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of the CommitGraph and of its lookup file, on graphs of
+ *  commits that exist only in the graph.
+ *  @author Sasmit Agarwal
+ */
+public class CommitGraphTest {
+
+    @Before
+    public void setUp() {
+        TestRepository.create();
+    }
+
+    @After
+    public void tearDown() {
+        TestRepository.delete();
+    }
+
+    /** Returns the id of the Kth synthetic commit. */
+    private static String id(int k) {
+        return Utils.sha1("CommitGraphTest " + k);
+    }
+
+    /** Add the Kth synthetic commit, with parents the Pth and Mth (none
+     *  if negative), and return its position. */
+    private static int add(int k, int p, int m) {
+        return CommitGraph.add(id(k), p < 0 ? null : id(p),
+                               m < 0 ? null : id(m), 1000L * k);
+    }
+
+    /** Add a chain of synthetic commits FROM to TO, each the child of
+     *  the one before, the first a child of the initial commit. */
+    private static void chain(int from, int to) {
+        add(from, -1, -1);
+        for (int k = from + 1; k <= to; k += 1) {
+            add(k, k - 1, -1);
+        }
+    }
+
+    @Test
+    public void records() {
+        int initial = CommitGraph.position(Repository.tree().headCommitID());
+        assertEquals(0, initial);
+        int a = add(1, -1, -1), b = add(2, 1, -1), c = add(3, 1, -1);
+        int d = add(4, 2, 3);
+        assertEquals(Arrays.asList(1, 2, 3, 4), Arrays.asList(a, b, c, d));
+        assertEquals(id(4), CommitGraph.id(d));
+        assertEquals(b, CommitGraph.parent(d));
+        assertEquals(c, CommitGraph.mergeParent(d));
+        assertEquals(CommitGraph.NONE, CommitGraph.parent(a));
+        assertEquals(CommitGraph.NONE, CommitGraph.mergeParent(b));
+        assertEquals(0, CommitGraph.generation(a));
+        assertEquals(2, CommitGraph.generation(d));
+        assertEquals(4000L, CommitGraph.time(d));
+        assertEquals(d, add(4, 2, 3));
+        assertEquals(5, CommitGraph.size());
+    }
+
+    @Test
+    public void unknownIds() {
+        chain(1, 3);
+        assertEquals(CommitGraph.NONE, CommitGraph.position(id(4)));
+        assertEquals(CommitGraph.NONE,
+                     CommitGraph.position(id(1).substring(0, 8)));
+    }
+
+    @Test
+    public void lookupAcrossTailMerges() {
+        int n = CommitGraph.MAX_TAIL + 10;
+        chain(1, n);
+        Daemon.reset();
+        for (int k = 1; k <= n; k += 1) {
+            assertEquals(k, CommitGraph.position(id(k)));
+        }
+    }
+
+    @Test
+    public void lookupRebuilt() throws IOException {
+        chain(1, 20);
+        for (byte[] damage : new byte[][] {
+                null, new byte[5], new byte[100],
+                Arrays.copyOf(Utils.readContents(Main.GRAPH_LOOKUP), 30)}) {
+            if (damage == null) {
+                Main.GRAPH_LOOKUP.delete();
+            } else {
+                Files.write(Main.GRAPH_LOOKUP.toPath(), damage);
+            }
+            Daemon.reset();
+            for (int k = 1; k <= 20; k += 1) {
+                assertEquals(k, CommitGraph.position(id(k)));
+            }
+        }
+    }
+
+    @Test
+    public void lookupCatchesUp() throws IOException {
+        chain(1, 5);
+        byte[] lookup = Utils.readContents(Main.GRAPH_LOOKUP);
+        chain(6, 8);
+        Files.write(Main.GRAPH_LOOKUP.toPath(), lookup,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+        Daemon.reset();
+        for (int k = 1; k <= 8; k += 1) {
+            assertEquals(k, CommitGraph.position(id(k)));
+        }
+    }
+}
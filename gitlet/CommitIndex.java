@@ -0,0 +1,229 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+/** The index used to resolve abbreviated commit ids: a memory-mapped file
+ *  of the raw ids of all commits.  It holds a sorted run of ids, which is
+ *  binary-searched, followed by a tail of at most MAX_TAIL ids of commits
+ *  made since, which is scanned.  Adding a commit appends its id to the
+ *  tail, and only when the tail is full is it merged into the run, so a
+ *  commit never rewrites the index.  Prefixes of any length are resolved,
+ *  and every commit that matches is found, so that ambiguous prefixes can
+ *  be reported.
+ *  @author Sasmit Agarwal
+ */
+class CommitIndex {
+
+    /** Magic number at the start of the index file. */
+    static final int MAGIC = 0x474c4149;
+    /** Version of the index format. */
+    static final int VERSION = 1;
+    /** Size of the header: magic, version and length of the sorted run. */
+    static final int HEADER_SIZE = 12;
+    /** The largest number of unsorted ids kept after the sorted run. */
+    static final int MAX_TAIL = 4096;
+
+    /** Returns the ids of at most LIMIT commits whose ids start with the
+     *  hexadecimal PREFIX, in no particular order. */
+    static List<String> find(String prefix, int limit) {
+        ArrayList<String> result = new ArrayList<>();
+        byte[] key = key(prefix);
+        if (key == null) {
+            return result;
+        }
+        int nibbles = prefix.length();
+        MappedByteBuffer idx = index();
+        int sorted = idx.getInt(8);
+        int lo = 0, hi = sorted;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compare(idx, mid, key, nibbles) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        for (int k = lo; k < sorted && result.size() < limit
+                 && compare(idx, k, key, nibbles) == 0; k += 1) {
+            result.add(Utils.hexId(id(idx, k), 0));
+        }
+        for (int k = sorted; k < size(idx) && result.size() < limit;
+             k += 1) {
+            if (compare(idx, k, key, nibbles) == 0) {
+                result.add(Utils.hexId(id(idx, k), 0));
+            }
+        }
+        return result;
+    }
+
+    /** Add the commit ID to the index, if it is not already present. */
+    static void add(String id) {
+        if (!find(id, 1).isEmpty()) {
+            return;
+        }
+        MappedByteBuffer idx = index();
+        if (size(idx) - idx.getInt(8) >= MAX_TAIL) {
+            TreeSet<String> ids = new TreeSet<>();
+            ids.add(id);
+            write(idx, ids);
+            return;
+        }
+        ByteBuffer record = ByteBuffer.wrap(Utils.rawId(id));
+        try (FileChannel out = FileChannel.open(Main.COMMIT_INDEX.toPath(),
+                                                StandardOpenOption.WRITE)) {
+            long at = offset(size(idx));
+            while (record.hasRemaining()) {
+                at += out.write(record, at);
+            }
+        } catch (IOException excp) {
+            throw Utils.error("Internal error writing commit index: %s",
+                              excp.getMessage());
+        }
+        index = null;
+    }
+
+    /** Returns the raw form of the hexadecimal PREFIX, its last byte
+     *  padded with 0 if it has an odd number of digits, or null if it is
+     *  not hexadecimal or too long. */
+    private static byte[] key(String prefix) {
+        if (prefix.length() > Utils.UID_LENGTH) {
+            return null;
+        }
+        byte[] result = new byte[(prefix.length() + 1) / 2];
+        for (int i = 0; i < prefix.length(); i += 1) {
+            int digit = Character.digit(prefix.charAt(i), 16);
+            if (digit < 0 || Character.isUpperCase(prefix.charAt(i))) {
+                return null;
+            }
+            result[i / 2] |= i % 2 == 0 ? digit << 4 : digit;
+        }
+        return result;
+    }
+
+    /** Compare the first NIBBLES hexadecimal digits of id K of IDX with
+     *  those of the raw KEY, returning <0, 0 or >0. */
+    private static int compare(MappedByteBuffer idx, int k, byte[] key,
+                               int nibbles) {
+        int pos = offset(k);
+        for (int i = 0; i < nibbles / 2; i += 1) {
+            int c = Byte.compareUnsigned(idx.get(pos + i), key[i]);
+            if (c != 0) {
+                return c;
+            }
+        }
+        if (nibbles % 2 == 1) {
+            return ((idx.get(pos + nibbles / 2) & 0xf0) >> 4)
+                - ((key[nibbles / 2] & 0xf0) >> 4);
+        }
+        return 0;
+    }
+
+    /** Returns raw id K of IDX. */
+    private static byte[] id(MappedByteBuffer idx, int k) {
+        byte[] result = new byte[Utils.RAW_UID_LENGTH];
+        idx.get(offset(k), result);
+        return result;
+    }
+
+    /** Returns the number of ids in IDX. */
+    private static int size(MappedByteBuffer idx) {
+        return (idx.limit() - HEADER_SIZE) / Utils.RAW_UID_LENGTH;
+    }
+
+    /** Returns the position in the index file of id K. */
+    private static int offset(int k) {
+        return HEADER_SIZE + k * Utils.RAW_UID_LENGTH;
+    }
+
+    /** Replace the index with one whose sorted run holds the ids of IDX
+     *  (which may be null) and IDS. */
+    private static void write(MappedByteBuffer idx, TreeSet<String> ids) {
+        int sorted = 0;
+        if (idx != null) {
+            sorted = idx.getInt(8);
+            for (int k = sorted; k < size(idx); k += 1) {
+                ids.add(Utils.hexId(id(idx, k), 0));
+            }
+        }
+        ByteBuffer buf = ByteBuffer.allocate(offset(sorted + ids.size()));
+        buf.putInt(MAGIC).putInt(VERSION).putInt(sorted + ids.size());
+        byte[] raw = new byte[Utils.RAW_UID_LENGTH];
+        int k = 0;
+        for (String id : ids) {
+            byte[] key = Utils.rawId(id);
+            while (k < sorted
+                   && compare(idx, k, key, Utils.UID_LENGTH) < 0) {
+                idx.get(offset(k), raw);
+                buf.put(raw);
+                k += 1;
+            }
+            buf.put(key);
+        }
+        while (k < sorted) {
+            idx.get(offset(k), raw);
+            buf.put(raw);
+            k += 1;
+        }
+
+        File tmp = Utils.join(Main.GITLET_FOLDER, "commitIndex.tmp");
+        Utils.writeContents(tmp, buf.array());
+        try {
+            Files.move(tmp.toPath(), Main.COMMIT_INDEX.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw Utils.error("Internal error writing commit index: %s",
+                              excp.getMessage());
+        }
+        index = null;
+    }
+
+    /** Forget the mapped index, so that it is mapped again when next
+     *  needed. */
+    static void reset() {
+        index = null;
+    }
+
+    /** Returns the memory-mapped index, building it from Main.COMMITS if
+     *  this repository does not have one yet. */
+    private static MappedByteBuffer index() {
+        if (index == null) {
+            if (!Main.COMMIT_INDEX.isFile()) {
+                List<String> ids = Utils.plainFilenamesIn(Main.COMMITS);
+                write(null, ids == null ? new TreeSet<>()
+                      : new TreeSet<>(ids));
+            }
+            try (FileChannel ch = FileChannel.open(Main.COMMIT_INDEX.toPath(),
+                                                   StandardOpenOption.READ)) {
+                index = ch.map(FileChannel.MapMode.READ_ONLY, 0,
+                               offset(size(ch.size())));
+            } catch (IOException excp) {
+                throw Utils.error("Internal error reading commit index: %s",
+                                  excp.getMessage());
+            }
+            if (index.getInt(0) != MAGIC || index.getInt(4) != VERSION) {
+                throw Utils.error("Unrecognized commit index format.");
+            }
+        }
+        return index;
+    }
+
+    /** Returns the number of whole ids in an index file of LENGTH
+     *  bytes. */
+    private static int size(long length) {
+        return (int) ((length - HEADER_SIZE) / Utils.RAW_UID_LENGTH);
+    }
+
+    /** The memory-mapped index, or null if not yet mapped. */
+    private static MappedByteBuffer index;
+}
@@ -0,0 +1,133 @@
+package gitlet;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of the CommitIndex: resolution of abbreviated ids in its sorted
+ *  run and in its tail, before and after the tail is merged.
+ *  @author Sasmit Agarwal
+ */
+public class CommitIndexTest {
+
+    @Before
+    public void setUp() {
+        TestRepository.create();
+    }
+
+    @After
+    public void tearDown() {
+        TestRepository.delete();
+    }
+
+    /** Returns the id of the Kth synthetic commit. */
+    private static String id(int k) {
+        return Utils.sha1("CommitIndexTest " + k);
+    }
+
+    /** Returns the ids found for PREFIX, sorted. */
+    private static List<String> find(String prefix) {
+        List<String> result = CommitIndex.find(prefix, Integer.MAX_VALUE);
+        Collections.sort(result);
+        return result;
+    }
+
+    /** Returns the ids of IDS that start with PREFIX, sorted. */
+    private static List<String> expected(List<String> ids, String prefix) {
+        List<String> result = new ArrayList<>();
+        for (String id : ids) {
+            if (id.startsWith(prefix)) {
+                result.add(id);
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    /** Returns the length of the sorted run of the index file. */
+    private static int sorted() throws IOException {
+        return ByteBuffer.wrap(Files.readAllBytes(Main.COMMIT_INDEX.toPath()))
+            .getInt(8);
+    }
+
+    /** Check that every prefix of the ids in IDS of up to 3 digits, and
+     *  every whole id, resolves to the ids of IDS it starts. */
+    private static void checkAll(List<String> ids) {
+        for (String id : ids) {
+            assertEquals(Collections.singletonList(id), find(id));
+            for (int len = 1; len <= 3; len += 1) {
+                String prefix = id.substring(0, len);
+                assertEquals(expected(ids, prefix), find(prefix));
+            }
+        }
+    }
+
+    @Test
+    public void resolves() {
+        List<String> ids = new ArrayList<>();
+        ids.add(Repository.tree().headCommitID());
+        for (int k = 0; k < 100; k += 1) {
+            ids.add(id(k));
+            CommitIndex.add(id(k));
+        }
+        checkAll(ids);
+        CommitIndex.reset();
+        checkAll(ids);
+        assertEquals(ids.size(), find("").size());
+        assertEquals(2, CommitIndex.find("", 2).size());
+        assertTrue(find(id(1) + "0").isEmpty());
+        assertTrue(find(id(1).toUpperCase()).isEmpty());
+        assertTrue(find("xyz").isEmpty());
+    }
+
+    @Test
+    public void addIsIdempotent() {
+        CommitIndex.add(id(1));
+        long length = Main.COMMIT_INDEX.length();
+        CommitIndex.add(id(1));
+        assertEquals(length, Main.COMMIT_INDEX.length());
+        assertEquals(1, find(id(1)).size());
+    }
+
+    @Test
+    public void resolvesAcrossTailMerges() throws IOException {
+        List<String> ids = new ArrayList<>();
+        ids.add(Repository.tree().headCommitID());
+        for (int k = 0; k < CommitIndex.MAX_TAIL + 10; k += 1) {
+            ids.add(id(k));
+            CommitIndex.add(id(k));
+            if (k == CommitIndex.MAX_TAIL - 1) {
+                assertEquals("ids are appended to the tail", 1, sorted());
+            }
+        }
+        assertEquals("the full tail was merged into the run",
+                     CommitIndex.MAX_TAIL + 2, sorted());
+        assertEquals(ids.size(), find("").size());
+        checkAll(ids);
+    }
+
+    @Test
+    public void rebuiltWhenMissing() {
+        String initial = Repository.tree().headCommitID();
+        CommitIndex.add(id(1));
+        Main.COMMIT_INDEX.delete();
+        CommitIndex.reset();
+        assertEquals("rebuilt from the commits directory",
+                     Collections.singletonList(initial), find(""));
+    }
+
+    @Test(expected = GitletException.class)
+    public void rejectsUnknownIndex() {
+        Utils.writeContents(Main.COMMIT_INDEX, "not an index");
+        CommitIndex.reset();
+        CommitIndex.find("a", 1);
+    }
+}
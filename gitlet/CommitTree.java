@@ -2,9 +2,21 @@ package gitlet;
 
 import java.io.Serializable;
 import java.util.HashMap;
+import java.util.Map;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
 
 public class CommitTree implements Serializable {
+    /** Used to keep trees written by earlier versions readable. */
+    private static final long serialVersionUID = 687325387181668514L;
+    /** Used to recognize tree files in the binary format. */
+    static final int MAGIC = 0x474c4354;
+    /** Used to store the version of the binary format. */
+    static final int VERSION = 1;
     /** Used to store branch name and the commit it points to. */
     private HashMap<String, String> branchToCommit;
     /** Used to store the current active branch. */
@@ -28,8 +40,65 @@ public class CommitTree implements Serializable {
         branchToCommit = new HashMap<>();
         branchToCommit.put(activeBranch, c.getId());
 
-        File x = Utils.join(Main.COMMITS, c.getId());
-        Utils.writeObject(x, c);
+        store(c);
+    }
+
+    private CommitTree(DataInputStream in) throws IOException {
+        int version = in.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("unknown tree format " + version);
+        }
+        activeBranch = Codec.readString(in);
+        int n = Codec.readVarint(in);
+        branchToCommit = new HashMap<>(n * 4 / 3 + 1);
+        for (int i = 0; i < n; i += 1) {
+            branchToCommit.put(Codec.readString(in), Codec.readId(in));
+        }
+    }
+
+    /** Used to read the tree in FILE, in either the binary format or the
+     *  serialized form written by earlier versions. */
+    static CommitTree read(File file) {
+        try (InputStream str = Utils.objectInput(file)) {
+            return read(str);
+        } catch (IOException | ClassNotFoundException | ClassCastException
+                 excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Used to read a tree from STR, which must support mark. */
+    static CommitTree read(InputStream str)
+        throws IOException, ClassNotFoundException {
+        Trace.add(Trace.Counter.OBJECTS, 1);
+        if (Codec.readMagic(str, MAGIC)) {
+            return new CommitTree(new DataInputStream(str));
+        }
+        return (CommitTree) new ObjectInputStream(str).readObject();
+    }
+
+    /** Used to write this tree to FILE in the binary format. */
+    void save(File file) {
+        try (DataOutputStream out =
+                new DataOutputStream(Utils.objectOutput(file))) {
+            write(out);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Used to write this tree to OUT in the binary format: the magic
+     *  number and version, the active branch, and the number of branches
+     *  followed by each branch name and commit id. */
+    void write(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        Codec.writeString(out, activeBranch);
+        Codec.writeVarint(out, branchToCommit.size());
+        for (Map.Entry<String, String> e : branchToCommit.entrySet()) {
+            Codec.writeString(out, e.getKey());
+            Codec.writeId(out, e.getValue());
+        }
     }
 
     public void addCommit(String msg) {
@@ -37,8 +106,7 @@ public class CommitTree implements Serializable {
         Commit c = new Commit(msg, parent);
         branchToCommit.put(activeBranch, c.getId());
 
-        File f = Utils.join(Main.COMMITS, c.getId());
-        Utils.writeObject(f, c);
+        store(c);
     }
 
     public void addCommit(String msg, Commit secondParent) {
@@ -46,12 +114,34 @@ public class CommitTree implements Serializable {
         Commit c = new Commit(msg, parent, secondParent);
         branchToCommit.put(activeBranch, c.getId());
 
+        store(c);
+    }
+
+    /** Used to record C, made without the stage, as the head of BRANCH,
+     *  which is created if missing. */
+    void record(String branch, Commit c) {
+        branchToCommit.put(branch, c.getId());
+
+        store(c);
+    }
+
+    /** Used to write the new commit C, recording it in the journal and
+     *  the commit graph, its path filters and indexes. */
+    private static void store(Commit c) {
         File f = Utils.join(Main.COMMITS, c.getId());
-        Utils.writeObject(f, c);
+        c.save(f);
+        Journal.add(c, f);
+        PathFilter.append(CommitGraph.add(c));
+        CommitIndex.add(c.getId());
+        MessageIndex.add(c.getId(), c.getMsg());
     }
 
     public Commit headCommit() {
-        return Commit.getCommit(branchToCommit.get(activeBranch));
+        return Commit.getCommit(headCommitID());
+    }
+
+    public String headCommitID() {
+        return branchToCommit.get(activeBranch);
     }
 
     public void newBranch(String b) {
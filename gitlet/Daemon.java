@@ -0,0 +1,176 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/** A resident server for the repository in the current directory.  It
+ *  runs the commands sent to it by Client, so that they do not pay for
+ *  JVM startup, class loading and JIT compilation, and keeps the pack
+ *  index and cached objects, the commit graph, the commit and message
+ *  indexes and the stat cache loaded between them.  It listens on the
+ *  Unix domain socket Main.DAEMON_SOCKET and runs one command at a time.
+ *  A request is the arguments of a command, each in UTF-8 followed by a
+ *  zero byte, ended by shutting down output on the connection; the
+ *  response is what the command prints, ended by closing the connection.
+ *  After each command the daemon records the stat data of the files in
+ *  .gitlet, and before the next it forgets everything it has cached if
+ *  another process has changed any of them since.
+ *  Usage: java gitlet.Daemon, in the directory holding .gitlet.
+ *  @author Sasmit Agarwal
+ */
+public class Daemon {
+
+    /** Files and directories whose stat data is compared before each
+     *  command. */
+    static final File[] WATCHED = {
+        Main.GITLET_FOLDER, Main.COMMITS, Main.BLOBS, Main.LARGE_OBJECTS,
+        Main.PACK, Main.PACK_INDEX, Main.COMMIT_TREE, Main.COMMIT_INDEX,
+        Main.MESSAGES, Main.MESSAGE_INDEX, Main.COMMIT_GRAPH,
+        Main.GRAPH_LOOKUP, Main.PATH_FILTERS, Main.BITMAPS, Main.STAT_CACHE,
+        Main.JOURNAL, Main.ADDITION, Main.REMOVAL,
+    };
+
+    /** Serve the repository in the current directory until killed. */
+    public static void main(String... args) throws IOException {
+        if (!Main.GITLET_FOLDER.isDirectory()) {
+            System.out.println("Not in an initialized Gitlet directory.");
+            System.exit(0);
+        }
+        SocketChannel other = Client.connect();
+        if (other != null) {
+            other.close();
+            System.out.println("A Gitlet daemon is already running.");
+            System.exit(0);
+        }
+        Files.deleteIfExists(Main.DAEMON_SOCKET.toPath());
+        try (ServerSocketChannel server =
+                 ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(
+                            Main.DAEMON_SOCKET.toPath()));
+            Runtime.getRuntime().addShutdownHook(
+                new Thread(Main.DAEMON_SOCKET::delete));
+            Main.resident = true;
+            while (true) {
+                try (SocketChannel ch = server.accept()) {
+                    serve(ch);
+                } catch (IOException excp) {
+                    System.err.println("gitlet daemon: " + excp);
+                }
+            }
+        }
+    }
+
+    /** Read a request from CH, run it, and send back its output. */
+    static void serve(SocketChannel ch) throws IOException {
+        String[] args = request(Channels.newInputStream(ch));
+        PrintStream stdout = System.out;
+        PrintStream out = new PrintStream(new BufferedOutputStream(
+            Channels.newOutputStream(ch), Utils.COPY_BUFFER));
+        System.setOut(out);
+        try {
+            run(args);
+        } finally {
+            System.setOut(stdout);
+            out.flush();
+        }
+    }
+
+    /** Returns the arguments in the request read from IN. */
+    static String[] request(InputStream in) throws IOException {
+        byte[] bytes = in.readAllBytes();
+        ArrayList<String> result = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i < bytes.length; i += 1) {
+            if (bytes[i] == 0) {
+                result.add(new String(bytes, start, i - start,
+                                      StandardCharsets.UTF_8));
+                start = i + 1;
+            }
+        }
+        return result.toArray(new String[0]);
+    }
+
+    /** Run the command ARGS, first forgetting everything cached if
+     *  .gitlet has changed since the last command.  A command that fails
+     *  with an exception leaves nothing cached, as if its process had
+     *  died, and its stack trace is sent instead of its remaining
+     *  output. */
+    static void run(String... args) {
+        if (!stamp().equals(stamp)) {
+            reset();
+        }
+        try {
+            Main.main(args);
+        } catch (Exit excp) {
+            return;
+        } catch (RuntimeException excp) {
+            reset();
+            excp.printStackTrace(System.out);
+        } finally {
+            stamp = stamp();
+        }
+    }
+
+    /** Forget the state of the repository cached by this process. */
+    static void reset() {
+        Repository.reset();
+        Pack.reset();
+        CommitGraph.reset();
+        FileTree.reset();
+        PathFilter.reset();
+        Reachability.reset();
+        CommitIndex.reset();
+        MessageIndex.reset();
+        StatCache.reset();
+        Journal.reset();
+    }
+
+    /** Returns the stat data of the WATCHED files: for each, its
+     *  modification time, size and file key, or "-" if it is missing. */
+    static String stamp() {
+        StringBuilder result = new StringBuilder();
+        for (File f : WATCHED) {
+            try {
+                BasicFileAttributes attrs = Files.readAttributes(
+                    f.toPath(), BasicFileAttributes.class);
+                result.append(attrs.lastModifiedTime()
+                              .to(TimeUnit.NANOSECONDS))
+                    .append(' ').append(attrs.size())
+                    .append(' ').append(attrs.fileKey());
+            } catch (IOException excp) {
+                result.append('-');
+            }
+            result.append('\n');
+        }
+        return result.toString();
+    }
+
+    /** Thrown by Main.error, in place of exiting, to end a command run by
+     *  the daemon. */
+    static class Exit extends RuntimeException {
+        /** Fixed, as for the other Serializable classes of gitlet. */
+        private static final long serialVersionUID = 3458170925517836047L;
+
+        /** An Exit, without a message or stack trace. */
+        Exit() {
+            super(null, null, false, false);
+        }
+    }
+
+    /** The stat data of the WATCHED files after the last command, or null
+     *  before the first. */
+    private static String stamp;
+}
@@ -0,0 +1,143 @@
+package gitlet;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of the line-level deltas of the Pack: the edit scripts alone,
+ *  and objects stored as chains of them.
+ *  @author Sasmit Agarwal
+ */
+public class DeltaTest {
+
+    /** Returns the bytes of S. */
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    /** Check that the delta from BASE to TARGET reproduces TARGET. */
+    private static void roundTrip(String base, String target) {
+        byte[] delta = Pack.delta(bytes(base), bytes(target));
+        assertNotNull(delta);
+        assertEquals(target, new String(Pack.applyDelta(bytes(base), delta),
+                                        StandardCharsets.ISO_8859_1));
+    }
+
+    @Test
+    public void edits() {
+        roundTrip("a\nb\nc\n", "a\nb\nc\n");
+        roundTrip("a\nb\nc\n", "a\nb\nc\nd\n");
+        roundTrip("a\nb\nc\n", "x\na\nb\nc\n");
+        roundTrip("a\nb\nc\n", "a\nc\n");
+        roundTrip("a\nb\nc\n", "a\nB\nc\n");
+        roundTrip("a\nb\nc\n", "");
+        roundTrip("", "a\nb\n");
+        roundTrip("", "");
+    }
+
+    @Test
+    public void unterminatedLines() {
+        roundTrip("a\nb", "a\nb\n");
+        roundTrip("a\nb\n", "a\nb");
+        roundTrip("no newline", "still no newline");
+        roundTrip("a\r\nb\r\n", "a\r\nc\r\n");
+    }
+
+    @Test
+    public void binary() {
+        byte[] base = new byte[256], target = new byte[300];
+        for (int i = 0; i < target.length; i += 1) {
+            if (i < base.length) {
+                base[i] = (byte) i;
+            }
+            target[i] = (byte) (i * 7);
+        }
+        assertArrayEquals(target,
+                          Pack.applyDelta(base, Pack.delta(base, target)));
+    }
+
+    @Test
+    public void randomEdits() {
+        Random rand = new Random(2);
+        for (int trial = 0; trial < 200; trial += 1) {
+            List<String> lines = new ArrayList<>();
+            for (int i = rand.nextInt(40); i > 0; i -= 1) {
+                lines.add("line " + rand.nextInt(10) + "\n");
+            }
+            String base = String.join("", lines);
+            for (int i = rand.nextInt(8); i > 0; i -= 1) {
+                int at = lines.isEmpty() ? 0 : rand.nextInt(lines.size());
+                if (rand.nextBoolean() || lines.isEmpty()) {
+                    lines.add(at, "new " + rand.nextInt(5) + "\n");
+                } else {
+                    lines.remove(at);
+                }
+            }
+            roundTrip(base, String.join("", lines));
+        }
+    }
+
+    @Test
+    public void tooLargeToDiff() {
+        StringBuilder base = new StringBuilder();
+        int n = (int) Math.sqrt(Pack.MAX_DELTA_CELLS) + 1;
+        for (int i = 0; i < n; i += 1) {
+            base.append(i).append('\n');
+        }
+        assertNull(Pack.delta(bytes(base.toString()),
+                              bytes(base.toString() + "more\n")));
+    }
+
+    @Test
+    public void storedAsDeltas() {
+        TestRepository.create();
+        try {
+            String text = "";
+            for (int i = 0; i < 200; i += 1) {
+                text += "DeltaTest storedAsDeltas line " + i + "\n";
+            }
+            String[] ids = new String[Pack.MAX_DELTA_DEPTH + 3];
+            String[] versions = new String[ids.length];
+            for (int v = 0; v < ids.length; v += 1) {
+                versions[v] = text + "version " + v + "\n";
+                ids[v] = Utils.sha1(bytes(versions[v]));
+                Pack.write(ids[v], bytes(versions[v]),
+                           v == 0 ? null : ids[v - 1]);
+            }
+            Main.flush();
+            Daemon.reset();
+            assertEquals(0, Pack.depth(ids[0]));
+            assertEquals(1, Pack.depth(ids[1]));
+            assertEquals("a chain longer than MAX_DELTA_DEPTH starts over",
+                         0, Pack.depth(ids[Pack.MAX_DELTA_DEPTH + 1]));
+            for (int v = ids.length - 1; v >= 0; v -= 1) {
+                assertTrue(Pack.depth(ids[v]) <= Pack.MAX_DELTA_DEPTH);
+                assertArrayEquals(bytes(versions[v]), Pack.read(ids[v]));
+            }
+        } finally {
+            TestRepository.delete();
+        }
+    }
+
+    @Test
+    public void unrelatedStoredWhole() {
+        TestRepository.create();
+        try {
+            byte[] base = bytes("DeltaTest unrelatedStoredWhole a\n");
+            byte[] other = bytes("DeltaTest unrelatedStoredWhole b\n");
+            String a = Utils.sha1(base), b = Utils.sha1(other);
+            Pack.write(a, base);
+            Pack.write(b, other, a);
+            Main.flush();
+            Daemon.reset();
+            assertEquals(0, Pack.depth(b));
+            assertArrayEquals(other, Pack.read(b));
+        } finally {
+            TestRepository.delete();
+        }
+    }
+}
@@ -2,6 +2,7 @@ package gitlet;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.io.File;
 import java.nio.file.Files;
@@ -13,22 +14,38 @@ import java.util.Collection;
 import java.io.IOException;
 import java.nio.file.InvalidPathException;
 
-import static java.lang.Math.max;
-
 /** A comparison of two sequences of strings.  After executing setSequences to
  *  initialize the data, methods allow computing longest common sequences
  *  and differences in the form of edits needed to convert one sequence to the
- *  next.
+ *  next.  Lines are interned to integers and the common prefix and suffix
+ *  are matched directly; what remains is compared either by Myers'
+ *  O((N+M)D) algorithm, in linear space by divide and conquer on the middle
+ *  snake, or by histogram diff, which anchors on the rarest lines first.
  *  @author P. N. Hilfinger */
 public class Diff {
 
+    /** The ways in which common subsequences may be computed. */
+    public enum Algorithm {
+        /** Myers' algorithm: a longest common subsequence, and so the
+         *  shortest edit. */
+        MYERS,
+        /** Histogram diff: repeatedly match the longest run around the line
+         *  occurring least often in the first sequence, which keeps edits
+         *  aligned with unique lines such as declarations, falling back to
+         *  MYERS where every line occurs more than MAX_CHAIN times. */
+        HISTOGRAM
+    }
+
+    /** Lines occurring more often than this in a region are not used as
+     *  histogram anchors. */
+    public static final int MAX_CHAIN = 64;
+
     /** Set the sequences currently being compared to the contents
      *  of SEQ1 and SEQ2 (as delivered by their iterators). */
     public void setSequences(Collection<String> seq1, Collection<String> seq2) {
         _lines1 = new ArrayList<>(seq1);
         _lines2 = new ArrayList<>(seq2);
-        _lls = null;
-        _todo = null;
+        reset();
     }
 
     /** Set the sequences currently being compared to the contents
@@ -48,8 +65,19 @@ public class Diff {
                  excp) {
             _lines2 = Collections.emptyList();
         }
-        _lls = null;
-        _todo = null;
+        reset();
+    }
+
+    /** Use ALGORITHM for subsequent calls of commonSubsequence and
+     *  diffs.  The default is MYERS. */
+    public void setAlgorithm(Algorithm algorithm) {
+        _algorithm = algorithm;
+        _common = null;
+    }
+
+    /** Return the algorithm used by commonSubsequence and diffs. */
+    public Algorithm algorithm() {
+        return _algorithm;
     }
 
     /** Return the first of the current sequences. */
@@ -76,59 +104,12 @@ public class Diff {
      *  items, respectively, of the current data sequences. */
     public int lls(int k1, int k2) {
         checkData();
-        if (_lls == null) {
-            _lls = new int[_lines1.size() + 1][_lines2.size() + 1];
-            for (int[] row : _lls) {
-                Arrays.fill(row, -1);
-            }
-        }
-        if (k1 == 0 || k2 == 0
+        if (k1 <= 0 || k2 <= 0
             || k1 > _lines1.size() || k2 > _lines2.size()) {
             return 0;
-        } else if (_lls[k1][k2] == -1) {
-            initStack();
-            push(k1, k2, 0);
-            while (!empty()) {
-                pop();
-                if (_llsTop1 == 0 || _llsTop2 == 0) {
-                    _lls[_llsTop1][_llsTop2] = 0;
-                } else if (_lls[_llsTop1][_llsTop2] != -1) {
-                    continue;
-                } else {
-                    switch (_llsState) {
-                    case 0:
-                        if (_lines1.get(_llsTop1 - 1)
-                            .equals(_lines2.get(_llsTop2 - 1))) {
-                            push(_llsTop1, _llsTop2, 4);
-                            push(_llsTop1 - 1, _llsTop2 - 1, 0);
-                        } else {
-                            push(_llsTop1, _llsTop2, 1);
-                        }
-                        continue;
-                    case 1:
-                        push(_llsTop1, _llsTop2, 2);
-                        push(_llsTop1, _llsTop2 - 1, 0);
-                        continue;
-                    case 2:
-                        push(_llsTop1, _llsTop2, 3);
-                        push(_llsTop1 - 1, _llsTop2, 0);
-                        continue;
-                    case 3:
-                        _lls[_llsTop1][_llsTop2]
-                            = max(_lls[_llsTop1][_llsTop2 - 1],
-                                  _lls[_llsTop1 - 1][_llsTop2]);
-                        continue;
-                    case 4:
-                        _lls[_llsTop1][_llsTop2]
-                            = _lls[_llsTop1 - 1][_llsTop2 - 1] + 1;
-                        continue;
-                    default:
-                        assert false;
-                    }
-                }
-            }
         }
-        return _lls[k1][k2];
+        intern();
+        return (k1 + k2 - editDistance(k1, k2)) / 2;
     }
 
     /** Return the length of the longest common subsequence of the current
@@ -142,10 +123,7 @@ public class Diff {
      *  content. */
     public boolean sequencesEqual() {
         checkData();
-        if (_lines1.size() != _lines2.size()) {
-            return false;
-        }
-        return lls(_lines1.size(), _lines2.size()) == _lines1.size();
+        return _lines1.equals(_lines2);
     }
 
     /** Return an array containing the int values of the items in LIST. */
@@ -164,32 +142,34 @@ public class Diff {
      *  a sequence of 3n values s01, s02, L0, s11, s12, L1,..., where
      *  si1 is the starting line position of the subsequence in the
      *  first file (0-based), si2 is the starting position in the second
-     *  file, and Li is the length of the subsequence. */
+     *  file, and Li is the length of the subsequence.  With the HISTOGRAM
+     *  algorithm, the subsequence is common but need not be longest. */
     public int[] commonSubsequence() {
-        ArrayDeque<Integer> resultList = new ArrayDeque<>();
-
-        int k1, k2;
-        k1 = _lines1.size(); k2 = _lines2.size();
-        while (k1 > 0 && k2 > 0) {
-            int ls = lls(k1, k2);
-            if (lls(k1 - 1, k2) == ls) {
-                k1 -= 1;
-            } else if (lls(k1, k2 - 1) == ls) {
-                k2 -= 1;
-            } else {
-                int L;
-                L = 1;
-                while (k1 > L && k2 > L && lls(k1 - L - 1, k2 - L) != ls - L
-                       && lls(k1 - L, k2 - L  - 1) != ls - L) {
+        checkData();
+        if (_common == null) {
+            intern();
+            _match = new int[_ids1.length];
+            Arrays.fill(_match, -1);
+            match();
+            ArrayList<Integer> resultList = new ArrayList<>();
+            for (int k1 = 0; k1 < _match.length; ) {
+                if (_match[k1] == -1) {
+                    k1 += 1;
+                    continue;
+                }
+                int k2 = _match[k1], L = 1;
+                while (k1 + L < _match.length && _match[k1 + L] == k2 + L) {
                     L += 1;
                 }
-                resultList.offerFirst(L);
-                resultList.offerFirst(k2 - L);
-                resultList.offerFirst(k1 - L);
-                k1 -= L; k2 -= L;
+                resultList.add(k1);
+                resultList.add(k2);
+                resultList.add(L);
+                k1 += L;
             }
+            _common = toIntArr(resultList);
+            _match = null;
         }
-        return toIntArr(resultList);
+        return _common.clone();
     }
 
     /** Return the edit that converts the first of the sequences being compared
@@ -232,45 +212,260 @@ public class Diff {
         }
     }
 
-    /** Initialize work stack for lls. */
-    private void initStack() {
-        _todo = new int[6 * (_lines1.size() +  _lines2.size() + 1)];
-        _todop = 0;
+    /** Discard everything computed from the previous sequences. */
+    private void reset() {
+        _ids1 = _ids2 = null;
+        _common = null;
     }
 
-    /** Push an item on the work stack for computing lls(I1, I2). STATE
-     *  indicates which inner recursive calls have happened so far for these
-     *  arguments. */
-    private void push(int i1, int i2, int state) {
-        _todo[_todop + 1] = i1;
-        _todo[_todop + 2] = i2;
-        _todo[_todop] = state;
-        _todop += 3;
+    /** Set _ids1 and _ids2 to the current sequences with each distinct
+     *  line replaced by a distinct small integer, if not already done. */
+    private void intern() {
+        if (_ids1 != null) {
+            return;
+        }
+        HashMap<String, Integer> ids = new HashMap<>();
+        _ids1 = new int[_lines1.size()];
+        _ids2 = new int[_lines2.size()];
+        for (int k = 0; k < _ids1.length; k += 1) {
+            _ids1[k] = ids.computeIfAbsent(_lines1.get(k), s -> ids.size());
+        }
+        for (int k = 0; k < _ids2.length; k += 1) {
+            _ids2[k] = ids.computeIfAbsent(_lines2.get(k), s -> ids.size());
+        }
+        _distinct = ids.size();
     }
 
-    /** Pop an item from the work stack. */
-    private void pop() {
-        _todop -= 3;
-        _llsTop1 = _todo[_todop + 1]; _llsTop2 = _todo[_todop + 2];
-        _llsState = _todo[_todop];
+    /** Return the least number of insertions and deletions converting the
+     *  first K1 lines of the first sequence into the first K2 of the
+     *  second, by Myers' greedy forward search. */
+    private int editDistance(int k1, int k2) {
+        int max = k1 + k2, off = max + 1;
+        int[] v = new int[2 * max + 3];
+        for (int d = 0; d <= max; d += 1) {
+            for (int k = -d; k <= d; k += 2) {
+                int x;
+                if (k == -d || (k != d && v[off + k - 1] < v[off + k + 1])) {
+                    x = v[off + k + 1];
+                } else {
+                    x = v[off + k - 1] + 1;
+                }
+                int y = x - k;
+                while (x < k1 && y < k2 && _ids1[x] == _ids2[y]) {
+                    x += 1;
+                    y += 1;
+                }
+                v[off + k] = x;
+                if (x >= k1 && y >= k2) {
+                    return d;
+                }
+            }
+        }
+        return max;
     }
 
-    /** Return true iff the work stack is empty. */
-    private boolean empty() {
-        return _todop <= 0;
+    /** Fill in _match, which maps each position in the first sequence to
+     *  the position in the second with which it is paired, or -1.  Regions
+     *  still to be compared, as {lo1, hi1, lo2, hi2}, are kept on an
+     *  explicit work stack. */
+    private void match() {
+        if (_algorithm == Algorithm.HISTOGRAM) {
+            _next = new int[_ids1.length];
+            _head = new int[_distinct];
+            _count = new int[_distinct];
+            Arrays.fill(_head, -1);
+        }
+        ArrayDeque<int[]> work = new ArrayDeque<>();
+        work.push(new int[] {0, _ids1.length, 0, _ids2.length});
+        while (!work.isEmpty()) {
+            int[] r = work.pop();
+            int lo1 = r[0], hi1 = r[1], lo2 = r[2], hi2 = r[3];
+            while (lo1 < hi1 && lo2 < hi2 && _ids1[lo1] == _ids2[lo2]) {
+                _match[lo1] = lo2;
+                lo1 += 1;
+                lo2 += 1;
+            }
+            while (lo1 < hi1 && lo2 < hi2
+                   && _ids1[hi1 - 1] == _ids2[hi2 - 1]) {
+                hi1 -= 1;
+                hi2 -= 1;
+                _match[hi1] = hi2;
+            }
+            if (lo1 == hi1 || lo2 == hi2) {
+                continue;
+            }
+            int[] split = null;
+            if (_algorithm == Algorithm.HISTOGRAM) {
+                split = anchor(lo1, hi1, lo2, hi2);
+            }
+            if (split == null) {
+                split = bisect(lo1, hi1, lo2, hi2);
+            }
+            if (split != null && split.length > 0) {
+                work.push(new int[] {split[2], hi1, split[3], hi2});
+                work.push(new int[] {lo1, split[0], lo2, split[1]});
+            }
+        }
+        _next = _head = _count = null;
+    }
+
+    /** Returns the point at which to divide the comparison of lines
+     *  [LO1 .. HI1-1] of the first sequence with [LO2 .. HI2-1] of the
+     *  second, which differ in their first and last lines, so that an
+     *  optimal edit passes through it: the end (K1, K2) of the forward half
+     *  of a middle snake, as {K1, K2, K1, K2}.  Returns null if the
+     *  regions have nothing in common. */
+    private int[] bisect(int lo1, int hi1, int lo2, int hi2) {
+        int n = hi1 - lo1, m = hi2 - lo2;
+        int maxD = (n + m + 1) / 2, off = maxD, len = 2 * maxD + 2;
+        int[] v1 = new int[len], v2 = new int[len];
+        Arrays.fill(v1, -1);
+        Arrays.fill(v2, -1);
+        v1[off + 1] = v2[off + 1] = 0;
+        int delta = n - m;
+        boolean front = (delta & 1) != 0;
+        int k1start = 0, k1end = 0, k2start = 0, k2end = 0;
+        for (int d = 0; d < maxD; d += 1) {
+            for (int k1 = -d + k1start; k1 <= d - k1end; k1 += 2) {
+                int k1off = off + k1, x1;
+                if (k1 == -d || (k1 != d && v1[k1off - 1] < v1[k1off + 1])) {
+                    x1 = v1[k1off + 1];
+                } else {
+                    x1 = v1[k1off - 1] + 1;
+                }
+                int y1 = x1 - k1;
+                while (x1 < n && y1 < m
+                       && _ids1[lo1 + x1] == _ids2[lo2 + y1]) {
+                    x1 += 1;
+                    y1 += 1;
+                }
+                v1[k1off] = x1;
+                if (x1 > n) {
+                    k1end += 2;
+                } else if (y1 > m) {
+                    k1start += 2;
+                } else if (front) {
+                    int k2off = off + delta - k1;
+                    if (k2off >= 0 && k2off < len && v2[k2off] != -1
+                        && x1 >= n - v2[k2off]) {
+                        return new int[] {lo1 + x1, lo2 + y1,
+                                          lo1 + x1, lo2 + y1};
+                    }
+                }
+            }
+            for (int k2 = -d + k2start; k2 <= d - k2end; k2 += 2) {
+                int k2off = off + k2, x2;
+                if (k2 == -d || (k2 != d && v2[k2off - 1] < v2[k2off + 1])) {
+                    x2 = v2[k2off + 1];
+                } else {
+                    x2 = v2[k2off - 1] + 1;
+                }
+                int y2 = x2 - k2;
+                while (x2 < n && y2 < m
+                       && _ids1[hi1 - x2 - 1] == _ids2[hi2 - y2 - 1]) {
+                    x2 += 1;
+                    y2 += 1;
+                }
+                v2[k2off] = x2;
+                if (x2 > n) {
+                    k2end += 2;
+                } else if (y2 > m) {
+                    k2start += 2;
+                } else if (!front) {
+                    int k1off = off + delta - k2;
+                    if (k1off >= 0 && k1off < len && v1[k1off] != -1) {
+                        int x1 = v1[k1off], y1 = off + x1 - k1off;
+                        if (x1 >= n - x2) {
+                            return new int[] {lo1 + x1, lo2 + y1,
+                                          lo1 + x1, lo2 + y1};
+                        }
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /** Match the longest run of equal lines in lines [LO1 .. HI1-1] of the
+     *  first sequence and [LO2 .. HI2-1] of the second that contains the
+     *  fewest-occurring line of the first region, and return {S1, S2, E1,
+     *  E2}, where the run is lines [S1 .. E1-1] of the first sequence and
+     *  [S2 .. E2-1] of the second.  Returns an empty array if the regions
+     *  have nothing in common, and null if every common line occurs more
+     *  than MAX_CHAIN times. */
+    private int[] anchor(int lo1, int hi1, int lo2, int hi2) {
+        for (int i = hi1 - 1; i >= lo1; i -= 1) {
+            int id = _ids1[i];
+            _next[i] = _head[id];
+            _head[id] = i;
+            _count[id] += 1;
+        }
+        boolean common = false;
+        int bestCount = MAX_CHAIN + 1, bestLen = 0;
+        int start1 = -1, start2 = -1;
+        for (int j = lo2; j < hi2; ) {
+            int id = _ids2[j], nextJ = j + 1;
+            common |= _count[id] > 0;
+            if (_count[id] > 0 && _count[id] <= bestCount) {
+                for (int i = _head[id]; i != -1; i = _next[i]) {
+                    int s1 = i, s2 = j, e1 = i + 1, e2 = j + 1;
+                    int rc = _count[id];
+                    while (s1 > lo1 && s2 > lo2
+                           && _ids1[s1 - 1] == _ids2[s2 - 1]) {
+                        s1 -= 1;
+                        s2 -= 1;
+                        rc = Math.min(rc, _count[_ids1[s1]]);
+                    }
+                    while (e1 < hi1 && e2 < hi2 && _ids1[e1] == _ids2[e2]) {
+                        rc = Math.min(rc, _count[_ids1[e1]]);
+                        e1 += 1;
+                        e2 += 1;
+                    }
+                    nextJ = Math.max(nextJ, e2);
+                    if (e1 - s1 > bestLen || rc < bestCount) {
+                        start1 = s1;
+                        start2 = s2;
+                        bestLen = e1 - s1;
+                        bestCount = rc;
+                    }
+                }
+            }
+            j = nextJ;
+        }
+        for (int i = lo1; i < hi1; i += 1) {
+            _head[_ids1[i]] = -1;
+            _count[_ids1[i]] = 0;
+        }
+        if (start1 == -1) {
+            return common ? null : new int[0];
+        }
+        for (int k = 0; k < bestLen; k += 1) {
+            _match[start1 + k] = start2 + k;
+        }
+        return new int[] {start1, start2, start1 + bestLen, start2 + bestLen};
     }
 
     /** The sequences being compared. */
     private List<String> _lines1, _lines2;
 
-    /** The memo table for longest common subsequence.  _lls[a][b] contains the
-     *  length of the longest common sequence of the prefixes of the current
-     *  data sequences of lengths a and b, or -1 if not calculated. */
-    private int[][] _lls;
+    /** The algorithm used by commonSubsequence. */
+    private Algorithm _algorithm = Algorithm.MYERS;
+
+    /** The current sequences as interned line numbers, or null if not yet
+     *  computed. */
+    private int[] _ids1, _ids2;
+    /** The number of distinct lines in the current sequences. */
+    private int _distinct;
+
+    /** The result of commonSubsequence, or null if not yet computed. */
+    private int[] _common;
+    /** Working storage for commonSubsequence: the position in the second
+     *  sequence paired with each line of the first, or -1. */
+    private int[] _match;
 
-    /** A stack structure used by lls. */
-    private int[] _todo;
-    /** Structure for the work queue used by lls. */
-    private int _todop, _llsState, _llsTop1, _llsTop2;
+    /** Working storage for histogram diff: the next occurrence of each line
+     *  of the first region, and the first occurrence and number of
+     *  occurrences of each distinct line in that region. */
+    private int[] _next, _head, _count;
 
 }
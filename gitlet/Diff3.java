@@ -0,0 +1,110 @@
+package gitlet;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/** Line-level three-way merge.  Each side is compared with the common
+ *  ancestor by Diff, and the three files are walked together: lines of the
+ *  ancestor kept by both sides are output as they are, and between them
+ *  each region changed by only one side takes that side's lines, while a
+ *  region changed differently by both is output as a conflict, with the
+ *  two sides' lines between markers.
+ *  @author Sasmit Agarwal
+ */
+class Diff3 {
+
+    /** Markers around the two sides of a conflict. */
+    static final String OURS = "<<<<<<< HEAD\n", SEPARATOR = "=======\n",
+        THEIRS = ">>>>>>>\n";
+
+    /** Write to OUT the merge of the changes from BASE to OURS with those
+     *  from BASE to THEIRS, line by line, and return the number of
+     *  conflicts. */
+    static int merge(byte[] base, byte[] ours, byte[] theirs,
+                     OutputStream out) throws IOException {
+        List<String> lines0 = Pack.lines(base), lines1 = Pack.lines(ours),
+            lines2 = Pack.lines(theirs);
+        int[] match1 = matches(lines0, lines1),
+            match2 = matches(lines0, lines2);
+        int conflicts = 0;
+        int i = 0, a = 0, b = 0;
+        while (true) {
+            while (i < lines0.size() && match1[i] == a && match2[i] == b) {
+                write(out, lines0.get(i));
+                i += 1;
+                a += 1;
+                b += 1;
+            }
+            int j = i;
+            while (j < lines0.size() && (match1[j] < 0 || match2[j] < 0)) {
+                j += 1;
+            }
+            int a1 = j < lines0.size() ? match1[j] : lines1.size(),
+                b1 = j < lines0.size() ? match2[j] : lines2.size();
+            if (i == j && a == a1 && b == b1) {
+                return conflicts;
+            }
+            List<String> chunk0 = lines0.subList(i, j),
+                chunk1 = lines1.subList(a, a1), chunk2 = lines2.subList(b, b1);
+            if (chunk1.equals(chunk0) || chunk1.equals(chunk2)) {
+                write(out, chunk2);
+            } else if (chunk2.equals(chunk0)) {
+                write(out, chunk1);
+            } else {
+                conflicts += 1;
+                write(out, OURS);
+                writeSide(out, chunk1);
+                write(out, SEPARATOR);
+                writeSide(out, chunk2);
+                write(out, THEIRS);
+            }
+            i = j;
+            a = a1;
+            b = b1;
+        }
+    }
+
+    /** Returns, for each line of BASE, the index of the line of OTHER
+     *  paired with it in a longest common subsequence, or -1. */
+    private static int[] matches(List<String> base, List<String> other) {
+        int[] result = new int[base.size()];
+        Arrays.fill(result, -1);
+        Diff diff = new Diff();
+        diff.setSequences(base, other);
+        int[] common = diff.commonSubsequence();
+        for (int k = 0; k < common.length; k += 3) {
+            for (int n = 0; n < common[k + 2]; n += 1) {
+                result[common[k] + n] = common[k + 1] + n;
+            }
+        }
+        return result;
+    }
+
+    /** Write LINES to OUT. */
+    private static void write(OutputStream out, List<String> lines)
+        throws IOException {
+        for (String line : lines) {
+            write(out, line);
+        }
+    }
+
+    /** Write LINES, one side of a conflict, to OUT, adding a newline after
+     *  the last if it lacks one, so that the following marker starts a
+     *  line of its own. */
+    private static void writeSide(OutputStream out, List<String> lines)
+        throws IOException {
+        write(out, lines);
+        if (!lines.isEmpty() && !lines.get(lines.size() - 1).endsWith("\n")) {
+            out.write('\n');
+        }
+    }
+
+    /** Write LINE to OUT, one byte per char. */
+    private static void write(OutputStream out, String line)
+        throws IOException {
+        out.write(line.getBytes(StandardCharsets.ISO_8859_1));
+    }
+}
@@ -0,0 +1,109 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of the line-level three-way merge of Diff3.
+ *  @author Sasmit Agarwal
+ */
+public class Diff3Test {
+
+    /** The result of the last merge. */
+    private String merged;
+
+    /** Merge the changes from BASE to OURS with those from BASE to THEIRS,
+     *  setting merged to the result, and return the number of
+     *  conflicts. */
+    private int merge(String base, String ours, String theirs)
+        throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int conflicts = Diff3.merge(bytes(base), bytes(ours), bytes(theirs),
+                                    out);
+        merged = new String(out.toByteArray(), StandardCharsets.ISO_8859_1);
+        return conflicts;
+    }
+
+    /** Returns the bytes of S. */
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    /** Check that merging OURS and THEIRS from BASE, in either order, is
+     *  clean and gives EXPECTED. */
+    private void clean(String base, String ours, String theirs,
+                       String expected) throws IOException {
+        assertEquals(0, merge(base, ours, theirs));
+        assertEquals(expected, merged);
+        assertEquals(0, merge(base, theirs, ours));
+        assertEquals(expected, merged);
+    }
+
+    @Test
+    public void oneSideChanged() throws IOException {
+        String base = "a\nb\nc\n";
+        clean(base, base, base, base);
+        clean(base, "a\nB\nc\n", base, "a\nB\nc\n");
+        clean(base, "a\nc\n", base, "a\nc\n");
+        clean(base, "a\nb\nb2\nc\n", base, "a\nb\nb2\nc\n");
+        clean(base, "", base, "");
+    }
+
+    @Test
+    public void sameChangeOnBothSides() throws IOException {
+        clean("a\nb\nc\n", "a\nX\nc\n", "a\nX\nc\n", "a\nX\nc\n");
+        clean("a\nb\nc\n", "a\nc\n", "a\nc\n", "a\nc\n");
+    }
+
+    @Test
+    public void separateChanges() throws IOException {
+        String base = "1\n2\n3\n4\n5\n6\n7\n";
+        clean(base, "one\n2\n3\n4\n5\n6\n7\n", "1\n2\n3\n4\n5\n6\nseven\n",
+              "one\n2\n3\n4\n5\n6\nseven\n");
+        clean(base, "1\n2\n3\n5\n6\n7\n", "0\n1\n2\n3\n4\n5\n6\n7\n8\n",
+              "0\n1\n2\n3\n5\n6\n7\n8\n");
+    }
+
+    @Test
+    public void conflict() throws IOException {
+        assertEquals(1, merge("a\nb\nc\n", "a\nX\nc\n", "a\nY\nc\n"));
+        assertEquals("a\n" + Diff3.OURS + "X\n" + Diff3.SEPARATOR + "Y\n"
+                     + Diff3.THEIRS + "c\n", merged);
+        assertEquals("a deletion against a change", 1,
+                     merge("a\nb\nc\n", "a\nc\n", "a\nY\nc\n"));
+        assertEquals("a\n" + Diff3.OURS + Diff3.SEPARATOR + "Y\n"
+                     + Diff3.THEIRS + "c\n", merged);
+    }
+
+    @Test
+    public void conflictCount() throws IOException {
+        String base = "1\n2\n3\n4\n5\n";
+        assertEquals(2, merge(base, "A\n2\n3\n4\nE\n", "a\n2\n3\n4\ne\n"));
+        assertEquals(Diff3.OURS + "A\n" + Diff3.SEPARATOR + "a\n"
+                     + Diff3.THEIRS + "2\n3\n4\n" + Diff3.OURS + "E\n"
+                     + Diff3.SEPARATOR + "e\n" + Diff3.THEIRS, merged);
+        assertEquals("a clean change between conflicts is kept", 2,
+                     merge(base, "A\n2\n3\n4\nE\n", "a\n2\nC\n4\ne\n"));
+        assertTrue(merged.contains("2\nC\n4\n"));
+    }
+
+    @Test
+    public void emptyBase() throws IOException {
+        clean("", "a\n", "", "a\n");
+        clean("", "a\nb\n", "a\nb\n", "a\nb\n");
+        assertEquals(1, merge("", "a\n", "b\n"));
+        assertEquals(Diff3.OURS + "a\n" + Diff3.SEPARATOR + "b\n"
+                     + Diff3.THEIRS, merged);
+    }
+
+    @Test
+    public void unterminatedLastLines() throws IOException {
+        clean("a\nm\nb", "a\nm\nc", "A\nm\nb", "A\nm\nc");
+        assertEquals(1, merge("a\nb", "a\nX", "a\nY"));
+        assertEquals("a\n" + Diff3.OURS + "X\n" + Diff3.SEPARATOR + "Y\n"
+                     + Diff3.THEIRS, merged);
+    }
+}
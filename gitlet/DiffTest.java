@@ -0,0 +1,170 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of Diff with both of its algorithms: that common subsequences
+ *  are common, that Myers' are longest, and that the edits convert the
+ *  first sequence to the second.
+ *  @author Sasmit Agarwal
+ */
+public class DiffTest {
+
+    /** Returns the lines of S, one per character. */
+    private static List<String> lines(String s) {
+        List<String> result = new ArrayList<>();
+        for (char c : s.toCharArray()) {
+            result.add(String.valueOf(c));
+        }
+        return result;
+    }
+
+    /** Returns the length of the longest common subsequence of SEQ1 and
+     *  SEQ2, computed directly. */
+    private static int lcs(List<String> seq1, List<String> seq2) {
+        int[][] len = new int[seq1.size() + 1][seq2.size() + 1];
+        for (int i = seq1.size() - 1; i >= 0; i -= 1) {
+            for (int j = seq2.size() - 1; j >= 0; j -= 1) {
+                len[i][j] = seq1.get(i).equals(seq2.get(j))
+                    ? len[i + 1][j + 1] + 1
+                    : Math.max(len[i + 1][j], len[i][j + 1]);
+            }
+        }
+        return len[0][0];
+    }
+
+    /** Returns the result of applying DIFF's edits to its first
+     *  sequence. */
+    private static List<String> apply(Diff diff) {
+        int[] edits = diff.diffs();
+        List<String> result = new ArrayList<>();
+        int k1 = 0;
+        for (int e = 0; e < edits.length; e += 4) {
+            assertTrue("edits are ordered", edits[e] >= k1);
+            assertTrue("edits are not empty",
+                       edits[e + 1] > 0 || edits[e + 3] > 0);
+            result.addAll(diff.sequence1().subList(k1, edits[e]));
+            result.addAll(diff.sequence2().subList(edits[e + 2],
+                                                   edits[e + 2]
+                                                   + edits[e + 3]));
+            k1 = edits[e] + edits[e + 1];
+        }
+        result.addAll(diff.sequence1().subList(k1, diff.sequence1().size()));
+        return result;
+    }
+
+    /** Check DIFF's common subsequence and edits, using ALGORITHM, and
+     *  return the length of the subsequence. */
+    private static int check(Diff diff, Diff.Algorithm algorithm) {
+        diff.setAlgorithm(algorithm);
+        int[] common = diff.commonSubsequence();
+        int length = 0, e1 = 0, e2 = 0;
+        for (int k = 0; k < common.length; k += 3) {
+            assertTrue("runs are ordered",
+                       common[k] >= e1 && common[k + 1] >= e2);
+            assertTrue(common[k + 2] > 0);
+            for (int n = 0; n < common[k + 2]; n += 1) {
+                assertEquals(diff.get1(common[k] + n),
+                             diff.get2(common[k + 1] + n));
+            }
+            e1 = common[k] + common[k + 2];
+            e2 = common[k + 1] + common[k + 2];
+            length += common[k + 2];
+        }
+        assertEquals(diff.sequence2(), apply(diff));
+        return length;
+    }
+
+    /** Check both algorithms on SEQ1 and SEQ2. */
+    private static void check(List<String> seq1, List<String> seq2) {
+        Diff diff = new Diff();
+        diff.setSequences(seq1, seq2);
+        int longest = lcs(seq1, seq2);
+        assertEquals(longest, diff.lls());
+        assertEquals(longest, check(diff, Diff.Algorithm.MYERS));
+        assertTrue(check(diff, Diff.Algorithm.HISTOGRAM) <= longest);
+        assertEquals(seq1.equals(seq2), diff.sequencesEqual());
+    }
+
+    @Test
+    public void edgeCases() {
+        check(lines(""), lines(""));
+        check(lines(""), lines("abc"));
+        check(lines("abc"), lines(""));
+        check(lines("abc"), lines("abc"));
+        check(lines("abc"), lines("xyz"));
+        check(lines("aaaa"), lines("aa"));
+        check(lines("abcabba"), lines("cbabac"));
+    }
+
+    @Test
+    public void identical() {
+        Diff diff = new Diff();
+        diff.setSequences(lines("abcd"), lines("abcd"));
+        assertArrayEquals(new int[] {0, 0, 4}, diff.commonSubsequence());
+        assertEquals(0, diff.diffs().length);
+        diff.setSequences(lines(""), lines(""));
+        assertEquals(0, diff.commonSubsequence().length);
+        assertEquals(0, diff.diffs().length);
+    }
+
+    @Test
+    public void prefixAndSuffix() {
+        Diff diff = new Diff();
+        diff.setSequences(lines("abXcd"), lines("abYYcd"));
+        assertArrayEquals(new int[] {2, 1, 2, 2}, diff.diffs());
+        diff.setSequences(lines("abcd"), lines("abd"));
+        assertArrayEquals(new int[] {2, 1, 2, 0}, diff.diffs());
+        assertEquals(2, diff.lls(3, 2));
+        assertEquals(0, diff.lls(0, 3));
+    }
+
+    @Test
+    public void histogramAnchorsOnUniqueLines() {
+        List<String> seq1 = Arrays.asList("x", "{", "}", "f", "{", "}", "y");
+        List<String> seq2 = Arrays.asList("z", "{", "}", "g", "{", "}", "f",
+                                          "{", "}", "w");
+        Diff diff = new Diff();
+        diff.setSequences(seq1, seq2);
+        diff.setAlgorithm(Diff.Algorithm.HISTOGRAM);
+        assertArrayEquals("the run around the unique line f is matched",
+                          new int[] {1, 4, 5}, diff.commonSubsequence());
+        check(seq1, seq2);
+    }
+
+    @Test
+    public void randomSequences() {
+        Random rand = new Random(3);
+        for (int trial = 0; trial < 300; trial += 1) {
+            int alphabet = 2 + rand.nextInt(8);
+            List<String> seq1 = new ArrayList<>();
+            for (int i = rand.nextInt(60); i > 0; i -= 1) {
+                seq1.add("line " + rand.nextInt(alphabet));
+            }
+            List<String> seq2 = new ArrayList<>(seq1);
+            for (int i = rand.nextInt(10); i > 0; i -= 1) {
+                int at = seq2.isEmpty() ? 0 : rand.nextInt(seq2.size());
+                if (rand.nextBoolean() || seq2.isEmpty()) {
+                    seq2.add(at, "line " + rand.nextInt(alphabet + 2));
+                } else {
+                    seq2.remove(at);
+                }
+            }
+            if (trial % 10 == 0) {
+                Collections.shuffle(seq2, rand);
+            }
+            check(seq1, seq2);
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void noSequences() {
+        new Diff().lls();
+    }
+}
@@ -0,0 +1,380 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+/** Content-addressed trees mapping file names to blob ids.  Gitlet's
+ *  working directory is flat, so instead of one tree per directory the
+ *  names are fanned out by the hexadecimal digits of their SHA-1 hash: a
+ *  node is either a leaf holding at most MAX_LEAF entries, or an internal
+ *  node whose sixteen children hold the entries whose name hashes have
+ *  each possible next digit.  The shape depends only on the set of
+ *  entries, so equal trees have equal ids, a commit that changes one
+ *  file rewrites only the nodes on that file's path, and comparisons skip
+ *  every subtree whose id is unchanged.  Nodes are stored in the Pack.
+ *  @author Sasmit Agarwal
+ */
+class FileTree {
+
+    /** The largest number of entries held by a leaf. */
+    static final int MAX_LEAF = 64;
+    /** Tags of the two kinds of node in their encoding. */
+    private static final byte LEAF = 'L', INTERNAL = 'I';
+    /** Fan-out of internal nodes. */
+    private static final int FANOUT = 16;
+    /** The most nodes kept in memory. */
+    static final int MAX_NODES = 4096;
+    /** The most hashes of names kept in memory. */
+    static final int MAX_HASHES = 65536;
+
+    /** The last MAX_NODES nodes decoded or stored, by id. */
+    private static final LinkedHashMap<String, Node> nodes =
+        new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(
+                Map.Entry<String, Node> eldest) {
+                return size() > MAX_NODES;
+            }
+        };
+    /** The last MAX_HASHES SHA-1 hashes of file names computed. */
+    private static final LinkedHashMap<String, String> hashes =
+        new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(
+                Map.Entry<String, String> eldest) {
+                return size() > MAX_HASHES;
+            }
+        };
+
+    /** The id of the tree with no entries. */
+    static final String EMPTY = store(new Node(new TreeMap<>()), false);
+
+    /** Returns the blob id of NAME in tree ROOT, or null if ROOT has no
+     *  such entry. */
+    static String get(String root, String name) {
+        Node node = node(root);
+        for (int depth = 0; !node.isLeaf(); depth += 1) {
+            String child = node.children[digit(name, depth)];
+            if (child == null) {
+                return null;
+            }
+            node = node(child);
+        }
+        return node.entries.get(name);
+    }
+
+    /** Returns all the entries of tree ROOT. */
+    static HashMap<String, String> files(String root) {
+        HashMap<String, String> result = new HashMap<>();
+        collect(root, result);
+        return result;
+    }
+
+    /** Returns the id of the tree with entries FILES. */
+    static String build(Map<String, String> files) {
+        return update(EMPTY, files);
+    }
+
+    /** Returns the id of tree ROOT after setting each name in CHANGES to
+     *  its blob id, or removing it where that is null.  Only new nodes are
+     *  written. */
+    static String update(String root, Map<String, String> changes) {
+        if (changes.isEmpty()) {
+            return root;
+        }
+        return update(root, 0, new TreeMap<>(changes));
+    }
+
+    /** Returns the names whose blob ids differ between trees A and B,
+     *  each mapped to its blob ids in A and in B (null where absent).
+     *  Subtrees with equal ids are not visited. */
+    static TreeMap<String, String[]> diff(String a, String b) {
+        TreeMap<String, String[]> result = new TreeMap<>();
+        diff(a, b, result);
+        return result;
+    }
+
+    /** Add the differences between trees A and B to RESULT, as for
+     *  diff(A, B). */
+    private static void diff(String a, String b,
+                             TreeMap<String, String[]> result) {
+        if (Objects.equals(a, b)) {
+            return;
+        }
+        Node na = a == null ? node(EMPTY) : node(a),
+            nb = b == null ? node(EMPTY) : node(b);
+        if (!na.isLeaf() && !nb.isLeaf()) {
+            for (int k = 0; k < FANOUT; k += 1) {
+                diff(na.children[k], nb.children[k], result);
+            }
+            return;
+        }
+        HashMap<String, String> fa = files(a == null ? EMPTY : a),
+            fb = files(b == null ? EMPTY : b);
+        for (Map.Entry<String, String> e : fa.entrySet()) {
+            String other = fb.get(e.getKey());
+            if (!e.getValue().equals(other)) {
+                result.put(e.getKey(), new String[] {e.getValue(), other});
+            }
+        }
+        for (Map.Entry<String, String> e : fb.entrySet()) {
+            if (!fa.containsKey(e.getKey())) {
+                result.put(e.getKey(), new String[] {null, e.getValue()});
+            }
+        }
+    }
+
+    /** Returns the id of the node ID, at depth DEPTH, after applying
+     *  CHANGES as for update. */
+    private static String update(String id, int depth,
+                                 SortedMap<String, String> changes) {
+        Node node = node(id);
+        if (node.isLeaf()) {
+            TreeMap<String, String> entries = new TreeMap<>(node.entries);
+            for (Map.Entry<String, String> e : changes.entrySet()) {
+                if (e.getValue() == null) {
+                    entries.remove(e.getKey());
+                } else {
+                    entries.put(e.getKey(), e.getValue());
+                }
+            }
+            return build(entries, depth);
+        }
+
+        String[] children = node.children.clone();
+        int[] counts = node.counts.clone();
+        for (Map.Entry<Integer, TreeMap<String, String>> e
+                 : split(changes, depth).entrySet()) {
+            int k = e.getKey();
+            String child = update(children[k] == null ? EMPTY : children[k],
+                                  depth + 1, e.getValue());
+            counts[k] = size(child);
+            children[k] = counts[k] == 0 ? null : child;
+        }
+        Node result = new Node(children, counts);
+        if (result.size() <= MAX_LEAF) {
+            TreeMap<String, String> entries = new TreeMap<>();
+            for (String child : children) {
+                if (child != null) {
+                    collect(child, entries);
+                }
+            }
+            return store(new Node(entries), true);
+        }
+        return store(result, true);
+    }
+
+    /** Returns the id of a node at depth DEPTH holding ENTRIES. */
+    private static String build(TreeMap<String, String> entries, int depth) {
+        if (entries.size() <= MAX_LEAF) {
+            return store(new Node(entries), true);
+        }
+        String[] children = new String[FANOUT];
+        int[] counts = new int[FANOUT];
+        for (Map.Entry<Integer, TreeMap<String, String>> e
+                 : split(entries, depth).entrySet()) {
+            children[e.getKey()] = build(e.getValue(), depth + 1);
+            counts[e.getKey()] = e.getValue().size();
+        }
+        return store(new Node(children, counts), true);
+    }
+
+    /** Returns the entries of MAP grouped by the hash digit of their
+     *  names at DEPTH. */
+    private static TreeMap<Integer, TreeMap<String, String>> split(
+        SortedMap<String, String> map, int depth) {
+        TreeMap<Integer, TreeMap<String, String>> result = new TreeMap<>();
+        for (Map.Entry<String, String> e : map.entrySet()) {
+            result.computeIfAbsent(digit(e.getKey(), depth),
+                                   k -> new TreeMap<>())
+                .put(e.getKey(), e.getValue());
+        }
+        return result;
+    }
+
+    /** Call VISIT with the id of tree ROOT and, below each node for which
+     *  it returns true, with the ids of the node's children, or of the
+     *  blobs of its entries if it is a leaf. */
+    static void walk(String root, Predicate<String> visit) {
+        if (!visit.test(root)) {
+            return;
+        }
+        Node node = node(root);
+        if (node.isLeaf()) {
+            for (String blob : node.entries.values()) {
+                visit.test(blob);
+            }
+        } else {
+            for (String child : node.children) {
+                if (child != null) {
+                    walk(child, visit);
+                }
+            }
+        }
+    }
+
+    /** Add all the entries of tree ID to RESULT. */
+    private static void collect(String id, Map<String, String> result) {
+        Node node = node(id);
+        if (node.isLeaf()) {
+            result.putAll(node.entries);
+        } else {
+            for (String child : node.children) {
+                if (child != null) {
+                    collect(child, result);
+                }
+            }
+        }
+    }
+
+    /** Returns the number of entries in tree ID. */
+    private static int size(String id) {
+        return node(id).size();
+    }
+
+    /** Returns the hash digit of NAME used at DEPTH. */
+    private static int digit(String name, int depth) {
+        String hash = hashes.computeIfAbsent(name, Utils::sha1);
+        return Character.digit(hash.charAt(depth), 16);
+    }
+
+    /** Forget the nodes and hashes kept in memory. */
+    static void reset() {
+        nodes.clear();
+        hashes.clear();
+    }
+
+    /** Returns the node with id ID.  The empty tree is never written, so
+     *  its node is made again if it has been forgotten. */
+    private static Node node(String id) {
+        Node result = nodes.get(id);
+        if (result == null && id.equals(EMPTY)) {
+            result = new Node(new TreeMap<>());
+            nodes.put(id, result);
+        } else if (result == null) {
+            byte[] data = Pack.read(id);
+            if (data == null) {
+                throw Utils.error("No tree with id %s.", id);
+            }
+            try {
+                result = Node.read(new DataInputStream(
+                                       new ByteArrayInputStream(data)));
+            } catch (IOException excp) {
+                throw Utils.error("Corrupt tree %s.", id);
+            }
+            nodes.put(id, result);
+        }
+        return result;
+    }
+
+    /** Returns the id of NODE, remembering it, and writing it to the pack
+     *  if WRITE. */
+    private static String store(Node node, boolean write) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            node.write(new DataOutputStream(bytes));
+        } catch (IOException excp) {
+            throw Utils.error("Internal error encoding tree.");
+        }
+        byte[] data = bytes.toByteArray();
+        String id = Utils.sha1("tree", data);
+        if (write && !id.equals(EMPTY)) {
+            Pack.write(id, data);
+        }
+        nodes.put(id, node);
+        return id;
+    }
+
+    /** A decoded tree node. */
+    private static class Node {
+        /** A leaf holding ENTRIES. */
+        Node(TreeMap<String, String> entries) {
+            this.entries = entries;
+        }
+
+        /** An internal node with the given CHILDREN ids (null for empty
+         *  subtrees) and their entry COUNTS. */
+        Node(String[] children, int[] counts) {
+            this.children = children;
+            this.counts = counts;
+        }
+
+        /** Returns true iff this is a leaf. */
+        boolean isLeaf() {
+            return entries != null;
+        }
+
+        /** Returns the number of entries under this node. */
+        int size() {
+            if (isLeaf()) {
+                return entries.size();
+            }
+            int result = 0;
+            for (int n : counts) {
+                result += n;
+            }
+            return result;
+        }
+
+        /** Write this node to OUT: LEAF, the number of entries and each
+         *  name and raw blob id in name order; or INTERNAL and, for each
+         *  child, its entry count followed, if that is not 0, by its raw
+         *  id. */
+        void write(DataOutputStream out) throws IOException {
+            if (isLeaf()) {
+                out.writeByte(LEAF);
+                Codec.writeVarint(out, entries.size());
+                for (Map.Entry<String, String> e : entries.entrySet()) {
+                    Codec.writeString(out, e.getKey());
+                    Codec.writeId(out, e.getValue());
+                }
+            } else {
+                out.writeByte(INTERNAL);
+                for (int k = 0; k < FANOUT; k += 1) {
+                    Codec.writeVarint(out, counts[k]);
+                    if (counts[k] != 0) {
+                        Codec.writeId(out, children[k]);
+                    }
+                }
+            }
+        }
+
+        /** Returns the node written to IN by write. */
+        static Node read(DataInputStream in) throws IOException {
+            Trace.add(Trace.Counter.OBJECTS, 1);
+            if (in.readByte() == LEAF) {
+                TreeMap<String, String> entries = new TreeMap<>();
+                for (int n = Codec.readVarint(in); n > 0; n -= 1) {
+                    entries.put(Codec.readString(in), Codec.readId(in));
+                }
+                return new Node(entries);
+            }
+            String[] children = new String[FANOUT];
+            int[] counts = new int[FANOUT];
+            for (int k = 0; k < FANOUT; k += 1) {
+                counts[k] = Codec.readVarint(in);
+                if (counts[k] != 0) {
+                    children[k] = Codec.readId(in);
+                }
+            }
+            return new Node(children, counts);
+        }
+
+        /** Entries of a leaf, or null. */
+        private TreeMap<String, String> entries;
+        /** Children of an internal node, or null. */
+        private String[] children;
+        /** Number of entries under each child of an internal node. */
+        private int[] counts;
+    }
+}
@@ -0,0 +1,162 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of FileTree: that a tree's id depends only on its entries,
+ *  however it was built, and that lookups and diffs agree with the
+ *  entries.
+ *  @author Sasmit Agarwal
+ */
+public class FileTreeTest {
+
+    /** Number of entries in the large trees, enough for two levels of
+     *  internal nodes. */
+    static final int LARGE = 3000;
+
+    @Before
+    public void setUp() {
+        TestRepository.create();
+    }
+
+    @After
+    public void tearDown() {
+        TestRepository.delete();
+    }
+
+    /** Returns a map of N names to blob ids, with blob ids varied by
+     *  VERSION. */
+    private static HashMap<String, String> files(int n, int version) {
+        HashMap<String, String> result = new HashMap<>();
+        for (int k = 0; k < n; k += 1) {
+            result.put("file" + k + ".txt", Utils.sha1("blob " + k + " "
+                                                        + version));
+        }
+        return result;
+    }
+
+    /** Returns the tree of FILES built by setting one entry at a time, in
+     *  an order shuffled with SEED. */
+    private static String incremental(Map<String, String> files, long seed) {
+        List<String> names = new ArrayList<>(files.keySet());
+        Collections.shuffle(names, new Random(seed));
+        String root = FileTree.EMPTY;
+        for (String name : names) {
+            root = FileTree.update(root, Map.of(name, files.get(name)));
+        }
+        return root;
+    }
+
+    /** Flush the pack and forget every cached node, so that trees are read
+     *  back from the pack. */
+    private static void reload() {
+        Main.flush();
+        Daemon.reset();
+    }
+
+    @Test
+    public void emptyTree() {
+        assertEquals(FileTree.EMPTY, FileTree.build(new HashMap<>()));
+        assertTrue(FileTree.files(FileTree.EMPTY).isEmpty());
+        assertNull(FileTree.get(FileTree.EMPTY, "a.txt"));
+        String root = FileTree.build(files(3, 0));
+        assertEquals(root, FileTree.update(root, new HashMap<>()));
+        HashMap<String, String> removeAll = new HashMap<>();
+        for (String name : files(3, 0).keySet()) {
+            removeAll.put(name, null);
+        }
+        assertEquals(FileTree.EMPTY, FileTree.update(root, removeAll));
+    }
+
+    @Test
+    public void canonicalShape() {
+        HashMap<String, String> all = files(LARGE, 0);
+        String built = FileTree.build(all);
+        assertEquals(built, incremental(all, 1));
+        assertEquals(built, incremental(all, 2));
+
+        HashMap<String, String> extra = new HashMap<>();
+        HashMap<String, String> removal = new HashMap<>();
+        for (int k = LARGE; k < LARGE + 200; k += 1) {
+            extra.put("file" + k + ".txt", Utils.sha1("extra " + k));
+            removal.put("file" + k + ".txt", null);
+        }
+        String grown = FileTree.update(built, extra);
+        assertNotEquals(built, grown);
+        assertEquals(built, FileTree.update(grown, removal));
+    }
+
+    @Test
+    public void shrinksToLeaf() {
+        HashMap<String, String> all = files(LARGE, 0);
+        HashMap<String, String> removal = new HashMap<>();
+        HashMap<String, String> kept = new HashMap<>();
+        for (Map.Entry<String, String> e : all.entrySet()) {
+            if (kept.size() < FileTree.MAX_LEAF) {
+                kept.put(e.getKey(), e.getValue());
+            } else {
+                removal.put(e.getKey(), null);
+            }
+        }
+        String shrunk = FileTree.update(FileTree.build(all), removal);
+        assertEquals(FileTree.build(kept), shrunk);
+        assertEquals(kept, FileTree.files(shrunk));
+    }
+
+    @Test
+    public void lookups() {
+        HashMap<String, String> all = files(LARGE, 0);
+        String root = FileTree.build(all);
+        reload();
+        assertEquals(all, FileTree.files(root));
+        for (Map.Entry<String, String> e : all.entrySet()) {
+            assertEquals(e.getValue(), FileTree.get(root, e.getKey()));
+        }
+        assertNull(FileTree.get(root, "missing.txt"));
+    }
+
+    @Test
+    public void diff() {
+        HashMap<String, String> before = files(LARGE, 0);
+        HashMap<String, String> after = new HashMap<>(before);
+        after.put("file1.txt", Utils.sha1("changed"));
+        after.remove("file2.txt");
+        after.put("new.txt", Utils.sha1("new"));
+        String a = FileTree.build(before), b = FileTree.build(after);
+        reload();
+
+        TreeMap<String, String[]> diff = FileTree.diff(a, b);
+        assertEquals(3, diff.size());
+        assertArrayEquals(new String[] {before.get("file1.txt"),
+                                        after.get("file1.txt")},
+                          diff.get("file1.txt"));
+        assertArrayEquals(new String[] {before.get("file2.txt"), null},
+                          diff.get("file2.txt"));
+        assertArrayEquals(new String[] {null, after.get("new.txt")},
+                          diff.get("new.txt"));
+        assertTrue(FileTree.diff(a, a).isEmpty());
+        assertEquals(3, FileTree.diff(b, a).size());
+        assertEquals(LARGE, FileTree.diff(FileTree.EMPTY, a).size());
+        assertEquals(LARGE, FileTree.diff(a, FileTree.EMPTY).size());
+    }
+
+    @Test
+    public void evictedNodesReread() {
+        HashMap<String, String> all = files(LARGE, 1);
+        String root = FileTree.build(all);
+        Main.flush();
+        FileTree.reset();
+        assertEquals(all, FileTree.files(root));
+        assertTrue(FileTree.files(FileTree.EMPTY).isEmpty());
+    }
+}
@@ -0,0 +1,420 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.zip.CRC32;
+
+/** The write-ahead journal of repository metadata, kept in Main.JOURNAL.
+ *  The metadata a command changes (the new commit tree, the commits it
+ *  makes and the entries it adds to the pack index) are appended to the
+ *  journal as one record, made durable with a single fsync after the
+ *  object data they refer to, and only then are the commit tree replaced
+ *  and the pack index written.
+ *  A crash therefore leaves the repository at the end of some command,
+ *  and no file needs an fsync of its own until a checkpoint.
+ *
+ *  The journal starts with a header: its magic number, version and the
+ *  boot id of the system when it was started.  Each record is its length,
+ *  the CRC-32 of its body and the body: a count of entries, each a kind,
+ *  a length and that many bytes.  A torn last record is discarded.
+ *
+ *  Before the first change in a process the journal is replayed.  If it
+ *  was started in the current boot, only the commit tree can be stale (a
+ *  process died before writing it), and it is rewritten from the last
+ *  record that holds one.  Otherwise writes not yet synced may have been
+ *  lost, so every record is checked against the files it describes and
+ *  any that differ are rewritten; the commit graph and the commit and
+ *  message indexes are then rebuilt, the reachability bitmaps, whose
+ *  object numbers may no longer hold, are dropped, and a checkpoint is
+ *  taken.  Where there is no boot id, only the first case is handled.
+ *
+ *  A checkpoint, taken after CHECKPOINT_RECORDS records or CHECKPOINT_BYTES
+ *  bytes, syncs every file the journal describes and the indexes derived
+ *  from them, and empties the journal.
+ *  @author Sasmit Agarwal
+ */
+class Journal {
+
+    /** Magic number at the start of the journal. */
+    static final int MAGIC = 0x474c4a4e;
+    /** Version of the journal format. */
+    static final int VERSION = 1;
+    /** Kind of an entry holding the commit tree, as written by
+     *  CommitTree.write. */
+    static final byte TREE = 1;
+    /** Kind of an entry holding the raw id of a commit followed by the
+     *  contents of its file in Main.COMMITS. */
+    static final byte COMMIT = 2;
+    /** Kind of an entry holding index entries added to the pack, as
+     *  recovered by Pack.recover. */
+    static final byte OBJECTS = 3;
+    /** Number of records after which a checkpoint is taken.  Set with
+     *  -Dgitlet.checkpoint. */
+    static final int CHECKPOINT_RECORDS =
+        Integer.getInteger("gitlet.checkpoint", 64);
+    /** Size of the journal after which a checkpoint is taken. */
+    static final long CHECKPOINT_BYTES = 1 << 20;
+    /** File holding the boot id on Linux. */
+    static final Path BOOT_ID = Path.of("/proc/sys/kernel/random/boot_id");
+
+    /** Add an entry of kind KIND holding DATA to the next record. */
+    static synchronized void add(byte kind, byte[] data) {
+        replay();
+        pending.add(new Entry(kind, data));
+    }
+
+    /** Add an entry for C, which has been written to FILE, to the next
+     *  record. */
+    static void add(Commit c, File file) {
+        byte[] contents = Utils.readContents(file);
+        add(COMMIT, ByteBuffer.allocate(Utils.RAW_UID_LENGTH
+                                        + contents.length)
+            .put(Utils.rawId(c.getId())).put(contents).array());
+    }
+
+    /** Sync FILE, which may be a directory, before the next record is
+     *  written. */
+    static synchronized void syncBefore(File file) {
+        syncBefore.add(file);
+    }
+
+    /** Make the pending entries durable as one record, after syncing the
+     *  files they refer to, and then write the pack index entries it
+     *  holds.  Does nothing if there are none. */
+    static synchronized void sync() {
+        replay();
+        for (File f : syncBefore) {
+            fsync(f);
+        }
+        syncBefore.clear();
+        if (pending.isEmpty()) {
+            return;
+        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(body)) {
+            Codec.writeVarint(out, pending.size());
+            for (Entry e : pending) {
+                out.writeByte(e.kind);
+                Codec.writeVarint(out, e.data.length);
+                out.write(e.data);
+                if (e.kind == COMMIT) {
+                    commits.add(Utils.hexId(e.data, 0));
+                }
+            }
+        } catch (IOException excp) {
+            throw Utils.error("Internal error encoding journal.");
+        }
+        CRC32 crc = new CRC32();
+        crc.update(body.toByteArray());
+        ByteBuffer record = ByteBuffer.allocate(8 + body.size());
+        record.putInt(body.size()).putInt((int) crc.getValue())
+            .put(body.toByteArray()).flip();
+        try (FileChannel ch = FileChannel.open(Main.JOURNAL.toPath(),
+                                               StandardOpenOption.CREATE,
+                                               StandardOpenOption.WRITE)) {
+            if (ch.size() == 0) {
+                ch.write(header());
+            }
+            long at = ch.size();
+            while (record.hasRemaining()) {
+                at += ch.write(record, at);
+            }
+            ch.force(false);
+            fsyncs += 1;
+            size = at;
+        } catch (IOException excp) {
+            throw Utils.error("Internal error writing journal: %s",
+                              excp.getMessage());
+        }
+        records += 1;
+        pending.clear();
+        Pack.synced();
+    }
+
+    /** Take a checkpoint if the journal has grown past CHECKPOINT_RECORDS
+     *  or CHECKPOINT_BYTES.  Called once the changes recorded by sync
+     *  have been written to their files. */
+    static synchronized void applied() {
+        if (records >= CHECKPOINT_RECORDS || size >= CHECKPOINT_BYTES) {
+            checkpoint();
+        }
+    }
+
+    /** Sync every file described by the journal and the indexes derived
+     *  from them, then empty the journal. */
+    static synchronized void checkpoint() {
+        for (String id : commits) {
+            fsync(Utils.join(Main.COMMITS, id));
+        }
+        for (File f : new File[] {
+                Main.COMMIT_TREE, Main.PACK_INDEX, Main.COMMIT_GRAPH,
+                Main.GRAPH_LOOKUP, Main.PATH_FILTERS, Main.BITMAPS,
+                Main.COMMIT_INDEX, Main.MESSAGES, Main.MESSAGE_INDEX,
+                Main.COMMITS, Main.GITLET_FOLDER }) {
+            fsync(f);
+        }
+        File tmp = Utils.join(Main.GITLET_FOLDER, "journal.tmp");
+        try (FileChannel ch = FileChannel.open(
+                 tmp.toPath(), StandardOpenOption.CREATE,
+                 StandardOpenOption.WRITE,
+                 StandardOpenOption.TRUNCATE_EXISTING)) {
+            ch.write(header());
+            ch.force(false);
+            fsyncs += 1;
+            Files.move(tmp.toPath(), Main.JOURNAL.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw Utils.error("Internal error writing journal: %s",
+                              excp.getMessage());
+        }
+        fsync(Main.GITLET_FOLDER);
+        commits.clear();
+        records = 0;
+        size = 0;
+    }
+
+    /** Bring the files described by the journal up to date with it,
+     *  unless that has been done in this process. */
+    static synchronized void replay() {
+        if (replayed) {
+            return;
+        }
+        replayed = true;
+        commits.clear();
+        records = 0;
+        size = 0;
+        if (!Main.JOURNAL.isFile()) {
+            return;
+        }
+        byte[] journal = Utils.readContents(Main.JOURNAL);
+        ByteBuffer buf = ByteBuffer.wrap(journal);
+        String boot;
+        try {
+            DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(journal));
+            if (in.readInt() != MAGIC || in.readUnsignedByte() != VERSION) {
+                throw Utils.error("Unrecognized journal format.");
+            }
+            boot = Codec.readString(in);
+            buf.position(journal.length - in.available());
+        } catch (IOException excp) {
+            throw Utils.error("Truncated journal.");
+        }
+        ArrayList<ArrayList<Entry>> all = new ArrayList<>();
+        for (ArrayList<Entry> r; (r = record(buf)) != null; ) {
+            all.add(r);
+        }
+        if (buf.position() < journal.length) {
+            truncate(buf.position());
+        }
+        size = buf.position();
+        records = all.size();
+
+        byte[] tree = null;
+        for (ArrayList<Entry> r : all) {
+            for (Entry e : r) {
+                if (e.kind == TREE) {
+                    tree = e.data;
+                } else if (e.kind == COMMIT) {
+                    commits.add(Utils.hexId(e.data, 0));
+                }
+            }
+        }
+        boolean repaired = false;
+        if (tree != null) {
+            repaired = restore(Main.COMMIT_TREE, tree, 0);
+        }
+        if (boot.equals(bootId())) {
+            return;
+        }
+        for (ArrayList<Entry> r : all) {
+            for (Entry e : r) {
+                if (e.kind == COMMIT) {
+                    File f = Utils.join(Main.COMMITS,
+                                        Utils.hexId(e.data, 0));
+                    repaired |= restore(f, e.data, Utils.RAW_UID_LENGTH);
+                } else if (e.kind == OBJECTS) {
+                    repaired |= Pack.recover(e.data);
+                }
+            }
+        }
+        if (repaired) {
+            Pack.synced();
+            for (File f : new File[] {
+                    Main.COMMIT_GRAPH, Main.GRAPH_LOOKUP, Main.PATH_FILTERS,
+                    Main.BITMAPS, Main.COMMIT_INDEX, Main.MESSAGES,
+                    Main.MESSAGE_INDEX }) {
+                f.delete();
+            }
+            CommitGraph.reset();
+            PathFilter.reset();
+            Reachability.reset();
+            CommitIndex.reset();
+            MessageIndex.reset();
+        }
+        checkpoint();
+    }
+
+    /** Forget what is known about the journal, so that it is replayed
+     *  again before the next change. */
+    static synchronized void reset() {
+        replayed = false;
+        pending.clear();
+        syncBefore.clear();
+    }
+
+    /** Returns the number of fsyncs made by this process. */
+    static long fsyncs() {
+        return fsyncs;
+    }
+
+    /** Returns the entries of the record at the position of BUF, advancing
+     *  past it, or null if there is no whole, intact record there. */
+    private static ArrayList<Entry> record(ByteBuffer buf) {
+        if (buf.remaining() < 8) {
+            return null;
+        }
+        int start = buf.position();
+        int length = buf.getInt(), sum = buf.getInt();
+        if (length < 0 || length > buf.remaining()) {
+            buf.position(start);
+            return null;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buf.array(), buf.position(), length);
+        if ((int) crc.getValue() != sum) {
+            buf.position(start);
+            return null;
+        }
+        ArrayList<Entry> result = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(
+                 new ByteArrayInputStream(buf.array(), buf.position(),
+                                                  length))) {
+            for (int n = Codec.readVarint(in); n > 0; n -= 1) {
+                byte kind = in.readByte();
+                result.add(new Entry(kind, Codec.readBytes(in)));
+            }
+        } catch (IOException excp) {
+            buf.position(start);
+            return null;
+        }
+        buf.position(buf.position() + length);
+        return result;
+    }
+
+    /** Make FILE hold the bytes of DATA from OFFSET on, replacing it
+     *  atomically, unless it already does.  Returns true iff FILE was
+     *  rewritten. */
+    private static boolean restore(File file, byte[] data, int offset) {
+        byte[] contents = Arrays.copyOfRange(data, offset, data.length);
+        if (file.isFile()
+            && Arrays.equals(Utils.readContents(file), contents)) {
+            return false;
+        }
+        File tmp = new File(file.getPath() + ".tmp");
+        Utils.writeContents(tmp, contents);
+        try {
+            Files.move(tmp.toPath(), file.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw Utils.error("Internal error restoring %s: %s", file,
+                              excp.getMessage());
+        }
+        return true;
+    }
+
+    /** Cut the journal off at LENGTH bytes, discarding a torn record. */
+    private static void truncate(long length) {
+        try (FileChannel ch = FileChannel.open(Main.JOURNAL.toPath(),
+                                               StandardOpenOption.WRITE)) {
+            ch.truncate(length);
+        } catch (IOException excp) {
+            throw Utils.error("Internal error writing journal: %s",
+                              excp.getMessage());
+        }
+    }
+
+    /** Flush FILE, a file or directory, to disk if it exists. */
+    private static void fsync(File file) {
+        if (!file.exists()) {
+            return;
+        }
+        try (FileChannel ch = FileChannel.open(file.toPath(),
+                                               StandardOpenOption.READ)) {
+            ch.force(true);
+            fsyncs += 1;
+        } catch (IOException excp) {
+            if (!file.isDirectory()) {
+                throw Utils.error("Internal error syncing %s: %s", file,
+                                  excp.getMessage());
+            }
+        }
+    }
+
+    /** Returns the header of a journal started now. */
+    private static ByteBuffer header() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            Codec.writeString(out, bootId());
+        } catch (IOException excp) {
+            throw Utils.error("Internal error encoding journal.");
+        }
+        return ByteBuffer.wrap(bytes.toByteArray());
+    }
+
+    /** Returns the id of the current boot of the system, or "" if it is
+     *  not known. */
+    private static String bootId() {
+        try {
+            return Files.readString(BOOT_ID).trim();
+        } catch (IOException excp) {
+            return "";
+        }
+    }
+
+    /** One entry of a record. */
+    private static class Entry {
+        /** An entry of kind KIND holding DATA. */
+        Entry(byte kind, byte[] data) {
+            this.kind = kind;
+            this.data = data;
+        }
+
+        /** The kind of the entry. */
+        private final byte kind;
+        /** The contents of the entry. */
+        private final byte[] data;
+    }
+
+    /** Entries of the next record. */
+    private static ArrayList<Entry> pending = new ArrayList<>();
+    /** Files to sync before the next record. */
+    private static LinkedHashSet<File> syncBefore = new LinkedHashSet<>();
+    /** Ids of the commits recorded since the last checkpoint. */
+    private static LinkedHashSet<String> commits = new LinkedHashSet<>();
+    /** Number of records since the last checkpoint. */
+    private static int records;
+    /** Size of the journal. */
+    private static long size;
+    /** True iff the journal has been replayed by this process. */
+    private static boolean replayed;
+    /** Number of fsyncs made by this process. */
+    private static long fsyncs;
+}
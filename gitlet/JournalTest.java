@@ -0,0 +1,202 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of the Journal: that replay after a crash in the same boot
+ *  restores only the commit tree, that replay after a crash in another
+ *  boot restores every file a record describes, that torn records are
+ *  discarded, and that the pack index never gets ahead of the journal.
+ *  Each test makes one commit and then damages the files
+ *  it wrote, as a crash would.
+ *  @author Sasmit Agarwal
+ */
+public class JournalTest {
+
+    /** Name of the working file. */
+    static final String NAME = "journalTest.txt";
+    /** Message of the commit made by each test. */
+    static final String MESSAGE = "JournalTest commit";
+
+    /** Contents of the commit tree before and after the commit. */
+    private byte[] treeBefore, treeAfter;
+    /** Id of the commit. */
+    private String id;
+    /** The file holding the commit. */
+    private File commit;
+
+    @Before
+    public void setUp() {
+        TestRepository.create();
+        treeBefore = Utils.readContents(Main.COMMIT_TREE);
+        Utils.writeContents(Utils.join(Main.CWD, NAME), "JournalTest\n");
+        Main.main("add", NAME);
+        Main.main("commit", MESSAGE);
+        treeAfter = Utils.readContents(Main.COMMIT_TREE);
+        id = Repository.tree().headCommitID();
+        commit = Utils.join(Main.COMMITS, id);
+    }
+
+    @After
+    public void tearDown() {
+        TestRepository.delete(NAME);
+    }
+
+    /** Replay the journal as a new process would. */
+    private static void restart() {
+        Daemon.reset();
+        Journal.replay();
+    }
+
+    /** Returns the boot id recorded in the journal. */
+    private static String journalBoot() throws IOException {
+        DataInputStream in = new DataInputStream(
+            new ByteArrayInputStream(Utils.readContents(Main.JOURNAL)));
+        in.readInt();
+        in.readByte();
+        return Codec.readString(in);
+    }
+
+    /** Replace the boot id recorded in the journal with BOOT, keeping its
+     *  records. */
+    private static void setJournalBoot(String boot) throws IOException {
+        DataInputStream in = new DataInputStream(
+            new ByteArrayInputStream(Utils.readContents(Main.JOURNAL)));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(in.readInt());
+        out.writeByte(in.readByte());
+        Codec.readString(in);
+        Codec.writeString(out, boot);
+        out.write(in.readAllBytes());
+        Utils.writeContents(Main.JOURNAL, bytes.toByteArray());
+    }
+
+    /** Returns the length of a journal with boot id BOOT and no
+     *  records. */
+    private static long headerLength(String boot) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Codec.writeString(new DataOutputStream(bytes), boot);
+        return 5 + bytes.size();
+    }
+
+    @Test
+    public void sameBootRestoresTree() throws IOException {
+        long length = Main.JOURNAL.length();
+        Utils.writeContents(Main.COMMIT_TREE, treeBefore);
+        commit.delete();
+        restart();
+        assertArrayEquals(treeAfter, Utils.readContents(Main.COMMIT_TREE));
+        assertFalse("unsynced writes survive a crash within a boot",
+                    commit.exists());
+        assertEquals("no checkpoint is taken", length,
+                     Main.JOURNAL.length());
+    }
+
+    @Test
+    public void otherBootRestoresEverything() throws IOException {
+        byte[] contents = Utils.readContents(commit);
+        String boot = journalBoot();
+        setJournalBoot("JournalTest boot");
+        Utils.writeContents(Main.COMMIT_TREE, treeBefore);
+        Utils.writeContents(commit, "torn");
+        Main.MESSAGE_INDEX.delete();
+        restart();
+        assertArrayEquals(treeAfter, Utils.readContents(Main.COMMIT_TREE));
+        assertArrayEquals(contents, Utils.readContents(commit));
+        assertEquals("a checkpoint starts a journal for this boot",
+                     headerLength(boot), Main.JOURNAL.length());
+        assertEquals(boot, journalBoot());
+        assertNotEquals(CommitGraph.NONE, CommitGraph.position(id));
+        assertEquals(Arrays.asList(id), CommitIndex.find(id, 2));
+        assertTrue(MessageIndex.find(MESSAGE).contains(id));
+        assertEquals("JournalTest\n",
+                     new String(Pack.read(Repository.tree().headCommit()
+                                          .getBlobID(NAME))));
+    }
+
+    @Test
+    public void otherBootWithNothingLost() throws IOException {
+        String boot = journalBoot();
+        setJournalBoot("JournalTest boot");
+        long graph = Main.COMMIT_GRAPH.lastModified();
+        restart();
+        assertEquals(headerLength(boot), Main.JOURNAL.length());
+        assertTrue("nothing rebuilt", Main.COMMIT_GRAPH.isFile());
+        assertEquals(graph, Main.COMMIT_GRAPH.lastModified());
+    }
+
+    @Test
+    public void tornRecordsDiscarded() throws IOException {
+        long length = Main.JOURNAL.length();
+        Files.write(Main.JOURNAL.toPath(), new byte[] {0, 0, 0, 40, 1, 2},
+                    StandardOpenOption.APPEND);
+        restart();
+        assertEquals("a partial record", length, Main.JOURNAL.length());
+        Files.write(Main.JOURNAL.toPath(),
+                    new byte[] {0, 0, 0, 2, 1, 2, 3, 4, 0, 0},
+                    StandardOpenOption.APPEND);
+        restart();
+        assertEquals("a record with a bad checksum", length,
+                     Main.JOURNAL.length());
+        assertArrayEquals(treeAfter, Utils.readContents(Main.COMMIT_TREE));
+    }
+
+    @Test
+    public void checkpointEmptiesJournal() throws IOException {
+        String boot = journalBoot();
+        assertTrue(Main.JOURNAL.length() > headerLength(boot));
+        Journal.checkpoint();
+        assertEquals(headerLength(boot), Main.JOURNAL.length());
+        Utils.writeContents(Main.COMMIT_TREE, treeBefore);
+        restart();
+        assertArrayEquals("nothing is replayed after a checkpoint",
+                          treeBefore, Utils.readContents(Main.COMMIT_TREE));
+    }
+
+    @Test
+    public void indexWaitsForRecord() throws IOException {
+        byte[] data = "JournalTest unsynced\n".getBytes();
+        String blob = Utils.sha1(NAME, data);
+        long pack = Main.PACK.length(), index = Main.PACK_INDEX.length();
+        Pack.write(blob, data);
+        Pack.flush();
+        assertTrue(Pack.contains(blob));
+        assertEquals("nothing is indexed before the record is durable",
+                     index, Main.PACK_INDEX.length());
+        Daemon.reset();
+        try (FileChannel ch = FileChannel.open(Main.PACK.toPath(),
+                                               StandardOpenOption.WRITE)) {
+            ch.truncate(pack);
+        }
+        setJournalBoot("JournalTest boot");
+        restart();
+        assertFalse("objects lost with the pack are not indexed",
+                    Pack.contains(blob));
+        Pack.write(blob, data);
+        Main.flush();
+        assertTrue(Main.PACK.length() > pack);
+        assertTrue(Main.PACK_INDEX.length() > index);
+        Daemon.reset();
+        assertArrayEquals(data, Pack.read(blob));
+    }
+
+    @Test(expected = GitletException.class)
+    public void rejectsUnknownJournal() {
+        Utils.writeContents(Main.JOURNAL, "not a journal");
+        restart();
+    }
+}
@@ -0,0 +1,101 @@
+package gitlet;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of large objects, which are streamed into files of their own
+ *  rather than packed: that their ids are those of the same contents
+ *  hashed in memory, and that they survive commit and checkout.  The
+ *  working files are just above Pack.LARGE_OBJECT, so the unit target
+ *  lowers it with -Dgitlet.largeObject.
+ *  @author Sasmit Agarwal
+ */
+public class LargeObjectTest {
+
+    /** Names of the working files. */
+    static final String[] NAMES = {"largeTest1.bin", "largeTest2.bin"};
+
+    @Before
+    public void setUp() {
+        TestRepository.create();
+    }
+
+    @After
+    public void tearDown() {
+        TestRepository.delete(NAMES);
+    }
+
+    /** Returns LARGE_OBJECT + 1000 bytes, random with SEED. */
+    static byte[] contents(long seed) {
+        byte[] result = new byte[(int) Pack.LARGE_OBJECT + 1000];
+        new Random(seed).nextBytes(result);
+        return result;
+    }
+
+    /** Returns the working file NAME. */
+    private static File file(String name) {
+        return Utils.join(Main.CWD, name);
+    }
+
+    /** Returns the names of the files left in the large object
+     *  directory that are not objects. */
+    private static String[] temporaries() {
+        return Main.LARGE_OBJECTS.list((dir, name) -> name.endsWith(".tmp"));
+    }
+
+    @Test
+    public void streamedIdsMatch() {
+        byte[] data = contents(1);
+        Utils.writeContents(file(NAMES[0]), data);
+        String id = Utils.sha1(NAMES[0], data);
+        assertEquals(id, Utils.sha1(NAMES[0], file(NAMES[0])));
+        assertEquals(id, StatCache.hash(file(NAMES[0]), NAMES[0]));
+        assertEquals(id, Pack.write(NAMES[0], file(NAMES[0]), false));
+        assertEquals("an object already stored is not stored again", id,
+                     Pack.write(NAMES[0], file(NAMES[0]), false));
+        assertEquals(0, temporaries().length);
+        Main.flush();
+        Daemon.reset();
+        assertTrue(Pack.contains(id));
+        assertArrayEquals(data, Pack.read(id));
+    }
+
+    @Test
+    public void survivesCheckout() {
+        byte[][] data = {contents(2), contents(3)};
+        for (int k = 0; k < NAMES.length; k += 1) {
+            Utils.writeContents(file(NAMES[k]), data[k]);
+        }
+        Main.main("add", NAMES[0], NAMES[1]);
+        Main.main("commit", "two large objects");
+        String first = Repository.tree().headCommitID();
+        Commit head = Repository.tree().headCommit();
+        for (int k = 0; k < NAMES.length; k += 1) {
+            assertEquals(Utils.sha1(NAMES[k], data[k]),
+                         head.getBlobID(NAMES[k]));
+        }
+        assertEquals(0, temporaries().length);
+
+        byte[] changed = Arrays.copyOf(data[0], data[0].length + 1);
+        Utils.writeContents(file(NAMES[0]), changed);
+        Main.main("add", NAMES[0]);
+        Main.main("commit", "one changed");
+
+        Daemon.reset();
+        for (String name : NAMES) {
+            file(name).delete();
+        }
+        Main.main("checkout", "--", NAMES[0]);
+        Main.main("checkout", "--", NAMES[1]);
+        assertArrayEquals(changed, Utils.readContents(file(NAMES[0])));
+        assertArrayEquals(data[1], Utils.readContents(file(NAMES[1])));
+        Main.main("checkout", first, "--", NAMES[0]);
+        assertArrayEquals(data[0], Utils.readContents(file(NAMES[0])));
+    }
+}
@@ -1,12 +1,39 @@
 package gitlet;
 
 import java.io.File;
-import java.util.HashSet;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.StandardCopyOption;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 import java.util.List;
-import java.util.LinkedList;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
 import java.util.Date;
-import java.util.Formatter;
-import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.Locale;
+import java.util.TreeSet;
 
 /** Driver class for Gitlet, the tiny stupid version-control system.
  *  @author Sasmit Agarwal
@@ -22,11 +49,35 @@ public class Main {
     static final File COMMITS = Utils.join(GITLET_FOLDER, "commits");
     /** Used to store file directories. */
     static final File BLOBS = Utils.join(GITLET_FOLDER, "blobs");
+    /** Used to store objects too large to pack. */
+    static final File LARGE_OBJECTS = Utils.join(GITLET_FOLDER, "large");
+    /** Used to store packed objects. */
+    static final File PACK = Utils.join(GITLET_FOLDER, "objects.pack");
+    /** Used to store the index of packed objects. */
+    static final File PACK_INDEX = Utils.join(GITLET_FOLDER, "objects.idx");
     /** Used to store file directories. */
     static final File COMMIT_TREE = Utils.join(GITLET_FOLDER, "commitTree.x");
-    /** Used to store file directories. */
-    static final File SHORTENED_COMMITS =
-            Utils.join(GITLET_FOLDER, "commits.x");
+    /** Used to store the index of commit ids. */
+    static final File COMMIT_INDEX = Utils.join(GITLET_FOLDER, "commitIndex");
+    /** Used to store the log of commit messages. */
+    static final File MESSAGES = Utils.join(GITLET_FOLDER, "messages");
+    /** Used to store the index of commit messages and their words. */
+    static final File MESSAGE_INDEX = Utils.join(GITLET_FOLDER, "messages.idx");
+    /** Used to store the commit graph. */
+    static final File COMMIT_GRAPH = Utils.join(GITLET_FOLDER, "commitGraph");
+    /** Used to store the index of commits in the graph by id. */
+    static final File GRAPH_LOOKUP =
+        Utils.join(GITLET_FOLDER, "commitGraph.idx");
+    /** Used to store the changed-path filters of the commit graph. */
+    static final File PATH_FILTERS = Utils.join(GITLET_FOLDER, "pathFilters");
+    /** Used to store the reachability bitmaps of selected commits. */
+    static final File BITMAPS = Utils.join(GITLET_FOLDER, "bitmaps");
+    /** Used to store the stat data and hashes of files. */
+    static final File STAT_CACHE = Utils.join(GITLET_FOLDER, "index");
+    /** Used to store the journal of metadata changes. */
+    static final File JOURNAL = Utils.join(GITLET_FOLDER, "journal");
+    /** Used to store the socket on which a Daemon listens. */
+    static final File DAEMON_SOCKET = Utils.join(GITLET_FOLDER, "daemon.sock");
 
     /** Used to store file directories. */
     static final File STAGE = Utils.join(GITLET_FOLDER, "stage");
@@ -35,24 +86,69 @@ public class Main {
     /** Used to store file directories. */
     static final File REMOVAL = Utils.join(STAGE, "removal");
 
-    /** Used to store format for date conversions. */
-    static final String FORMAT = "%ta %tb %td %tT %tY %tz";
-
-    /** Usage: java gitlet.Main ARGS, where ARGS contains
-     *  <COMMAND> <OPERAND> .... */
+    /** Used to store the number of threads used to stage files.  Set with
+     *  -Dgitlet.threads. */
+    static final int THREADS = Integer.getInteger("gitlet.threads",
+            Runtime.getRuntime().availableProcessors());
+
+    /** Used to store the number of files written at once by checkout.  Set
+     *  with -Dgitlet.ioThreads. */
+    static final int IO_THREADS = Integer.getInteger("gitlet.ioThreads", 16);
+
+    /** Used to store the number of commits global-log decodes ahead of
+     *  the one it is printing. */
+    static final int LOG_WINDOW = 256;
+
+    /** Used to store the number of commits painted in search of merge
+     *  bases before the search turns to reachability bitmaps. */
+    static final int PAINT_LIMIT = 4096;
+
+    /** Used to store whether commands are being run by a Daemon, so that
+     *  errors end the command rather than the JVM. */
+    static volatile boolean resident;
+
+    /** Used to store format for date conversions: that of the Formatter
+     *  pattern "%ta %tb %td %tT %tY %tz", but reusable across threads. */
+    static final DateTimeFormatter FORMAT =
+            DateTimeFormatter.ofPattern("EEE MMM dd HH:mm:ss yyyy Z",
+                    Locale.getDefault(Locale.Category.FORMAT));
+
+    /** Usage: java gitlet.Main [--trace] ARGS, where ARGS contains
+     *  <COMMAND> <OPERAND> ....  With --trace, the time and I/O of the
+     *  command are printed to the standard error, as described in
+     *  Trace. */
     public static void main(String... args) {
+        boolean trace = args.length > 0 && args[0].equals("--trace");
+        if (trace) {
+            args = Arrays.copyOfRange(args, 1, args.length);
+        }
+        Trace.begin(args.length > 0 ? args[0] : "", trace);
+        try {
+            command(args);
+        } finally {
+            Trace.finish();
+        }
+    }
+
+    /** Run the command ARGS. */
+    private static void command(String... args) {
         if (args.length == 0) {
             CommitTree tree = getTree();
             System.out.println(tree.getBranchToCommit());
             return;
         }
+        if (GITLET_FOLDER.isDirectory()) {
+            Trace.Span span = Trace.start(Trace.Phase.REPLAY);
+            Journal.replay();
+            Trace.end(span, 0);
+        }
 
         switch (args[0]) {
         case "init":
             init();
             break;
         case "add":
-            add(args[1]);
+            add(Arrays.copyOfRange(args, 1, args.length));
             break;
         case "commit":
             commit(args[1]);
@@ -61,13 +157,26 @@ public class Main {
             rm(args[1]);
             break;
         case "log":
-            log();
+            if (args.length == 3 && args[1].equals("--")) {
+                log(args[2]);
+            } else {
+                log();
+            }
             break;
         case "global-log":
             globalLog();
             break;
         case "find":
-            find(args[1]);
+            if (args[1].equals("--word")) {
+                findWord(args[2]);
+            } else if (args[1].equals("--grep")) {
+                grep(args[2]);
+            } else {
+                find(args[1]);
+            }
+            break;
+        case "reindex":
+            reindex();
             break;
         case "status":
             status();
@@ -95,6 +204,15 @@ public class Main {
         default:
             break;
         }
+        flush();
+    }
+
+    public static void flush() {
+        Trace.Span span = Trace.start(Trace.Phase.FLUSH);
+        Pack.flush();
+        Repository.flush();
+        StatCache.flush();
+        Trace.end(span, 0);
     }
 
     public static void init() {
@@ -108,37 +226,126 @@ public class Main {
         ADDITION.mkdirs();
         REMOVAL.mkdirs();
 
-        HashMap<String, String> h = new HashMap<>();
-        saveShortenedCommits(h);
-
         CommitTree tree = new CommitTree();
         saveTree(tree);
     }
 
-    public static void add(String fname) {
-        if (Utils.join(REMOVAL, fname).exists()) {
-            Utils.join(REMOVAL, fname).delete();
+    public static void add(String... paths) {
+        TreeSet<String> fnames = new TreeSet<>();
+        for (String path : paths) {
+            if (!isGlob(path) || Utils.join(CWD, path).isFile()
+                    || Repository.removed().contains(path)) {
+                if (!Utils.join(CWD, path).isFile()
+                        && !Repository.removed().contains(path)) {
+                    error("File does not exist.");
+                }
+                fnames.add(path);
+                continue;
+            }
+            PathMatcher m =
+                    FileSystems.getDefault().getPathMatcher("glob:" + path);
+            boolean found = false;
+            for (String fname : filesIn(CWD)) {
+                if (m.matches(Path.of(fname))) {
+                    fnames.add(fname);
+                    found = true;
+                }
+            }
+            if (!found) {
+                error("File does not exist.");
+            }
+        }
+
+        stage(fnames, THREADS);
+    }
+
+    /** Stage FNAMES on THREADS threads.  The workers only record the
+     *  files that have vanished since they were listed, which are
+     *  reported here, on the calling thread, once all have finished. */
+    public static void stage(Collection<String> fnames, int threads) {
+        Map<String, String> tracked = Repository.head().getFileToBlobID();
+        Set<String> missing = ConcurrentHashMap.newKeySet();
+        parallel(fnames, threads, fname -> {
+            if (!add(fname, tracked.get(fname))) {
+                missing.add(fname);
+            }
+        });
+        if (!missing.isEmpty()) {
+            error("File does not exist.");
+        }
+    }
+
+    /** Stage FNAME, whose blob in the head commit is HEADBLOBID (null if
+     *  untracked), on the calling thread. */
+    public static void stage(String fname, String headBlobID) {
+        if (!add(fname, headBlobID)) {
+            error("File does not exist.");
+        }
+    }
+
+    public static <T> void parallel(Collection<T> items, int threads,
+                                    Consumer<? super T> action) {
+        if (items.isEmpty()) {
             return;
         }
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, threads));
+        try {
+            pool.submit(() -> items.parallelStream().forEach(action)).get();
+        } catch (InterruptedException | ExecutionException excp) {
+            Throwable cause = excp.getCause() == null ? excp : excp.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw Utils.error("Internal error: %s", cause);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /** Stage FNAME, whose blob in the head commit is HEADBLOBID (null if
+     *  untracked), and return true, or return false, having done nothing,
+     *  if it does not exist.  May be called from several threads at once,
+     *  so it reports nothing itself. */
+    public static boolean add(String fname, String headBlobID) {
+        if (Repository.removed().contains(fname)) {
+            Repository.unstageRemoval(fname);
+            return true;
+        }
 
         File file = Utils.join(ADDITION, fname);
         File origfile = Utils.join(CWD, fname);
-        if (!origfile.exists()) {
-            error("File does not exist.");
+        String hash = StatCache.hash(origfile, fname);
+        if (hash == null) {
+            return false;
         }
-        Object contents = Utils.readContents(origfile);
-        String hash = Utils.sha1(fname, contents);
 
-        CommitTree tree = getTree();
-        Commit c = tree.headCommit();
-        if (c.getFileToBlobID().containsKey(fname)
-                && c.getFileToBlobID().get(fname).equals(hash)) {
-            if (file.exists()) {
-                Utils.restrictedDelete(file);
+        if (hash.equals(headBlobID)) {
+            Repository.unstage(fname);
+            return true;
+        }
+        if (Repository.staged().contains(fname)
+                && hash.equals(StatCache.hash(file, fname))) {
+            return true;
+        }
+        try {
+            Files.copy(origfile.toPath(), file.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException excp) {
+            throw Utils.error("Internal error staging %s: %s", fname,
+                    excp.getMessage());
+        }
+        StatCache.record(file, hash);
+        Repository.stage(fname);
+        return true;
+    }
+
+    public static boolean isGlob(String path) {
+        for (char c : "*?[{".toCharArray()) {
+            if (path.indexOf(c) >= 0) {
+                return true;
             }
-            return;
         }
-        Utils.writeContents(file, contents);
+        return false;
     }
 
     public static void commit(String msg) {
@@ -156,21 +363,18 @@ public class Main {
     }
 
     public static boolean changesStaged() {
-        List<String> x = Utils.plainFilenamesIn(ADDITION);
-        List<String> y = Utils.plainFilenamesIn(REMOVAL);
-        return (x != null && !x.isEmpty()) || (y != null && !y.isEmpty());
+        return Repository.changesStaged();
     }
 
     public static void rm(String fname) {
-        if (Utils.join(ADDITION, fname).exists()) {
-            Utils.join(ADDITION, fname).delete();
+        if (Repository.staged().contains(fname)) {
+            Repository.unstage(fname);
             return;
         }
 
-        Commit headCommit = getTree().headCommit();
+        Commit headCommit = Repository.head();
         if (headCommit.isTracked(fname)) {
-            Utils.writeContents(Utils.join(REMOVAL, fname),
-                    "staged for removal");
+            Repository.stageRemoval(fname);
             File f = Utils.join(CWD, fname);
             if (f.exists()) {
                 Utils.restrictedDelete(f);
@@ -181,38 +385,87 @@ public class Main {
     }
 
     public static void log() {
-        Commit c = getTree().headCommit();
-        while (c != null) {
-            System.out.println(c);
-            c = c.parent();
+        int c = CommitGraph.position(getTree().headCommitID());
+        while (c != CommitGraph.NONE) {
+            System.out.println(CommitGraph.commit(c));
+            c = CommitGraph.parent(c);
         }
     }
 
-    public static void globalLog() {
-        List<String> x = Utils.plainFilenamesIn(COMMITS);
-        if (x != null && !x.isEmpty()) {
-            for (String y : x) {
-                System.out.println(Commit.getCommit(y));
+    /** Print, like log, the commits in the first-parent history of the
+     *  head that changed the file FNAME from their first parent, using
+     *  the changed-path filters to skip, without reading them, the
+     *  commits that certainly did not. */
+    public static void log(String fname) {
+        int c = CommitGraph.position(getTree().headCommitID());
+        while (c != CommitGraph.NONE) {
+            int p = CommitGraph.parent(c);
+            if (PathFilter.mayHaveChanged(c, fname)) {
+                Commit commit = CommitGraph.commit(c);
+                String before = p == CommitGraph.NONE ? null
+                    : CommitGraph.commit(p).getBlobID(fname);
+                if (!Objects.equals(commit.getBlobID(fname), before)) {
+                    System.out.println(commit);
+                }
             }
+            c = p;
         }
     }
 
-    public static void find(String msg) {
-        List<String> x = Utils.plainFilenamesIn(COMMITS);
-        boolean found = false;
-        if (x != null && !x.isEmpty()) {
-            for (String y : x) {
-                Commit c = Commit.getCommit(y);
-                if (c.getMsg().equals(msg)) {
-                    System.out.println(c.getId());
-                    found = true;
+    public static void globalLog() {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        ArrayDeque<Future<String>> window = new ArrayDeque<>();
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out),
+                Utils.COPY_BUFFER);
+        try (DirectoryStream<Path> commits = Files.newDirectoryStream(
+                COMMITS.toPath(), p -> Files.isRegularFile(p))) {
+            for (Path p : commits) {
+                window.add(pool.submit(() ->
+                        Commit.read(p.toFile()).toString()));
+                if (window.size() >= LOG_WINDOW) {
+                    out.write(window.remove().get());
+                    out.write(System.lineSeparator());
                 }
             }
+            while (!window.isEmpty()) {
+                out.write(window.remove().get());
+                out.write(System.lineSeparator());
+            }
+            out.flush();
+        } catch (IOException | InterruptedException | ExecutionException excp) {
+            Throwable cause = excp.getCause() == null ? excp : excp.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw Utils.error("Internal error: %s", cause);
+        } finally {
+            pool.shutdownNow();
         }
+    }
+
+    public static void find(String msg) {
+        printFound(MessageIndex.find(msg));
+    }
+
+    public static void findWord(String word) {
+        printFound(MessageIndex.findWord(word));
+    }
+
+    public static void grep(String text) {
+        printFound(MessageIndex.grep(text));
+    }
 
-        if (!found) {
+    public static void printFound(Collection<String> ids) {
+        if (ids.isEmpty()) {
             error("Found no commit with that message.");
         }
+        for (String id : ids) {
+            System.out.println(id);
+        }
+    }
+
+    public static void reindex() {
+        MessageIndex.rebuild();
     }
 
     public static void status() {
@@ -227,43 +480,92 @@ public class Main {
         System.out.println();
 
         System.out.println("=== Staged Files ===");
-        List<String> x = Utils.plainFilenamesIn(ADDITION);
-        if (x != null && !x.isEmpty()) {
-            for (String file : x) {
-                System.out.println(file);
-            }
+        for (String file : Repository.staged()) {
+            System.out.println(file);
         }
         System.out.println();
 
         System.out.println("=== Removed Files ===");
-        x = Utils.plainFilenamesIn(REMOVAL);
-        if (x != null && !x.isEmpty()) {
-            for (String file : x) {
-                System.out.println(file);
-            }
+        for (String file : Repository.removed()) {
+            System.out.println(file);
+        }
+        System.out.println();
+
+        TreeSet<String> modified = new TreeSet<>();
+        TreeSet<String> untracked = new TreeSet<>();
+        unstagedChanges(tree.headCommit(), modified, untracked);
+        System.out.println("=== Modifications Not Staged For Commit ===");
+        for (String file : modified) {
+            System.out.println(file);
         }
         System.out.println();
 
-        System.out.println("=== Modifications Not Staged For Commit ===\n");
         System.out.println("=== Untracked Files ===");
+        for (String file : untracked) {
+            System.out.println(file);
+        }
+        System.out.println();
+    }
+
+    public static void unstagedChanges(Commit head, TreeSet<String> modified,
+                                       TreeSet<String> untracked) {
+        Set<String> staged = Repository.staged();
+        Set<String> removed = Repository.removed();
+        HashSet<String> working = new HashSet<>(filesIn(CWD));
+        Map<String, String> tracked = head.getFileToBlobID();
+
+        for (String file : working) {
+            String hash;
+            if (staged.contains(file)) {
+                hash = StatCache.hash(Utils.join(CWD, file), file);
+                if (!hash.equals(StatCache.hash(Utils.join(ADDITION, file),
+                                                file))) {
+                    modified.add(file + " (modified)");
+                }
+            } else if (tracked.containsKey(file) && !removed.contains(file)) {
+                hash = StatCache.hash(Utils.join(CWD, file), file);
+                if (!hash.equals(tracked.get(file))) {
+                    modified.add(file + " (modified)");
+                }
+            } else {
+                untracked.add(file);
+            }
+        }
+        for (String file : staged) {
+            if (!working.contains(file)) {
+                modified.add(file + " (deleted)");
+            }
+        }
+        for (String file : tracked.keySet()) {
+            if (!removed.contains(file) && !staged.contains(file)
+                    && !working.contains(file)) {
+                modified.add(file + " (deleted)");
+            }
+        }
+    }
+
+    public static List<String> filesIn(File dir) {
+        List<String> x = Utils.plainFilenamesIn(dir);
+        return x == null ? List.of() : x;
     }
 
     public static void checkoutf(Commit c, String fname) {
-        if (!c.getFileToBlobID().containsKey(fname)) {
+        String blobID = c.getBlobID(fname);
+        if (blobID == null) {
             error("File does not exist in that commit.");
         }
-        byte[] contents = getBlob(c.getFileToBlobID().get(fname));
-        Utils.writeContents(Utils.join(CWD, fname), contents);
+        Pack.copy(blobID, Utils.join(CWD, fname));
+        StatCache.record(Utils.join(CWD, fname), blobID);
     }
 
     public static void checkoutf(String commitID, String fname) {
-        if (commitID.length() == 6) {
+        if (commitID.length() < Utils.UID_LENGTH) {
             commitID = getFullId(commitID);
         }
         if (!Utils.join(COMMITS, commitID).exists()) {
             error("No commit with that id exists.");
         }
-        checkoutf(Commit.getCommit(commitID), fname);
+        checkoutf(Repository.commit(commitID), fname);
     }
 
     public static void checkoutb(String branch) {
@@ -275,7 +577,7 @@ public class Main {
         }
 
         Commit commitFromBranch =
-                Commit.getCommit(tree.getBranchToCommit().get(branch));
+                Repository.commit(tree.getBranchToCommit().get(branch));
         checkoutCommit(commitFromBranch);
 
         tree.setActiveBranch(branch);
@@ -284,37 +586,44 @@ public class Main {
     }
 
     public static void checkoutCommit(Commit c) {
-        Commit headCommit = getTree().headCommit();
-        List<String> x = Utils.plainFilenamesIn(CWD);
-        if (x != null) {
-            for (String f : x) {
-                if (!headCommit.isTracked(f) && c.isTracked(f)) {
-                    error("There is an untracked file in the way; "
-                            + "delete it, or add and commit it first.");
-                }
+        Commit headCommit = Repository.head();
+        TreeMap<String, String[]> changes =
+                FileTree.diff(headCommit.getTreeID(), c.getTreeID());
+        for (Map.Entry<String, String[]> e : changes.entrySet()) {
+            if (e.getValue()[0] == null
+                    && Utils.join(CWD, e.getKey()).isFile()) {
+                error("There is an untracked file in the way; "
+                        + "delete it, or add and commit it first.");
             }
-            for (String f : x) {
-                if (headCommit.isTracked(f) && !c.isTracked(f)) {
-                    Utils.restrictedDelete(Utils.join(CWD, f));
-                }
+        }
+        for (Map.Entry<String, String[]> e : changes.entrySet()) {
+            File f = Utils.join(CWD, e.getKey());
+            if (e.getValue()[1] == null && f.isFile()) {
+                Utils.restrictedDelete(f);
+                StatCache.forget(f);
             }
         }
 
-        for (String file : c.getFileToBlobID().keySet()) {
-            Utils.writeContents(Utils.join(CWD, file),
-                    getBlob(c.getFileToBlobID().get(file)));
-        }
+        parallel(c.getFileToBlobID().entrySet(), IO_THREADS, e -> {
+            File f = Utils.join(CWD, e.getKey());
+            if (!changes.containsKey(e.getKey()) && f.isFile()
+                    && e.getValue().equals(StatCache.hash(f, e.getKey()))) {
+                return;
+            }
+            Pack.copy(e.getValue(), f);
+            StatCache.record(f, e.getValue());
+        });
     }
 
     public static void reset(String commitID) {
-        if (commitID.length() == 6) {
+        if (commitID.length() < Utils.UID_LENGTH) {
             commitID = getFullId(commitID);
         }
         if (!Utils.join(COMMITS, commitID).exists()) {
             error("No commit with that id exists.");
         }
         CommitTree tree = getTree();
-        checkoutCommit(Commit.getCommit(commitID));
+        checkoutCommit(Repository.commit(commitID));
 
         tree.getBranchToCommit().put(tree.getActiveBranch(), commitID);
         saveTree(tree);
@@ -351,7 +660,7 @@ public class Main {
             error("Cannot merge a branch with itself.");
         }
         Commit curr = tree.headCommit(), given =
-                Commit.getCommit(tree.getBranchToCommit().get(branch));
+                Repository.commit(tree.getBranchToCommit().get(branch));
         Commit lca = lca(curr, given);
         if (lca.equals(given)) {
             error("Given branch is an ancestor of the current branch.");
@@ -360,32 +669,21 @@ public class Main {
             error("Current branch fast-forwarded.");
         }
 
-        for (String file : lca.getFileToBlobID().keySet()) {
-            if (!changesToFile(file, lca, curr)
-                    && changesToFile(file, lca, given)) {
-                if (given.getFileToBlobID().containsKey(file)) {
+        TreeMap<String, String[]> ours =
+                FileTree.diff(lca.getTreeID(), curr.getTreeID());
+        TreeMap<String, String[]> theirs =
+                FileTree.diff(lca.getTreeID(), given.getTreeID());
+        for (Map.Entry<String, String[]> e : theirs.entrySet()) {
+            String file = e.getKey(), blobID = e.getValue()[1];
+            if (!ours.containsKey(file)) {
+                if (blobID != null) {
                     checkoutf(given, file);
-                    add(file);
+                    stage(file, e.getValue()[0]);
                 } else {
                     rm(file);
                 }
-            }
-        }
-
-        HashSet<String> set = new HashSet<>();
-        set.addAll(given.getFileToBlobID().keySet());
-        set.addAll(curr.getFileToBlobID().keySet());
-
-        for (String file : set) {
-            if (!lca.getFileToBlobID().containsKey(file)
-                    && !curr.getFileToBlobID().containsKey(file)
-                    && given.getFileToBlobID().containsKey(file)) {
-                checkoutf(given, file);
-                add(file);
-            } else if (changesToFile(file, given, curr)
-                    && changesToFile(file, given, lca)
-                    && changesToFile(file, curr, lca)) {
-                mergeConflict(file, curr, given);
+            } else if (!Objects.equals(blobID, ours.get(file)[1])) {
+                mergeFile(file, e.getValue()[0], ours.get(file)[1], blobID);
             }
         }
 
@@ -398,105 +696,111 @@ public class Main {
         saveTree(tree);
     }
 
-    public static void mergeConflict(String file, Commit c1, Commit c2) {
+    public static void mergeFile(String file, String baseID, String oursID,
+                                 String theirsID) {
+        if (oursID == null || theirsID == null) {
+            mergeConflict(file, oursID, theirsID);
+            return;
+        }
+        int conflicts;
+        try (OutputStream out = new BufferedOutputStream(
+                Files.newOutputStream(Utils.join(CWD, file).toPath()))) {
+            conflicts = Diff3.merge(baseID == null ? new byte[0]
+                    : getBlob(baseID), getBlob(oursID), getBlob(theirsID), out);
+        } catch (IOException excp) {
+            throw Utils.error("Internal error merging %s: %s", file,
+                    excp.getMessage());
+        }
+        stage(file, oursID);
+        if (conflicts > 0) {
+            System.out.println("Encountered a merge conflict.");
+        }
+    }
+
+    public static void mergeConflict(String file, String oursID,
+                                     String theirsID) {
         byte[] x = new byte[] {}, y = new byte[] {};
-        if (c1.getFileToBlobID().containsKey(file)) {
-            x = getBlob(c1.getFileToBlobID().get(file));
+        if (oursID != null) {
+            x = getBlob(oursID);
         }
-        if (c2.getFileToBlobID().containsKey(file)) {
-            y = getBlob(c2.getFileToBlobID().get(file));
+        if (theirsID != null) {
+            y = getBlob(theirsID);
         }
         Utils.writeContents(Utils.join(CWD, file),
                 "<<<<<<< HEAD\n", x, "=======\n", y, ">>>>>>>\n");
-        add(file);
+        stage(file, oursID);
         System.out.println("Encountered a merge conflict.");
     }
 
-    public static boolean changesToFile(String file, Commit c1, Commit c2) {
-        if (c1.getFileToBlobID().containsKey(file)
-                ^ c2.getFileToBlobID().containsKey(file)) {
-            return true;
-        } else if (!c1.getFileToBlobID().containsKey(file)
-                && !c2.getFileToBlobID().containsKey(file)) {
-            return false;
-        }
-        return !c1.getFileToBlobID().get(file).equals(
-                c2.getFileToBlobID().get(file));
-    }
-
     public static Commit lca(Commit curr, Commit given) {
-        LinkedList<Commit> q = new LinkedList<>();
-        HashSet<String> hashSet = new HashSet<>();
-        q.add(given);
-        while (!q.isEmpty()) {
-            Commit c = q.poll();
-            if (c == null) {
-                continue;
-            }
-            hashSet.add(c.getId());
-            q.add(c.parent());
-            q.add(c.mergeParent());
+        List<Integer> bases = mergeBases(
+                CommitGraph.position(curr.getId()),
+                CommitGraph.position(given.getId()));
+        if (bases.isEmpty()) {
+            return curr;
         }
+        return CommitGraph.commit(bases.get(0));
+    }
 
-        q.add(curr);
-        while (!q.isEmpty()) {
-            Commit c = q.poll();
-            if (c == null) {
-                continue;
-            }
-            if (hashSet.contains(c.getId())) {
-                return c;
-            } else {
-                q.add(c.parent());
-                q.add(c.mergeParent());
-            }
-        }
-        return curr;
+    /** Returns the positions of the merge bases of the commits at A and
+     *  B, painting the commit graph while that stays under PAINT_LIMIT
+     *  commits, as it does when they split recently, and otherwise from
+     *  the reachability bitmaps, whose cost does not grow with the
+     *  depth of the split.  There, the ancestor and fast-forward cases
+     *  of merge need only the set reachable from one of the commits. */
+    static List<Integer> mergeBases(int a, int b) {
+        List<Integer> result = CommitGraph.mergeBases(a, b, PAINT_LIMIT);
+        if (result != null) {
+            return result;
+        } else if (Reachability.isAncestor(b, a)) {
+            return List.of(b);
+        } else if (Reachability.isAncestor(a, b)) {
+            return List.of(a);
+        }
+        return Reachability.mergeBases(a, b);
     }
 
     public static void clearStage() {
-        ADDITION.delete();
-        REMOVAL.delete();
-        ADDITION.mkdirs();
-        REMOVAL.mkdirs();
+        Repository.clearStage();
     }
 
     public static byte[] getBlob(String blobID) {
-        return Utils.readContents(Utils.join(BLOBS, blobID));
+        byte[] contents = Pack.read(blobID);
+        if (contents == null) {
+            throw Utils.error("No blob with id %s.", blobID);
+        }
+        return contents;
     }
 
     public static String dateFormat(Date d) {
-        Formatter formatter = new Formatter();
-        return formatter.format(FORMAT, d, d, d, d, d, d).toString();
+        return FORMAT.format(d.toInstant().atZone(ZoneId.systemDefault()));
     }
 
     public static CommitTree getTree() {
-        return Utils.readObject(COMMIT_TREE, CommitTree.class);
+        return Repository.tree();
     }
 
     public static String getFullId(String mini) {
-        HashMap<String, String> h = getShortenedCommits();
-        if (h.containsKey(mini)) {
-            return h.get(mini);
+        List<String> ids = CommitIndex.find(mini, 2);
+        if (ids.size() > 1) {
+            error("Ambiguous commit id.");
+        } else if (ids.isEmpty()) {
+            return "not a real commit";
         }
-        return "not a real commit";
-    }
-
-    @SuppressWarnings("unchecked")
-    public static HashMap<String, String> getShortenedCommits() {
-        return Utils.readObject(SHORTENED_COMMITS, HashMap.class);
-    }
-
-    public static void saveShortenedCommits(HashMap<String, String> h) {
-        Utils.writeObject(SHORTENED_COMMITS, h);
+        return ids.get(0);
     }
 
     public static void saveTree(CommitTree tree) {
-        Utils.writeObject(COMMIT_TREE, tree);
+        Repository.setTree(tree);
     }
 
     public static void error(String msg) {
+        flush();
         System.out.println(msg);
+        if (resident) {
+            throw new Daemon.Exit();
+        }
+        Trace.finish();
         System.exit(0);
     }
 }
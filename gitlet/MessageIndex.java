@@ -0,0 +1,321 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/** The index used by find to look commits up by message.  Main.MESSAGES
+ *  is an append-only log of the id and message of each commit, and
+ *  Main.MESSAGE_INDEX maps 64-bit hashes of each whole message and of
+ *  each of its words to the positions of their commits' records in the
+ *  log.  As in CommitIndex, the map is a sorted run of entries, which is
+ *  binary-searched, followed by a short unsorted tail of those added
+ *  since, which is scanned and, when full, merged into the run.  Records
+ *  found through a hash are checked against the message or word sought,
+ *  so hash collisions cannot produce false matches.
+ *  @author Sasmit Agarwal
+ */
+class MessageIndex {
+
+    /** Magic number at the start of the index file. */
+    static final int MAGIC = 0x474c4d49;
+    /** Version of the index format. */
+    static final int VERSION = 1;
+    /** Size of the header: magic, version and length of the sorted run. */
+    static final int HEADER_SIZE = 12;
+    /** Size of one entry: hash and position in the log. */
+    static final int ENTRY_SIZE = 16;
+    /** The largest number of unsorted entries kept after the sorted run. */
+    static final int MAX_TAIL = 16384;
+
+    /** Returns the ids, in order, of the commits whose message is MSG. */
+    static TreeSet<String> find(String msg) {
+        TreeSet<String> result = new TreeSet<>();
+        for (String[] record : records(key("m", msg))) {
+            if (record[1].equals(msg)) {
+                result.add(record[0]);
+            }
+        }
+        return result;
+    }
+
+    /** Returns the ids, in order, of the commits whose message contains
+     *  the word WORD, ignoring case. */
+    static TreeSet<String> findWord(String word) {
+        TreeSet<String> result = new TreeSet<>();
+        Set<String> sought = words(word);
+        if (sought.size() != 1) {
+            return result;
+        }
+        word = sought.iterator().next();
+        for (String[] record : records(key("w", word))) {
+            if (words(record[1]).contains(word)) {
+                result.add(record[0]);
+            }
+        }
+        return result;
+    }
+
+    /** Returns the ids, in order, of the commits whose message contains
+     *  TEXT, found by reading the whole log. */
+    static TreeSet<String> grep(String text) {
+        index();
+        TreeSet<String> result = new TreeSet<>();
+        try (DataInputStream in = new DataInputStream(
+                 new BufferedInputStream(
+                     new FileInputStream(Main.MESSAGES)))) {
+            while (true) {
+                String id;
+                try {
+                    id = Codec.readId(in);
+                } catch (EOFException excp) {
+                    break;
+                }
+                if (Codec.readString(in).contains(text)) {
+                    result.add(id);
+                }
+            }
+        } catch (IOException excp) {
+            throw Utils.error("Internal error reading message log: %s",
+                              excp.getMessage());
+        }
+        return result;
+    }
+
+    /** Add the commit ID, with message MSG, to the index.  The commit
+     *  must already have been written to Main.COMMITS. */
+    static void add(String id, String msg) {
+        if (!Main.MESSAGE_INDEX.isFile() || !Main.MESSAGES.isFile()) {
+            rebuild();
+            return;
+        }
+        long pos = Main.MESSAGES.length();
+        append(id, msg);
+        ArrayList<long[]> added = entries(msg, pos);
+        MappedByteBuffer idx = index();
+        if (size(idx) - idx.getInt(8) + added.size() > MAX_TAIL) {
+            for (int k = 0; k < size(idx); k += 1) {
+                added.add(entry(idx, k));
+            }
+            write(added);
+            return;
+        }
+        ByteBuffer buf = ByteBuffer.allocate(added.size() * ENTRY_SIZE);
+        for (long[] e : added) {
+            buf.putLong(e[0]).putLong(e[1]);
+        }
+        buf.flip();
+        try (FileChannel out = FileChannel.open(Main.MESSAGE_INDEX.toPath(),
+                                                StandardOpenOption.WRITE)) {
+            long at = offset(size(idx));
+            while (buf.hasRemaining()) {
+                at += out.write(buf, at);
+            }
+        } catch (IOException excp) {
+            throw Utils.error("Internal error writing message index: %s",
+                              excp.getMessage());
+        }
+        index = null;
+    }
+
+    /** Replace the log and index with ones built from all the commits in
+     *  Main.COMMITS. */
+    static void rebuild() {
+        index = null;
+        Utils.writeContents(Main.MESSAGES, new byte[0]);
+        ArrayList<long[]> entries = new ArrayList<>();
+        List<String> ids = Utils.plainFilenamesIn(Main.COMMITS);
+        if (ids != null) {
+            try (DataOutputStream out = new DataOutputStream(
+                     new BufferedOutputStream(
+                         new FileOutputStream(Main.MESSAGES)))) {
+                for (String id : ids) {
+                    String msg = Commit.read(Utils.join(Main.COMMITS, id))
+                        .getMsg();
+                    entries.addAll(entries(msg, out.size()));
+                    Codec.writeId(out, id);
+                    Codec.writeString(out, msg);
+                }
+            } catch (IOException excp) {
+                throw Utils.error("Internal error writing message log: %s",
+                                  excp.getMessage());
+            }
+        }
+        write(entries);
+    }
+
+    /** Returns the distinct words of MSG, in lower case. */
+    static Set<String> words(String msg) {
+        LinkedHashSet<String> result = new LinkedHashSet<>();
+        for (String w : msg.toLowerCase().split("[^\\p{L}\\p{N}]+")) {
+            if (!w.isEmpty()) {
+                result.add(w);
+            }
+        }
+        return result;
+    }
+
+    /** Returns the entries, {hash, POS}, for a commit with message MSG
+     *  whose record is at POS in the log. */
+    private static ArrayList<long[]> entries(String msg, long pos) {
+        ArrayList<long[]> result = new ArrayList<>();
+        result.add(new long[] {key("m", msg), pos});
+        for (String w : words(msg)) {
+            result.add(new long[] {key("w", w), pos});
+        }
+        return result;
+    }
+
+    /** Returns the 64-bit hash of TEXT as an item of kind KIND. */
+    private static long key(String kind, String text) {
+        return ByteBuffer.wrap(Utils.sha1Digest().digest(
+                   (kind + text).getBytes(StandardCharsets.UTF_8)))
+            .getLong();
+    }
+
+    /** Returns the {id, message} of each commit with an entry for KEY. */
+    private static List<String[]> records(long key) {
+        MappedByteBuffer idx = index();
+        TreeSet<Long> positions = new TreeSet<>();
+        int sorted = idx.getInt(8);
+        int lo = 0, hi = sorted;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (idx.getLong(offset(mid)) < key) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        for (int k = lo; k < sorted && idx.getLong(offset(k)) == key;
+             k += 1) {
+            positions.add(idx.getLong(offset(k) + 8));
+        }
+        for (int k = sorted; k < size(idx); k += 1) {
+            if (idx.getLong(offset(k)) == key) {
+                positions.add(idx.getLong(offset(k) + 8));
+            }
+        }
+
+        ArrayList<String[]> result = new ArrayList<>();
+        if (positions.isEmpty()) {
+            return result;
+        }
+        try (RandomAccessFile log = new RandomAccessFile(Main.MESSAGES,
+                                                         "r")) {
+            for (long pos : positions) {
+                log.seek(pos);
+                result.add(new String[] {Codec.readId(log),
+                                         Codec.readString(log)});
+            }
+        } catch (IOException excp) {
+            throw Utils.error("Internal error reading message log: %s",
+                              excp.getMessage());
+        }
+        return result;
+    }
+
+    /** Append the record of commit ID, with message MSG, to the log. */
+    private static void append(String id, String msg) {
+        try (DataOutputStream out = new DataOutputStream(
+                 new BufferedOutputStream(
+                     new FileOutputStream(Main.MESSAGES, true)))) {
+            Codec.writeId(out, id);
+            Codec.writeString(out, msg);
+        } catch (IOException excp) {
+            throw Utils.error("Internal error writing message log: %s",
+                              excp.getMessage());
+        }
+    }
+
+    /** Returns entry K of IDX as {hash, position}. */
+    private static long[] entry(MappedByteBuffer idx, int k) {
+        return new long[] {idx.getLong(offset(k)),
+                           idx.getLong(offset(k) + 8)};
+    }
+
+    /** Returns the number of entries in IDX. */
+    private static int size(MappedByteBuffer idx) {
+        return (idx.limit() - HEADER_SIZE) / ENTRY_SIZE;
+    }
+
+    /** Returns the position in the index file of entry K. */
+    private static int offset(int k) {
+        return HEADER_SIZE + k * ENTRY_SIZE;
+    }
+
+    /** Replace the index with one whose sorted run holds ENTRIES. */
+    private static void write(List<long[]> entries) {
+        entries.sort(Comparator.<long[]>comparingLong(e -> e[0])
+                     .thenComparingLong(e -> e[1]));
+        ByteBuffer buf = ByteBuffer.allocate(offset(entries.size()));
+        buf.putInt(MAGIC).putInt(VERSION).putInt(entries.size());
+        for (long[] e : entries) {
+            buf.putLong(e[0]).putLong(e[1]);
+        }
+
+        File tmp = Utils.join(Main.GITLET_FOLDER, "messageIndex.tmp");
+        Utils.writeContents(tmp, buf.array());
+        try {
+            Files.move(tmp.toPath(), Main.MESSAGE_INDEX.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw Utils.error("Internal error writing message index: %s",
+                              excp.getMessage());
+        }
+        index = null;
+    }
+
+    /** Forget the mapped index, so that it is mapped again when next
+     *  needed. */
+    static void reset() {
+        index = null;
+    }
+
+    /** Returns the memory-mapped index, building it and the log from
+     *  Main.COMMITS if this repository does not have them yet. */
+    private static MappedByteBuffer index() {
+        if (index == null) {
+            if (!Main.MESSAGE_INDEX.isFile() || !Main.MESSAGES.isFile()) {
+                rebuild();
+            }
+            try (FileChannel ch = FileChannel.open(
+                     Main.MESSAGE_INDEX.toPath(), StandardOpenOption.READ)) {
+                index = ch.map(FileChannel.MapMode.READ_ONLY, 0,
+                               offset((int) ((ch.size() - HEADER_SIZE)
+                                             / ENTRY_SIZE)));
+            } catch (IOException excp) {
+                throw Utils.error("Internal error reading message index: %s",
+                                  excp.getMessage());
+            }
+            if (index.getInt(0) != MAGIC || index.getInt(4) != VERSION) {
+                throw Utils.error("Unrecognized message index format.");
+            }
+        }
+        return index;
+    }
+
+    /** The memory-mapped index, or null if not yet mapped. */
+    private static MappedByteBuffer index;
+}
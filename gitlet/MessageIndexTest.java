@@ -0,0 +1,134 @@
+package gitlet;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.TreeSet;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of the MessageIndex: lookup of commits by whole message and by
+ *  word, in the sorted run and in the tail, before and after the tail is
+ *  merged.
+ *  @author Sasmit Agarwal
+ */
+public class MessageIndexTest {
+
+    @Before
+    public void setUp() {
+        TestRepository.create();
+    }
+
+    @After
+    public void tearDown() {
+        TestRepository.delete();
+    }
+
+    /** Returns the id of the Kth synthetic commit. */
+    private static String id(int k) {
+        return Utils.sha1("MessageIndexTest " + k);
+    }
+
+    /** Returns a set of IDS. */
+    private static TreeSet<String> set(String... ids) {
+        return new TreeSet<>(Arrays.asList(ids));
+    }
+
+    /** Returns the length of the sorted run of the index file. */
+    private static int sorted() throws IOException {
+        return ByteBuffer.wrap(Files.readAllBytes(
+                   Main.MESSAGE_INDEX.toPath())).getInt(8);
+    }
+
+    @Test
+    public void findsMessages() {
+        MessageIndex.add(id(1), "Fix the parser");
+        MessageIndex.add(id(2), "fix the parser");
+        MessageIndex.add(id(3), "Fix the parser");
+        assertEquals(set(id(1), id(3)), MessageIndex.find("Fix the parser"));
+        assertEquals(set(id(2)), MessageIndex.find("fix the parser"));
+        assertTrue(MessageIndex.find("Fix the").isEmpty());
+        assertTrue(MessageIndex.find("").isEmpty());
+        MessageIndex.reset();
+        assertEquals(set(id(1), id(3)), MessageIndex.find("Fix the parser"));
+        assertEquals(set(Repository.tree().headCommitID()),
+                     MessageIndex.find("initial commit"));
+    }
+
+    @Test
+    public void findsWords() {
+        MessageIndex.add(id(1), "Speed up FileTree.diff, again");
+        MessageIndex.add(id(2), "diff: caf\u00e9 handling");
+        MessageIndex.add(id(3), "different");
+        assertEquals(set(id(1), id(2)), MessageIndex.findWord("DIFF"));
+        assertEquals(set(id(1)), MessageIndex.findWord("filetree"));
+        assertEquals(set(id(2)), MessageIndex.findWord("Caf\u00c9"));
+        assertEquals(set(id(1)), MessageIndex.findWord(" again, "));
+        assertTrue("a query of two words matches nothing",
+                   MessageIndex.findWord("speed up").isEmpty());
+        assertTrue(MessageIndex.findWord("...").isEmpty());
+        assertTrue(MessageIndex.findWord("dif").isEmpty());
+    }
+
+    @Test
+    public void grep() {
+        MessageIndex.add(id(1), "Speed up FileTree.diff");
+        MessageIndex.add(id(2), "different");
+        assertEquals(set(id(1), id(2)), MessageIndex.grep("iff"));
+        assertEquals(set(id(1)), MessageIndex.grep("Tree.d"));
+        assertTrue(MessageIndex.grep("tree.d").isEmpty());
+    }
+
+    @Test
+    public void findsAcrossTailMerges() throws IOException {
+        int wordsPerMessage = 1000;
+        int n = MessageIndex.MAX_TAIL / wordsPerMessage + 3;
+        int initial = sorted();
+        for (int k = 0; k < n; k += 1) {
+            StringBuilder msg = new StringBuilder("commit" + k);
+            for (int w = 1; w < wordsPerMessage; w += 1) {
+                msg.append(" shared").append(w);
+            }
+            MessageIndex.add(id(k), msg.toString());
+            if (k == 0) {
+                assertEquals("entries are appended to the tail", initial,
+                             sorted());
+            }
+        }
+        assertTrue("the full tail was merged into the run",
+                   sorted() > initial);
+        MessageIndex.reset();
+        TreeSet<String> all = new TreeSet<>();
+        for (int k = 0; k < n; k += 1) {
+            all.add(id(k));
+            assertEquals(set(id(k)), MessageIndex.findWord("commit" + k));
+        }
+        assertEquals(all, MessageIndex.findWord("shared1"));
+        assertEquals(all, MessageIndex.findWord("shared999"));
+    }
+
+    @Test
+    public void rebuiltWhenMissing() {
+        String initial = Repository.tree().headCommitID();
+        MessageIndex.add(id(1), "not a real commit");
+        Main.MESSAGE_INDEX.delete();
+        MessageIndex.reset();
+        assertTrue("rebuilt from the commits directory",
+                   MessageIndex.find("not a real commit").isEmpty());
+        assertEquals(set(initial), MessageIndex.findWord("initial"));
+        assertEquals(Collections.singleton(initial),
+                     MessageIndex.grep("commit"));
+    }
+
+    @Test(expected = GitletException.class)
+    public void rejectsUnknownIndex() {
+        Utils.writeContents(Main.MESSAGE_INDEX, "not an index");
+        MessageIndex.reset();
+        MessageIndex.find("initial commit");
+    }
+}
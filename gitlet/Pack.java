@@ -0,0 +1,890 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/** The append-only object store for blobs.  Object contents are
+ *  concatenated into the single file Main.PACK, and the index
+ *  Main.PACK_INDEX, which maps each object id to its offset and length
+ *  in the pack, is memory-mapped for lookups.  Like CommitIndex, the
+ *  index is a sorted run, which is binary-searched, followed by a tail
+ *  of at most MAX_TAIL entries of objects added since, which is scanned;
+ *  the entries of a flush are appended to the tail once the journal
+ *  record holding them is durable, and only when the tail is full are
+ *  it and they merged into the run.  Indexed objects are also numbered
+ *  in the order of their records, for the bitmaps of Reachability.
+ *  An object may be stored as a line-level delta against a base object
+ *  (normally the previous version of the same file), computed with Diff,
+ *  and record bodies are DEFLATE-compressed when that makes them smaller.
+ *  Objects larger than LARGE_OBJECT are instead streamed, so that they
+ *  never need to fit in memory: split by Chunker into chunks stored in
+ *  the pack, and recorded as a list of those in an object file of their
+ *  own in Main.LARGE_OBJECTS, or with -Dgitlet.chunking=false copied
+ *  there whole and uncompressed.  Objects stored as loose files in
+ *  Main.BLOBS by earlier versions are still readable.
+ *  @author Sasmit Agarwal
+ */
+class Pack {
+
+    /** Magic number at the start of the pack file. */
+    static final int PACK_MAGIC = 0x474c504b;
+    /** Magic number at the start of the index file. */
+    static final int INDEX_MAGIC = 0x474c4958;
+    /** Version of the pack format. */
+    static final int VERSION = 1;
+    /** Version of the index format.  Version 1 indexes, which had no
+     *  tail, are read as version 2 ones with an empty tail. */
+    static final int INDEX_VERSION = 2;
+    /** Size of the pack header: magic and version. */
+    static final int PACK_HEADER_SIZE = 8;
+    /** Size of the index header: magic, version and the number of
+     *  entries in the sorted run. */
+    static final int INDEX_HEADER_SIZE = 12;
+    /** Size of one index entry: raw id, 8-byte offset, 4-byte length. */
+    static final int ENTRY_SIZE = Utils.RAW_UID_LENGTH + 12;
+    /** The most entries in the tail of the index. */
+    static final int MAX_TAIL = 1024;
+
+    /** Record type of an object stored whole. */
+    static final byte FULL = 0;
+    /** Record type of an object stored as a delta against another.  The
+     *  type is followed by the chain depth, the raw id of the base, and
+     *  the edit script. */
+    static final byte DELTA = 1;
+    /** Size of a delta record header: type, depth and base id. */
+    static final int DELTA_HEADER_SIZE = 5 + Utils.RAW_UID_LENGTH;
+    /** Flag set in the type of a record whose body (the contents or edit
+     *  script following the header) is DEFLATE-compressed and preceded by
+     *  its uncompressed length. */
+    static final byte COMPRESSED = (byte) 0x80;
+
+    /** The longest chain of deltas that must be applied to reconstruct an
+     *  object.  Set with -Dgitlet.deltaDepth; 0 disables deltas. */
+    static final int MAX_DELTA_DEPTH =
+        Integer.getInteger("gitlet.deltaDepth", 10);
+    /** The largest product of line counts that is diffed.  Diff runs in
+     *  linear space, but in time proportional to this product when the
+     *  files have little in common. */
+    static final long MAX_DELTA_CELLS = 64_000_000;
+    /** Size above which files are stored as large objects.  Set with
+     *  -Dgitlet.largeObject. */
+    static final long LARGE_OBJECT =
+        Long.getLong("gitlet.largeObject", 32 << 20);
+    /** True iff large objects are split into content-defined chunks by
+     *  Chunker, so that versions of a large file share the chunks they
+     *  have in common.  Turned off with -Dgitlet.chunking=false. */
+    static final boolean CHUNKING = Boolean.parseBoolean(
+        System.getProperty("gitlet.chunking", "true"));
+    /** Header byte of a large object file holding a chunk list: the
+     *  length and raw id of each chunk, in order. */
+    static final byte CHUNKED = 3;
+    /** Total size of the reconstructed objects kept in the cache. */
+    static final long CACHE_BYTES = 64 << 20;
+
+    /** Returns the contents of the object with id ID, or null if there
+     *  is no such object in the pack or among the loose objects. */
+    static byte[] read(String id) {
+        Trace.Span span = Trace.start(Trace.Phase.READ_BLOBS);
+        byte[] result = read(id, true);
+        Trace.end(span, result == null ? 0 : result.length);
+        return result;
+    }
+
+    /** Returns the contents of the object with id ID, as for read(ID),
+     *  adding it to the cache iff KEEP. */
+    private static synchronized byte[] read(String id, boolean keep) {
+        byte[] result = cache.get(id);
+        if (result != null) {
+            return result;
+        }
+        long[] loc = locate(id);
+        if (loc == null) {
+            File large = Utils.join(Main.LARGE_OBJECTS, id);
+            if (large.isFile()) {
+                return readLarge(large);
+            }
+            File loose = Utils.join(Main.BLOBS, id);
+            return loose.isFile() ? Utils.readContents(loose) : null;
+        }
+        byte[] record = readRecord(loc[0], (int) loc[1]);
+        int type = record[0] & ~COMPRESSED;
+        int headerSize = type == DELTA ? DELTA_HEADER_SIZE : 1;
+        byte[] body;
+        if ((record[0] & COMPRESSED) != 0) {
+            body = new byte[ByteBuffer.wrap(record).getInt(headerSize)];
+            Utils.inflate(record, headerSize + 4,
+                          record.length - headerSize - 4, body);
+        } else {
+            body = Arrays.copyOfRange(record, headerSize, record.length);
+        }
+        if (type == DELTA) {
+            String baseId = Utils.hexId(record, 5);
+            byte[] base = read(baseId, true);
+            if (base == null) {
+                throw Utils.error("Missing delta base %s.", baseId);
+            }
+            result = applyDelta(base, body);
+        } else {
+            result = body;
+        }
+        if (keep) {
+            cache(id, result);
+        }
+        return result;
+    }
+
+    /** Returns true iff an object with id ID is stored, packed or
+     *  loose. */
+    static boolean contains(String id) {
+        return locate(id) != null || Utils.join(Main.BLOBS, id).isFile()
+            || Utils.join(Main.LARGE_OBJECTS, id).isFile();
+    }
+
+    /** Store the contents of SOURCE, a file named NAME, as a large object,
+     *  hashing it as it is copied or chunked, and return its id.  The
+     *  object is first written to a new temporary file of its own, never
+     *  to one another command is writing or a crash left behind. */
+    static String write(String name, File source) {
+        return write(name, source, CHUNKING);
+    }
+
+    /** Store SOURCE, a file named NAME, as for write(NAME, SOURCE), split
+     *  into chunks iff CHUNKED. */
+    static String write(String name, File source, boolean chunked) {
+        Main.LARGE_OBJECTS.mkdirs();
+        Path tmp = null;
+        try {
+            tmp = Files.createTempFile(Main.LARGE_OBJECTS.toPath(),
+                                       "object", ".tmp");
+            String id = chunked ? Chunker.write(name, source, tmp.toFile())
+                : copyLarge(name, source, tmp.toFile());
+            if (contains(id)) {
+                Files.delete(tmp);
+            } else {
+                File large = Utils.join(Main.LARGE_OBJECTS, id);
+                Files.move(tmp, large.toPath(),
+                           StandardCopyOption.ATOMIC_MOVE);
+                Journal.syncBefore(large);
+                Journal.syncBefore(Main.LARGE_OBJECTS);
+            }
+            return id;
+        } catch (IOException excp) {
+            if (tmp != null) {
+                tmp.toFile().delete();
+            }
+            throw Utils.error("Internal error storing %s: %s", name,
+                              excp.getMessage());
+        }
+    }
+
+    /** Copy SOURCE, a file named NAME, to the uncompressed large object
+     *  file DEST, and return its id. */
+    private static String copyLarge(String name, File source, File dest)
+        throws IOException {
+        MessageDigest md = Utils.sha1Digest();
+        md.update(name.getBytes(StandardCharsets.UTF_8));
+        try (InputStream in = Files.newInputStream(source.toPath());
+             OutputStream out = Files.newOutputStream(dest.toPath())) {
+            byte[] buf = new byte[Utils.COPY_BUFFER];
+            buf[0] = Utils.STORED;
+            out.write(buf, 0, 1);
+            for (int n; (n = in.read(buf)) > 0; ) {
+                md.update(buf, 0, n);
+                out.write(buf, 0, n);
+            }
+        }
+        return Utils.hexId(md.digest(), 0);
+    }
+
+    /** Write the contents of object ID to DEST.  A large object stored
+     *  uncompressed is transferred by the file system without passing
+     *  through the heap, and a chunked one a chunk at a time. */
+    static void copy(String id, File dest) {
+        Trace.Span span = Trace.start(Trace.Phase.WRITE_FILES);
+        Trace.end(span, copyTo(id, dest));
+    }
+
+    /** Write the contents of object ID to DEST, as for copy, and return
+     *  their size. */
+    private static long copyTo(String id, File dest) {
+        File large = Utils.join(Main.LARGE_OBJECTS, id);
+        if (!large.isFile()) {
+            byte[] contents = read(id);
+            if (contents == null) {
+                throw Utils.error("No blob with id %s.", id);
+            }
+            Utils.writeContents(dest, contents);
+            return contents.length;
+        }
+        try (FileChannel in = FileChannel.open(large.toPath(),
+                                               StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(
+                 dest.toPath(), StandardOpenOption.WRITE,
+                 StandardOpenOption.CREATE,
+                 StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(1);
+            in.read(header, 0);
+            if (header.get(0) == CHUNKED) {
+                copyChunks(large, Channels.newOutputStream(out));
+            } else if (header.get(0) == Utils.STORED) {
+                long size = in.size();
+                for (long pos = 1; pos < size; ) {
+                    pos += in.transferTo(pos, size - pos, out);
+                }
+                Trace.add(Trace.Counter.BYTES_READ, size - 1);
+            } else {
+                try (InputStream str = Utils.objectInput(large)) {
+                    str.transferTo(Channels.newOutputStream(out));
+                }
+            }
+            Trace.add(Trace.Counter.BYTES_WRITTEN, out.size());
+            return out.size();
+        } catch (IOException excp) {
+            throw Utils.error("Internal error writing %s: %s", dest,
+                              excp.getMessage());
+        }
+    }
+
+    /** Returns the contents of the large object file LARGE. */
+    private static byte[] readLarge(File large) {
+        try {
+            if (!isChunked(large)) {
+                try (InputStream str = Utils.objectInput(large)) {
+                    return str.readAllBytes();
+                }
+            }
+            ByteArrayOutputStream result = new ByteArrayOutputStream();
+            copyChunks(large, result);
+            return result.toByteArray();
+        } catch (IOException excp) {
+            throw Utils.error("Internal error reading %s: %s",
+                              large.getName(), excp.getMessage());
+        }
+    }
+
+    /** Returns true iff the large object file LARGE holds a chunk
+     *  list. */
+    private static boolean isChunked(File large) throws IOException {
+        try (InputStream str = Files.newInputStream(large.toPath())) {
+            return str.read() == CHUNKED;
+        }
+    }
+
+    /** Write to OUT the contents of the chunks listed by the large object
+     *  file LARGE.  The list ends at the end of the file, which is found by
+     *  peeking at the next byte, since available() may be 0 before it; a
+     *  list that ends inside an entry throws EOFException. */
+    private static void copyChunks(File large, OutputStream out)
+        throws IOException {
+        try (DataInputStream list = new DataInputStream(
+                 new BufferedInputStream(Files.newInputStream(
+                     large.toPath())))) {
+            list.readByte();
+            while (true) {
+                list.mark(1);
+                if (list.read() < 0) {
+                    break;
+                }
+                list.reset();
+                int len = list.readInt();
+                String id = Codec.readId(list);
+                byte[] chunk = read(id, false);
+                if (chunk == null || chunk.length != len) {
+                    throw Utils.error("Missing or corrupt chunk %s.", id);
+                }
+                out.write(chunk);
+            }
+        }
+    }
+
+    /** Append CONTENTS to the pack under id ID, unless that object is
+     *  already stored.  The index is not updated until flush(). */
+    static void write(String id, byte[] contents) {
+        write(id, contents, null);
+    }
+
+    /** Append CONTENTS to the pack under id ID, unless that object is
+     *  already stored.  If BASEID is not null, the object is stored as a
+     *  delta against it when that is smaller and keeps the chain within
+     *  MAX_DELTA_DEPTH.  The index is not updated until flush(). */
+    static void write(String id, byte[] contents, String baseId) {
+        if (contains(id)) {
+            return;
+        }
+        byte[] delta = null;
+        int depth = baseId == null ? 0 : depth(baseId) + 1;
+        if (depth > 0 && depth <= MAX_DELTA_DEPTH
+            && !Utils.join(Main.LARGE_OBJECTS, baseId).isFile()) {
+            byte[] base = read(baseId);
+            if (base != null) {
+                delta = delta(base, contents);
+            }
+        }
+        byte type;
+        byte[] body;
+        if (delta != null
+            && DELTA_HEADER_SIZE + delta.length < contents.length) {
+            type = DELTA;
+            body = delta;
+        } else {
+            type = FULL;
+            body = contents;
+        }
+        byte[] packed = null;
+        if (Utils.COMPRESSION_LEVEL != 0) {
+            packed = Utils.deflate(body, 0, body.length);
+            if (packed.length + 4 >= body.length) {
+                packed = null;
+            }
+        }
+        ByteBuffer buf = ByteBuffer.allocate(DELTA_HEADER_SIZE + 4
+            + (packed == null ? body.length : packed.length));
+        buf.put(packed == null ? type : (byte) (type | COMPRESSED));
+        if (type == DELTA) {
+            buf.putInt(depth).put(Utils.rawId(baseId));
+        }
+        if (packed == null) {
+            buf.put(body);
+        } else {
+            buf.putInt(body.length).put(packed);
+        }
+        buf.flip();
+        try {
+            FileChannel out = output();
+            long offset = out.size();
+            int length = buf.remaining();
+            while (buf.hasRemaining()) {
+                out.write(buf);
+            }
+            Trace.add(Trace.Counter.BYTES_WRITTEN, length);
+            pending.put(id, new long[] {offset, length});
+        } catch (IOException excp) {
+            throw Utils.error("Internal error writing pack: %s",
+                              excp.getMessage());
+        }
+    }
+
+    /** Returns the number of deltas applied to reconstruct object ID: 0
+     *  for whole and loose objects. */
+    static int depth(String id) {
+        long[] loc = locate(id);
+        if (loc == null || loc[1] < DELTA_HEADER_SIZE) {
+            return 0;
+        }
+        ByteBuffer header = ByteBuffer.wrap(readRecord(loc[0], 5));
+        return (header.get() & ~COMPRESSED) == DELTA ? header.getInt() : 0;
+    }
+
+    /** Returns the edit script converting BASE into TARGET, or null if
+     *  they are too large to diff.  The script is the length of TARGET
+     *  and the number of hunks, followed for each hunk by the position
+     *  and number of base lines removed, the number of lines inserted,
+     *  and each inserted line as its length and bytes. */
+    static byte[] delta(byte[] base, byte[] target) {
+        List<String> lines1 = lines(base), lines2 = lines(target);
+        if ((long) lines1.size() * lines2.size() > MAX_DELTA_CELLS) {
+            return null;
+        }
+        Diff diff = new Diff();
+        diff.setSequences(lines1, lines2);
+        int[] edits = diff.diffs();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream str = new DataOutputStream(bytes)) {
+            str.writeInt(target.length);
+            str.writeInt(edits.length / 4);
+            for (int k = 0; k < edits.length; k += 4) {
+                str.writeInt(edits[k]);
+                str.writeInt(edits[k + 1]);
+                str.writeInt(edits[k + 3]);
+                for (int i = 0; i < edits[k + 3]; i += 1) {
+                    byte[] line = lines2.get(edits[k + 2] + i)
+                        .getBytes(StandardCharsets.ISO_8859_1);
+                    str.writeInt(line.length);
+                    str.write(line);
+                }
+            }
+        } catch (IOException excp) {
+            throw Utils.error("Internal error computing delta.");
+        }
+        return bytes.toByteArray();
+    }
+
+    /** Returns the result of applying the edit script DELTA to BASE. */
+    static byte[] applyDelta(byte[] base, byte[] delta) {
+        List<String> lines = lines(base);
+        try (DataInputStream str = new DataInputStream(
+                 new ByteArrayInputStream(delta))) {
+            ByteArrayOutputStream result =
+                new ByteArrayOutputStream(str.readInt());
+            int pos = 0;
+            for (int n = str.readInt(); n > 0; n -= 1) {
+                int removed = str.readInt(), removedLen = str.readInt();
+                for (; pos < removed; pos += 1) {
+                    result.write(lines.get(pos)
+                                 .getBytes(StandardCharsets.ISO_8859_1));
+                }
+                pos += removedLen;
+                for (int i = str.readInt(); i > 0; i -= 1) {
+                    result.write(str.readNBytes(str.readInt()));
+                }
+            }
+            for (; pos < lines.size(); pos += 1) {
+                result.write(lines.get(pos)
+                             .getBytes(StandardCharsets.ISO_8859_1));
+            }
+            return result.toByteArray();
+        } catch (IOException excp) {
+            throw Utils.error("Corrupt delta in pack.");
+        }
+    }
+
+    /** Returns CONTENTS split after each newline, one byte per char. */
+    static List<String> lines(byte[] contents) {
+        ArrayList<String> result = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i < contents.length; i += 1) {
+            if (contents[i] == '\n') {
+                result.add(new String(contents, start, i + 1 - start,
+                                      StandardCharsets.ISO_8859_1));
+                start = i + 1;
+            }
+        }
+        if (start < contents.length) {
+            result.add(new String(contents, start, contents.length - start,
+                                  StandardCharsets.ISO_8859_1));
+        }
+        return result;
+    }
+
+    /** Record CONTENTS as the reconstructed object ID, evicting the least
+     *  recently used objects beyond CACHE_BYTES. */
+    private static void cache(String id, byte[] contents) {
+        if (contents.length > CACHE_BYTES) {
+            return;
+        }
+        cache.put(id, contents);
+        cachedBytes += contents.length;
+        Iterator<byte[]> iter = cache.values().iterator();
+        while (cachedBytes > CACHE_BYTES) {
+            cachedBytes -= iter.next().length;
+            iter.remove();
+        }
+    }
+
+    /** Close the pack and add the index entries of the objects written
+     *  since the last flush to the next journal record.  They are written
+     *  to the index by synced only once that record is durable, so that
+     *  the index never refers to pack data a crash could lose; until then
+     *  they are found in unindexed. */
+    static void flush() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException excp) {
+                throw Utils.error("Internal error writing pack: %s",
+                                  excp.getMessage());
+            }
+            out = null;
+            Journal.syncBefore(Main.PACK);
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+        Journal.add(Journal.OBJECTS, entries(pending).array());
+        unindexed.putAll(pending);
+        pending.clear();
+    }
+
+    /** Write the entries of the flushed objects to the index, now that
+     *  the journal record holding them is durable.  They are appended to
+     *  the tail of the index if they fit there; otherwise they and the
+     *  tail are merged into the sorted run, replacing the index
+     *  atomically. */
+    static void synced() {
+        if (unindexed.isEmpty()) {
+            return;
+        }
+        MappedByteBuffer old = index();
+        if (old != null && old.getInt(4) == INDEX_VERSION
+            && entries(old) - old.getInt(8) + unindexed.size() <= MAX_TAIL) {
+            appendIndex(entry(entries(old)), entries(unindexed));
+        } else {
+            mergeIndex(old);
+        }
+        unindexed.clear();
+        index = null;
+    }
+
+    /** Returns the index entries of OBJECTS, ready to be written. */
+    private static ByteBuffer entries(Map<String, long[]> objects) {
+        ByteBuffer buf = ByteBuffer.allocate(objects.size() * ENTRY_SIZE);
+        for (Map.Entry<String, long[]> e : objects.entrySet()) {
+            buf.put(Utils.rawId(e.getKey())).putLong(e.getValue()[0])
+                .putInt((int) e.getValue()[1]);
+        }
+        return buf.flip();
+    }
+
+    /** Write ENTRIES to the index at offset AT. */
+    private static void appendIndex(long at, ByteBuffer entries) {
+        try (FileChannel ch = FileChannel.open(Main.PACK_INDEX.toPath(),
+                                               StandardOpenOption.WRITE)) {
+            while (entries.hasRemaining()) {
+                at += ch.write(entries, at);
+            }
+        } catch (IOException excp) {
+            throw Utils.error("Internal error writing pack index: %s",
+                              excp.getMessage());
+        }
+    }
+
+    /** Replace the index with one whose sorted run holds the entries of
+     *  OLD (which may be null) and the unindexed objects, atomically. */
+    private static void mergeIndex(MappedByteBuffer old) {
+        int oldCount = old == null ? 0 : old.getInt(8);
+        for (int k = oldCount; old != null && k < entries(old); k += 1) {
+            byte[] id = new byte[Utils.RAW_UID_LENGTH];
+            old.get(entry(k), id);
+            unindexed.put(Utils.hexId(id, 0), location(old, k));
+        }
+        int count = oldCount + unindexed.size();
+        ByteBuffer buf = ByteBuffer.allocate(entry(count));
+        buf.putInt(INDEX_MAGIC).putInt(INDEX_VERSION).putInt(count);
+
+        byte[] oldId = new byte[Utils.RAW_UID_LENGTH];
+        int k = 0;
+        for (Map.Entry<String, long[]> e : unindexed.entrySet()) {
+            byte[] id = Utils.rawId(e.getKey());
+            while (k < oldCount && compare(old, k, id) < 0) {
+                copyEntry(old, k, buf, oldId);
+                k += 1;
+            }
+            buf.put(id).putLong(e.getValue()[0])
+                .putInt((int) e.getValue()[1]);
+        }
+        while (k < oldCount) {
+            copyEntry(old, k, buf, oldId);
+            k += 1;
+        }
+
+        File tmp = Utils.join(Main.GITLET_FOLDER, "packIndex.tmp");
+        Utils.writeContents(tmp, buf.array());
+        try {
+            Files.move(tmp.toPath(), Main.PACK_INDEX.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw Utils.error("Internal error writing pack index: %s",
+                              excp.getMessage());
+        }
+    }
+
+    /** Forget the mapped index and close the pack, so that both are
+     *  opened again when next needed.  Objects written since the last
+     *  flush, and those flushed whose journal record was not made durable,
+     *  are discarded.  Cached contents are kept: an id always
+     *  names the same contents. */
+    static void reset() {
+        try {
+            if (in != null) {
+                in.close();
+            }
+            if (out != null) {
+                out.close();
+            }
+        } catch (IOException excp) {
+            throw Utils.error("Internal error closing pack: %s",
+                              excp.getMessage());
+        }
+        in = out = null;
+        index = offsetsOf = null;
+        offsets = null;
+        pending.clear();
+        unindexed.clear();
+    }
+
+    /** Add to the objects to be written to the index by synced those of
+     *  the index entries in ENTRIES, laid out as in the index and taken
+     *  from a durable journal record, that are missing from it.  Returns
+     *  true iff any were missing. */
+    static boolean recover(byte[] entries) {
+        ByteBuffer buf = ByteBuffer.wrap(entries);
+        boolean result = false;
+        while (buf.hasRemaining()) {
+            String id = Utils.hexId(entries, buf.position());
+            buf.position(buf.position() + Utils.RAW_UID_LENGTH);
+            long offset = buf.getLong();
+            int length = buf.getInt();
+            if (locate(id) == null) {
+                unindexed.put(id, new long[] {offset, length});
+                result = true;
+            }
+        }
+        return result;
+    }
+
+    /** Returns {offset, length} of the record for object ID in the pack,
+     *  or null if it is not packed. */
+    static long[] locate(String id) {
+        long[] loc = pending.get(id);
+        if (loc == null) {
+            loc = unindexed.get(id);
+        }
+        if (loc != null) {
+            return loc;
+        }
+        MappedByteBuffer idx = index();
+        if (idx == null || id.length() != Utils.UID_LENGTH) {
+            return null;
+        }
+        byte[] key = Utils.rawId(id);
+        int sorted = idx.getInt(8);
+        int lo = 0, hi = sorted - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int c = compare(idx, mid, key);
+            if (c < 0) {
+                lo = mid + 1;
+            } else if (c > 0) {
+                hi = mid - 1;
+            } else {
+                return location(idx, mid);
+            }
+        }
+        int prefix = ByteBuffer.wrap(key).getInt();
+        for (int k = sorted; k < entries(idx); k += 1) {
+            if (idx.getInt(entry(k)) == prefix && compare(idx, k, key) == 0) {
+                return location(idx, k);
+            }
+        }
+        return null;
+    }
+
+    /** Returns the number of the object ID, or -1 if it is not in the
+     *  index.  Indexed objects are numbered from 0 in the order of their
+     *  records in the pack, which is append-only and indexed in that
+     *  order, so an object keeps its number as others are added. */
+    static int number(String id) {
+        if (pending.containsKey(id) || unindexed.containsKey(id)) {
+            return -1;
+        }
+        long[] loc = locate(id);
+        return loc == null ? -1 : Arrays.binarySearch(offsets(), loc[0]);
+    }
+
+    /** Returns the ids of the indexed objects whose numbers are in
+     *  NUMBERS, in order of number. */
+    static List<String> ids(BitSet numbers) {
+        MappedByteBuffer idx = index();
+        long[] offsets = offsets();
+        String[] byNumber = new String[offsets.length];
+        for (int k = 0; idx != null && k < entries(idx); k += 1) {
+            int n = Arrays.binarySearch(offsets, location(idx, k)[0]);
+            if (numbers.get(n)) {
+                byte[] id = new byte[Utils.RAW_UID_LENGTH];
+                idx.get(entry(k), id);
+                byNumber[n] = Utils.hexId(id, 0);
+            }
+        }
+        ArrayList<String> result = new ArrayList<>();
+        for (String id : byNumber) {
+            if (id != null) {
+                result.add(id);
+            }
+        }
+        return result;
+    }
+
+    /** Returns the ids of the chunks listed by object ID, in order, if it
+     *  is a chunked large object, and otherwise an empty list. */
+    static List<String> chunks(String id) {
+        File large = Utils.join(Main.LARGE_OBJECTS, id);
+        ArrayList<String> result = new ArrayList<>();
+        if (!large.isFile()) {
+            return result;
+        }
+        try (DataInputStream list = new DataInputStream(
+                 new BufferedInputStream(Files.newInputStream(
+                     large.toPath())))) {
+            if (list.readByte() != CHUNKED) {
+                return result;
+            }
+            while (true) {
+                list.mark(1);
+                if (list.read() < 0) {
+                    break;
+                }
+                list.reset();
+                list.readInt();
+                result.add(Codec.readId(list));
+            }
+        } catch (IOException excp) {
+            throw Utils.error("Internal error reading %s: %s", id,
+                              excp.getMessage());
+        }
+        return result;
+    }
+
+    /** Returns the offsets of the records of the indexed objects in
+     *  increasing order, so that each is at the number of its object. */
+    private static long[] offsets() {
+        MappedByteBuffer idx = index();
+        if (idx == null) {
+            return new long[0];
+        }
+        if (offsetsOf != idx) {
+            offsets = new long[entries(idx)];
+            for (int k = 0; k < offsets.length; k += 1) {
+                offsets[k] = location(idx, k)[0];
+            }
+            Arrays.sort(offsets);
+            offsetsOf = idx;
+        }
+        return offsets;
+    }
+
+    /** Returns {offset, length} from entry K of index IDX. */
+    private static long[] location(MappedByteBuffer idx, int k) {
+        int pos = entry(k) + Utils.RAW_UID_LENGTH;
+        return new long[] {idx.getLong(pos), idx.getInt(pos + 8)};
+    }
+
+    /** Returns the LENGTH bytes of the pack starting at OFFSET. */
+    static byte[] readRecord(long offset, int length) {
+        try {
+            if (in == null) {
+                in = FileChannel.open(Main.PACK.toPath(),
+                                      StandardOpenOption.READ);
+            }
+            ByteBuffer buf = ByteBuffer.allocate(length);
+            while (buf.hasRemaining()) {
+                if (in.read(buf, offset + buf.position()) < 0) {
+                    throw Utils.error("Truncated pack file.");
+                }
+            }
+            Trace.add(Trace.Counter.BYTES_READ, length);
+            return buf.array();
+        } catch (IOException excp) {
+            throw Utils.error("Internal error reading pack: %s",
+                              excp.getMessage());
+        }
+    }
+
+    /** Returns the channel used to append to the pack, creating the pack
+     *  if needed. */
+    private static FileChannel output() throws IOException {
+        if (out == null) {
+            out = FileChannel.open(Main.PACK.toPath(),
+                                   StandardOpenOption.CREATE,
+                                   StandardOpenOption.WRITE,
+                                   StandardOpenOption.APPEND);
+            if (out.size() == 0) {
+                ByteBuffer header = ByteBuffer.allocate(PACK_HEADER_SIZE);
+                header.putInt(PACK_MAGIC).putInt(VERSION).flip();
+                out.write(header);
+            }
+        }
+        return out;
+    }
+
+    /** Returns the memory-mapped index, or null if there is none. */
+    private static MappedByteBuffer index() {
+        if (index == null && Main.PACK_INDEX.isFile()) {
+            try (FileChannel ch = FileChannel.open(Main.PACK_INDEX.toPath(),
+                                                   StandardOpenOption.READ)) {
+                index = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            } catch (IOException excp) {
+                throw Utils.error("Internal error reading pack index: %s",
+                                  excp.getMessage());
+            }
+            if (index.limit() < INDEX_HEADER_SIZE
+                || index.getInt(0) != INDEX_MAGIC
+                || index.getInt(4) < 1 || index.getInt(4) > INDEX_VERSION
+                || index.getInt(8) < 0 || index.getInt(8) > entries(index)) {
+                index = null;
+                throw Utils.error("Unrecognized pack index format.");
+            }
+        }
+        return index;
+    }
+
+    /** Returns the number of entries in index IDX, in its sorted run and
+     *  its tail.  A partial entry left at the end by a process that died
+     *  while appending it is not counted, and is overwritten by the next
+     *  append. */
+    private static int entries(MappedByteBuffer idx) {
+        return (idx.limit() - INDEX_HEADER_SIZE) / ENTRY_SIZE;
+    }
+
+    /** Returns the offset of index entry K. */
+    private static int entry(int k) {
+        return INDEX_HEADER_SIZE + k * ENTRY_SIZE;
+    }
+
+    /** Compare the id of entry K of index IDX to the raw id KEY as
+     *  unsigned bytes. */
+    private static int compare(ByteBuffer idx, int k, byte[] key) {
+        int pos = entry(k);
+        for (int i = 0; i < key.length; i += 1) {
+            int c = Integer.compare(idx.get(pos + i) & 0xff, key[i] & 0xff);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return 0;
+    }
+
+    /** Copy entry K of index IDX into BUF, using SCRATCH to hold its
+     *  id. */
+    private static void copyEntry(ByteBuffer idx, int k, ByteBuffer buf,
+                                  byte[] scratch) {
+        int pos = entry(k);
+        idx.get(pos, scratch);
+        buf.put(scratch).putLong(idx.getLong(pos + Utils.RAW_UID_LENGTH))
+            .putInt(idx.getInt(pos + Utils.RAW_UID_LENGTH + 8));
+    }
+
+    /** Objects appended since the last flush, by id, mapped to
+     *  {offset, length}.  Hex ids sort in the same order as raw ones. */
+    private static TreeMap<String, long[]> pending = new TreeMap<>();
+    /** Objects flushed but not yet written to the index, likewise. */
+    private static TreeMap<String, long[]> unindexed = new TreeMap<>();
+    /** The memory-mapped index, or null if not yet mapped. */
+    private static MappedByteBuffer index;
+    /** The offsets returned by offsets(). */
+    private static long[] offsets;
+    /** The mapped index offsets were read from, or null. */
+    private static MappedByteBuffer offsetsOf;
+    /** Channels for reading and appending to the pack. */
+    private static FileChannel in, out;
+    /** Recently read objects, least recently used first. */
+    private static LinkedHashMap<String, byte[]> cache =
+        new LinkedHashMap<>(16, 0.75f, true);
+    /** Total size of the objects in cache. */
+    private static long cachedBytes;
+}
@@ -0,0 +1,247 @@
+package gitlet;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of the Pack: records and the index, with its sorted run and
+ *  tail.
+ *  @author Sasmit Agarwal
+ */
+public class PackTest {
+
+    @Before
+    public void setUp() {
+        TestRepository.create();
+    }
+
+    @After
+    public void tearDown() {
+        TestRepository.delete();
+    }
+
+    /** Returns the contents of a distinct object, different from those of
+     *  every other test, since read contents are cached by id. */
+    private static byte[] contents(String name, int k) {
+        return ("PackTest " + name + " " + k + "\n")
+            .getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** Store CONTENTS in the pack and return their id. */
+    private static String write(byte[] contents) {
+        String id = Utils.sha1(contents);
+        Pack.write(id, contents);
+        return id;
+    }
+
+    /** Returns the header of the index: magic, version and the number of
+     *  entries in its sorted run. */
+    private static int[] header() {
+        ByteBuffer idx = ByteBuffer.wrap(Utils.readContents(Main.PACK_INDEX));
+        return new int[] {idx.getInt(0), idx.getInt(4), idx.getInt(8)};
+    }
+
+    /** Returns the number of entries in the index. */
+    private static long entries() {
+        return (Main.PACK_INDEX.length() - Pack.INDEX_HEADER_SIZE)
+            / Pack.ENTRY_SIZE;
+    }
+
+    @Test
+    public void roundTrip() {
+        byte[] small = contents("roundTrip", 0);
+        byte[] repeated = new byte[10000];
+        Arrays.fill(repeated, (byte) 'x');
+        byte[] empty = new byte[0];
+        String a = write(small), b = write(repeated), c = write(empty);
+        Main.flush();
+        Daemon.reset();
+        assertArrayEquals(small, Pack.read(a));
+        assertArrayEquals(repeated, Pack.read(b));
+        assertArrayEquals(empty, Pack.read(c));
+        assertTrue(Pack.contains(a));
+        long[] loc = Pack.locate(b);
+        assertTrue("repeated bytes are stored compressed",
+                   (Pack.readRecord(loc[0], (int) loc[1])[0]
+                    & Pack.COMPRESSED) != 0);
+        assertTrue(loc[1] < repeated.length);
+    }
+
+    @Test
+    public void readBeforeFlush() {
+        byte[] data = contents("readBeforeFlush", 0);
+        String id = write(data);
+        assertNotNull(Pack.locate(id));
+        assertArrayEquals(data, Pack.read(id));
+    }
+
+    @Test
+    public void writeIsIdempotent() {
+        byte[] data = contents("writeIsIdempotent", 0);
+        String id = write(data);
+        Main.flush();
+        long size = Main.PACK.length();
+        long indexSize = Main.PACK_INDEX.length();
+        Pack.write(id, data);
+        Main.flush();
+        assertEquals(size, Main.PACK.length());
+        assertEquals(indexSize, Main.PACK_INDEX.length());
+    }
+
+    @Test
+    public void missingObjects() {
+        write(contents("missingObjects", 0));
+        Main.flush();
+        String absent = Utils.sha1(contents("missingObjects", 1));
+        assertNull(Pack.read(absent));
+        assertNull(Pack.locate(absent));
+        assertFalse(Pack.contains(absent));
+        assertNull(Pack.locate("abc"));
+    }
+
+    @Test
+    public void discardedWithoutFlush() {
+        String id = write(contents("discardedWithoutFlush", 0));
+        Pack.reset();
+        assertNull(Pack.locate(id));
+    }
+
+    @Test
+    public void flushAppendsToTail() {
+        String first = write(contents("flushAppendsToTail", 0));
+        Main.flush();
+        int sorted = header()[2];
+        assertEquals(Pack.INDEX_VERSION, header()[1]);
+        String[] ids = new String[5];
+        for (int k = 0; k < ids.length; k += 1) {
+            ids[k] = write(contents("flushAppendsToTail", k + 1));
+            Main.flush();
+        }
+        assertEquals("the sorted run is not rewritten", sorted, header()[2]);
+        assertEquals(sorted + ids.length, entries());
+        Daemon.reset();
+        assertNotNull(Pack.locate(first));
+        for (int k = 0; k < ids.length; k += 1) {
+            assertArrayEquals(contents("flushAppendsToTail", k + 1),
+                              Pack.read(ids[k]));
+        }
+    }
+
+    @Test
+    public void fullTailIsMerged() {
+        String[] ids = new String[Pack.MAX_TAIL + 2];
+        for (int k = 0; k < ids.length; k += 1) {
+            ids[k] = write(contents("fullTailIsMerged", k));
+            if (k == 0 || k == ids.length - 1) {
+                Main.flush();
+            }
+        }
+        assertEquals("a flush too large for the tail merges it into the run",
+                     entries(), header()[2]);
+        Daemon.reset();
+        for (int k = 0; k < ids.length; k += 1) {
+            assertNotNull(ids[k], Pack.locate(ids[k]));
+        }
+    }
+
+    @Test
+    public void numberedInPackOrder() {
+        String[] ids = new String[Pack.MAX_TAIL + 3];
+        for (int k = 0; k < ids.length; k += 1) {
+            ids[k] = write(contents("numberedInPackOrder", k));
+            if (k < 2 || k == ids.length - 1) {
+                assertEquals("unflushed", -1, Pack.number(ids[k]));
+                Main.flush();
+            }
+        }
+        Daemon.reset();
+        int first = Pack.number(ids[0]);
+        assertTrue(first >= 0);
+        BitSet numbers = new BitSet();
+        for (int k = 0; k < ids.length; k += 1) {
+            assertEquals("numbers survive merges of the index", first + k,
+                         Pack.number(ids[k]));
+            numbers.set(first + k);
+        }
+        assertEquals(Arrays.asList(ids), Pack.ids(numbers));
+        assertEquals(-1, Pack.number(
+            Utils.sha1(contents("numberedInPackOrder", -1))));
+    }
+
+    @Test
+    public void readsVersion1Index() throws IOException {
+        String a = write(contents("readsVersion1Index", 0));
+        Main.flush();
+        assertEquals(entries(), header()[2]);
+        ByteBuffer version = ByteBuffer.allocate(4).putInt(1);
+        version.flip();
+        try (FileChannel ch = FileChannel.open(Main.PACK_INDEX.toPath(),
+                                               StandardOpenOption.WRITE)) {
+            ch.write(version, 4);
+        }
+        Daemon.reset();
+        assertNotNull(Pack.locate(a));
+        String b = write(contents("readsVersion1Index", 1));
+        Main.flush();
+        assertEquals("a version 1 index is rewritten in full",
+                     Pack.INDEX_VERSION, header()[1]);
+        assertEquals(entries(), header()[2]);
+        Daemon.reset();
+        assertNotNull(Pack.locate(a));
+        assertNotNull(Pack.locate(b));
+    }
+
+    @Test
+    public void partialEntryIsIgnored() throws IOException {
+        String a = write(contents("partialEntryIsIgnored", 0));
+        Main.flush();
+        long entries = entries();
+        Files.write(Main.PACK_INDEX.toPath(), new byte[Pack.ENTRY_SIZE / 2],
+                    StandardOpenOption.APPEND);
+        Daemon.reset();
+        assertNotNull(Pack.locate(a));
+        String b = write(contents("partialEntryIsIgnored", 1));
+        Main.flush();
+        assertEquals(entries + 1, entries());
+        Daemon.reset();
+        assertNotNull(Pack.locate(a));
+        assertNotNull(Pack.locate(b));
+    }
+
+    @Test(expected = GitletException.class)
+    public void rejectsUnknownIndex() throws IOException {
+        write(contents("rejectsUnknownIndex", 0));
+        Main.flush();
+        Files.write(Main.PACK_INDEX.toPath(), new byte[Pack.INDEX_HEADER_SIZE]);
+        Daemon.reset();
+        Pack.locate(Utils.sha1(contents("rejectsUnknownIndex", 0)));
+    }
+
+    @Test
+    public void recoverAddsMissingEntries() {
+        byte[] data = contents("recoverAddsMissingEntries", 0);
+        String id = write(data);
+        long[] loc = Pack.locate(id);
+        ByteBuffer entry = ByteBuffer.allocate(Pack.ENTRY_SIZE);
+        entry.put(Utils.rawId(id)).putLong(loc[0]).putInt((int) loc[1]);
+        Main.flush();
+        assertFalse("present entries are not recovered",
+                    Pack.recover(entry.array()));
+        Main.PACK_INDEX.delete();
+        Daemon.reset();
+        assertTrue(Pack.recover(entry.array()));
+        Pack.synced();
+        Daemon.reset();
+        assertArrayEquals(data, Pack.read(id));
+    }
+}
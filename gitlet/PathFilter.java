@@ -0,0 +1,203 @@
+package gitlet;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Set;
+
+/** Changed-path Bloom filters: a memory-mapped file beside the commit
+ *  graph holding, for the commit at each position of the graph, a
+ *  fixed-size Bloom filter of the names of the files it changed from its
+ *  first parent (all of its files, for a root commit).  A filter that
+ *  says a name is absent is always right, so "log -- NAME" skips such
+ *  commits without reading them; one that says it may be present is
+ *  wrong for about 1 name in 50 at MAX_PATHS names, and less often for
+ *  fewer.  A commit that changed more than MAX_PATHS files gets a filter
+ *  of all ones, which matches every name.  Each record starts with the
+ *  first four bytes of the commit's id, so that a file left behind by a
+ *  rebuilt graph is detected and rebuilt in turn.  Filters are computed
+ *  once, when a commit is stored after those of all earlier commits, or
+ *  otherwise, as for commits made before this file existed, when they are
+ *  first needed by "log -- NAME".
+ *  @author Sasmit Agarwal
+ */
+class PathFilter {
+
+    /** Magic number at the start of the filter file. */
+    static final int MAGIC = 0x474c5046;
+    /** Version of the filter format. */
+    static final int VERSION = 1;
+    /** Size of the header: magic and version. */
+    static final int HEADER_SIZE = 8;
+    /** Number of bits in a filter. */
+    static final int BITS = 256;
+    /** Number of bits set for each name. */
+    static final int HASHES = 7;
+    /** The most names recorded in a filter; more give one of all ones. */
+    static final int MAX_PATHS = 32;
+    /** Size of one record: id prefix and filter. */
+    static final int RECORD_SIZE = 4 + BITS / 8;
+
+    /** Returns false if the commit at position POS of the commit graph
+     *  certainly did not change the file NAME, and true if it may
+     *  have. */
+    static boolean mayHaveChanged(int pos, String name) {
+        MappedByteBuffer f = filters();
+        if (pos < size(f)
+            && f.getInt(offset(pos)) != CommitGraph.prefix(pos)) {
+            rebuild();
+            f = filters();
+        }
+        if (pos >= size(f)) {
+            add(pos);
+            f = filters();
+        }
+        long h = hash(name);
+        int base = offset(pos) + 4;
+        for (int i = 0; i < HASHES; i += 1) {
+            int bit = bit(h, i);
+            if ((f.get(base + bit / 8) & (1 << (bit % 8))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Append the filter of the commit just stored at POS of the commit
+     *  graph, if the filters of all the commits before it are present.
+     *  Otherwise it is left, with those, to the first mayHaveChanged that
+     *  needs it, so that a commit never pays for the filters of the whole
+     *  history. */
+    static void append(int pos) {
+        if (size(filters()) == pos) {
+            add(pos);
+        }
+    }
+
+    /** Forget the mapped filters, so that they are mapped again when next
+     *  needed. */
+    static void reset() {
+        filters = null;
+    }
+
+    /** Append the filters of the commits at positions up to POS of the
+     *  commit graph that are missing. */
+    private static void add(int pos) {
+        int size = size(filters());
+        if (pos < size) {
+            return;
+        }
+        ByteBuffer buf = ByteBuffer.allocate((pos + 1 - size) * RECORD_SIZE);
+        for (int k = size; k <= pos; k += 1) {
+            buf.put(record(k));
+        }
+        buf.flip();
+        try (FileChannel out = FileChannel.open(Main.PATH_FILTERS.toPath(),
+                                                StandardOpenOption.WRITE)) {
+            long at = offset(size);
+            while (buf.hasRemaining()) {
+                at += out.write(buf, at);
+            }
+        } catch (IOException excp) {
+            throw Utils.error("Internal error writing path filters: %s",
+                              excp.getMessage());
+        }
+        filters = null;
+    }
+
+    /** Returns the record for the commit at POS of the commit graph. */
+    private static byte[] record(int pos) {
+        Commit c = CommitGraph.commit(pos);
+        int parent = CommitGraph.parent(pos);
+        String before = parent == CommitGraph.NONE ? FileTree.EMPTY
+            : CommitGraph.commit(parent).getTreeID();
+        Set<String> changed = FileTree.diff(before, c.getTreeID()).keySet();
+        ByteBuffer result = ByteBuffer.allocate(RECORD_SIZE);
+        result.putInt(CommitGraph.prefix(pos));
+        byte[] bits = new byte[BITS / 8];
+        if (changed.size() > MAX_PATHS) {
+            Arrays.fill(bits, (byte) -1);
+        } else {
+            for (String name : changed) {
+                long h = hash(name);
+                for (int i = 0; i < HASHES; i += 1) {
+                    int bit = bit(h, i);
+                    bits[bit / 8] |= 1 << (bit % 8);
+                }
+            }
+        }
+        return result.put(bits).array();
+    }
+
+    /** Returns a 64-bit hash of NAME: FNV-1a of its UTF-8 bytes, then
+     *  mixed as in MurmurHash3's finalizer so that both halves are
+     *  usable. */
+    private static long hash(String name) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : name.getBytes(StandardCharsets.UTF_8)) {
+            h = (h ^ (b & 0xff)) * 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        return h ^ (h >>> 33);
+    }
+
+    /** Returns the Ith bit set for a name of hash H, by double
+     *  hashing. */
+    private static int bit(long h, int i) {
+        int h1 = (int) h, h2 = (int) (h >>> 32) | 1;
+        return Math.floorMod(h1 + i * h2, BITS);
+    }
+
+    /** Returns the number of records in F. */
+    private static int size(MappedByteBuffer f) {
+        return (f.limit() - HEADER_SIZE) / RECORD_SIZE;
+    }
+
+    /** Returns the file offset of the record at POS. */
+    private static int offset(int pos) {
+        return HEADER_SIZE + pos * RECORD_SIZE;
+    }
+
+    /** Replace the filters with an empty file, to be filled as they are
+     *  needed. */
+    private static void rebuild() {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION);
+        Utils.writeContents(Main.PATH_FILTERS, header.array());
+        filters = null;
+    }
+
+    /** Returns the memory-mapped filters, creating an empty file if this
+     *  repository does not have one yet. */
+    private static MappedByteBuffer filters() {
+        if (filters == null) {
+            if (!Main.PATH_FILTERS.isFile()) {
+                rebuild();
+            }
+            try (FileChannel ch = FileChannel.open(
+                     Main.PATH_FILTERS.toPath(), StandardOpenOption.READ)) {
+                long records = (ch.size() - HEADER_SIZE) / RECORD_SIZE;
+                filters = ch.map(FileChannel.MapMode.READ_ONLY, 0,
+                                 HEADER_SIZE + records * RECORD_SIZE);
+            } catch (IOException excp) {
+                throw Utils.error("Internal error reading path filters: %s",
+                                  excp.getMessage());
+            }
+            if (filters.getInt(0) != MAGIC || filters.getInt(4) != VERSION) {
+                rebuild();
+                return filters();
+            }
+        }
+        return filters;
+    }
+
+    /** The memory-mapped filters, or null if not yet mapped. */
+    private static MappedByteBuffer filters;
+}
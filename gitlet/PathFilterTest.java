@@ -0,0 +1,171 @@
+package gitlet;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of the changed-path filters: that a commit's filter never rules
+ *  out a file it changed, that it rules out most others, and that
+ *  filters are appended, backfilled and rebuilt as described in
+ *  PathFilter.
+ *  @author Sasmit Agarwal
+ */
+public class PathFilterTest {
+
+    /** Number of files changed by the large commit. */
+    static final int LARGE = PathFilter.MAX_PATHS + 1;
+
+    /** Names of the working files of the tests. */
+    private Set<String> names = new HashSet<>();
+    /** Positions in the commit graph of the commits made by setUp. */
+    private int small, edit, large, removal;
+
+    @Before
+    public void setUp() {
+        TestRepository.create();
+        for (int k = 0; k < 5; k += 1) {
+            write("a" + k, "a" + k);
+        }
+        small = commit("five files");
+        write("a1", "changed");
+        edit = commit("one change");
+        for (int k = 0; k < LARGE; k += 1) {
+            write("b" + k, "b" + k);
+        }
+        large = commit("many files");
+        Main.main("rm", name("a2"));
+        removal = commit("one removal");
+    }
+
+    @After
+    public void tearDown() {
+        TestRepository.delete(names.toArray(new String[0]));
+    }
+
+    /** Returns the name of working file NAME. */
+    private static String name(String name) {
+        return "pathFilterTest" + name + ".txt";
+    }
+
+    /** Write CONTENTS to working file NAME and stage it, returning its
+     *  full name. */
+    private String write(String name, String contents) {
+        String result = name(name);
+        names.add(result);
+        Utils.writeContents(Utils.join(Main.CWD, result), contents);
+        Main.main("add", result);
+        return result;
+    }
+
+    /** Commit with message MSG and return the position of the commit. */
+    private static int commit(String msg) {
+        Main.main("commit", msg);
+        return CommitGraph.position(Repository.tree().headCommitID());
+    }
+
+    /** Returns the number of records in the filter file. */
+    private static long records() {
+        return (Main.PATH_FILTERS.length() - PathFilter.HEADER_SIZE)
+            / PathFilter.RECORD_SIZE;
+    }
+
+    /** Returns the number of NAMES that the commit at POS may have
+     *  changed. */
+    private static int matches(int pos, List<String> names) {
+        int result = 0;
+        for (String name : names) {
+            if (PathFilter.mayHaveChanged(pos, name)) {
+                result += 1;
+            }
+        }
+        return result;
+    }
+
+    /** Returns N names of files no commit changed. */
+    private static List<String> others(int n) {
+        List<String> result = new ArrayList<>();
+        for (int k = 0; k < n; k += 1) {
+            result.add("other/file" + k + ".java");
+        }
+        return result;
+    }
+
+    /** Check the answers of the filters of every commit made by
+     *  setUp. */
+    private void checkFilters() {
+        List<String> others = others(1000);
+        for (int k = 0; k < 5; k += 1) {
+            assertTrue(PathFilter.mayHaveChanged(small, name("a" + k)));
+        }
+        assertTrue(PathFilter.mayHaveChanged(edit, name("a1")));
+        assertTrue(PathFilter.mayHaveChanged(removal, name("a2")));
+        for (int pos : new int[] {small, edit, removal}) {
+            assertTrue("few false positives",
+                       matches(pos, others) < others.size() / 20);
+        }
+        assertEquals("a large change matches every name", others.size(),
+                     matches(large, others));
+    }
+
+    @Test
+    public void noFalseNegatives() {
+        assertEquals("filters are appended as commits are stored",
+                     CommitGraph.size(), records());
+        checkFilters();
+    }
+
+    @Test
+    public void backfilledWhenNeeded() {
+        Main.PATH_FILTERS.delete();
+        PathFilter.reset();
+        write("c", "c");
+        int last = commit("after the filters were lost");
+        assertEquals("a commit does not fill in the filters before it",
+                     0, records());
+        assertTrue(PathFilter.mayHaveChanged(last, name("c")));
+        assertEquals(CommitGraph.size(), records());
+        checkFilters();
+    }
+
+    @Test
+    public void appendedOnlyAtEnd() {
+        long before = records();
+        PathFilter.append(small);
+        PathFilter.append(CommitGraph.size() + 1);
+        assertEquals(before, records());
+    }
+
+    @Test
+    public void rebuiltOnPrefixMismatch() throws IOException {
+        try (RandomAccessFile f = new RandomAccessFile(Main.PATH_FILTERS,
+                                                       "rw")) {
+            long at = PathFilter.HEADER_SIZE
+                + (long) edit * PathFilter.RECORD_SIZE;
+            f.seek(at);
+            int prefix = f.readInt();
+            f.seek(at);
+            f.writeInt(~prefix);
+        }
+        PathFilter.reset();
+        assertTrue(PathFilter.mayHaveChanged(edit, name("a1")));
+        assertEquals("the filters were rebuilt up to the one sought",
+                     edit + 1, records());
+        checkFilters();
+    }
+
+    @Test
+    public void rebuiltOnUnknownFormat() {
+        Utils.writeContents(Main.PATH_FILTERS, "not path filters");
+        PathFilter.reset();
+        checkFilters();
+        assertEquals(CommitGraph.size(), records());
+    }
+}
@@ -0,0 +1,417 @@
+package gitlet;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/** Reachability bitmaps: for selected commits, the set of commits
+ *  reachable from them, as a bitmap over their positions in the
+ *  CommitGraph, and the set of tree nodes and blobs reachable from them,
+ *  as a bitmap over their numbers in the Pack.  Neither numbering ever
+ *  changes once assigned.  The set reachable from any commit is found by
+ *  walking its ancestry through the graph until each path meets a commit
+ *  with a bitmap, and or-ing in those bitmaps, together with the trees
+ *  of the commits walked for the objects.  Ancestry tests and common
+ *  ancestors are then bitmap operations, which Main.mergeBases uses when
+ *  painting the graph would take long.  Large objects are represented
+ *  by their chunks, and objects outside the pack, loose or stored whole,
+ *  have no number and are left out.
+ *  Bitmaps are stored only by update(), at the end of a command that
+ *  moved a branch, for each head whose set took at least MIN_WALK steps
+ *  to find, so that walks stay short; queries never write, but remember
+ *  the last CACHE commit sets they walked for in memory.  Bitmaps are
+ *  run-length encoded as in EWAH: a marker word giving a run of words of
+ *  all zeros or all ones and the number of literal words following it,
+ *  then those words.  A history with few merges thus needs a handful of
+ *  words per commit bitmap.  The bitmaps are appended to Main.BITMAPS,
+ *  each record holding the position of its commit, the first four bytes
+ *  of its id, and the words of its two bitmaps.  A file that does not
+ *  match the commit graph is ignored, and replaced by the next update;
+ *  CommitGraph deletes it when the graph is rebuilt.
+ *  @author Sasmit Agarwal
+ */
+class Reachability {
+
+    /** Magic number at the start of the bitmap file. */
+    static final int MAGIC = 0x474c4254;
+    /** Version of the bitmap format. */
+    static final int VERSION = 2;
+    /** Size of the header: magic and version. */
+    static final int HEADER_SIZE = 8;
+    /** Size of the header of a record: position, id prefix and the
+     *  numbers of words of its commit and object bitmaps. */
+    static final int RECORD_HEADER_SIZE = 16;
+    /** The fewest commits walked to find the set reachable from a branch
+     *  head for which a bitmap is then stored. */
+    static final int MIN_WALK = 64;
+    /** The number of sets found by walks that are kept in memory. */
+    static final int CACHE = 64;
+
+    /** Returns the positions of the best common ancestors of the commits
+     *  at A and B (those not ancestors of another common ancestor),
+     *  ordered as by CommitGraph.mergeBases.  Since parents precede their
+     *  children in the graph, the highest common ancestor left is always
+     *  a best one, and its ancestors are removed before the next. */
+    static List<Integer> mergeBases(int a, int b) {
+        ArrayList<Integer> result = new ArrayList<>();
+        BitSet common = reachable(a);
+        common.and(reachable(b));
+        for (int c = common.length() - 1; c >= 0;
+             c = common.previousSetBit(c - 1)) {
+            result.add(c);
+            common.andNot(reachable(c));
+        }
+        result.sort((x, y) -> {
+            int g = Integer.compare(CommitGraph.generation(y),
+                                    CommitGraph.generation(x));
+            return g != 0 ? g : Integer.compare(y, x);
+        });
+        return result;
+    }
+
+    /** Returns true iff the commit at A is the commit at B or one of its
+     *  ancestors.  An ancestor always has a lower generation. */
+    static boolean isAncestor(int a, int b) {
+        if (a == b) {
+            return true;
+        }
+        return CommitGraph.generation(a) < CommitGraph.generation(b)
+            && reachable(b).get(a);
+    }
+
+    /** Returns the positions of the commits reachable from the commit at
+     *  POS, including it.  The set is the caller's to change. */
+    static synchronized BitSet reachable(int pos) {
+        BitSet result = new BitSet(CommitGraph.size());
+        ArrayDeque<Integer> stack = new ArrayDeque<>();
+        HashMap<Integer, Integer> index = index();
+        stack.push(pos);
+        walked = 0;
+        while (!stack.isEmpty()) {
+            int c = stack.pop();
+            if (result.get(c)) {
+                continue;
+            }
+            Integer at = index.get(c);
+            BitSet known = at != null ? read(at) : found.get(c);
+            if (known != null) {
+                result.or(known);
+                continue;
+            }
+            result.set(c);
+            walked += 1;
+            int p = CommitGraph.mergeParent(c);
+            if (p != CommitGraph.NONE) {
+                stack.push(p);
+            }
+            p = CommitGraph.parent(c);
+            if (p != CommitGraph.NONE) {
+                stack.push(p);
+            }
+        }
+        if (walked >= MIN_WALK) {
+            found.put(pos, (BitSet) result.clone());
+        }
+        return result;
+    }
+
+    /** Returns the numbers in the Pack of the tree nodes and blobs
+     *  reachable from the commit at POS.  The set is the caller's to
+     *  change. */
+    static synchronized BitSet objects(int pos) {
+        BitSet commits = new BitSet(CommitGraph.size());
+        BitSet result = new BitSet();
+        ArrayDeque<Integer> stack = new ArrayDeque<>();
+        HashMap<Integer, Integer> index = index();
+        stack.push(pos);
+        while (!stack.isEmpty()) {
+            int c = stack.pop();
+            if (commits.get(c)) {
+                continue;
+            }
+            Integer at = index.get(c);
+            if (at != null) {
+                commits.or(read(at));
+                result.or(readObjects(at));
+                continue;
+            }
+            commits.set(c);
+            FileTree.walk(CommitGraph.commit(c).getTreeID(),
+                          id -> visit(id, result));
+            int p = CommitGraph.mergeParent(c);
+            if (p != CommitGraph.NONE) {
+                stack.push(p);
+            }
+            p = CommitGraph.parent(c);
+            if (p != CommitGraph.NONE) {
+                stack.push(p);
+            }
+        }
+        return result;
+    }
+
+    /** Add to SEEN the number of the object ID, or those of its chunks if
+     *  it is a large object.  Returns false iff ID was already in SEEN,
+     *  and with it everything below it. */
+    private static boolean visit(String id, BitSet seen) {
+        int n = Pack.number(id);
+        if (n < 0) {
+            for (String chunk : Pack.chunks(id)) {
+                int k = Pack.number(chunk);
+                if (k >= 0) {
+                    seen.set(k);
+                }
+            }
+            return true;
+        }
+        if (seen.get(n)) {
+            return false;
+        }
+        seen.set(n);
+        return true;
+    }
+
+    /** Store the bitmaps of the branch heads of TREE that need them. */
+    static void update(CommitTree tree) {
+        for (String id : new TreeSet<>(tree.getBranchToCommit().values())) {
+            int pos = CommitGraph.position(id);
+            if (pos != CommitGraph.NONE) {
+                store(pos);
+            }
+        }
+    }
+
+    /** Store the bitmaps of the commit at POS unless it has them or its
+     *  commit set takes fewer than MIN_WALK steps to find.  A set kept in
+     *  memory was found by such a walk, though reachable would not walk
+     *  again. */
+    static synchronized void store(int pos) {
+        if (index().containsKey(pos)) {
+            return;
+        }
+        BitSet set = found.get(pos);
+        if (set == null) {
+            set = reachable(pos);
+            if (walked < MIN_WALK) {
+                return;
+            }
+        }
+        write(pos, set, objects(pos));
+    }
+
+    /** Returns the number of commits walked by the last call of
+     *  reachable, rather than found in a bitmap. */
+    static int walked() {
+        return walked;
+    }
+
+    /** Returns the number of bitmaps stored. */
+    static synchronized int count() {
+        return index().size();
+    }
+
+    /** Forget the mapped bitmaps and the sets kept in memory, so that
+     *  they are read again when next needed. */
+    static synchronized void reset() {
+        unmap();
+        found.clear();
+    }
+
+    /** Returns the words of SET, run-length encoded. */
+    static long[] encode(BitSet set) {
+        long[] words = set.toLongArray();
+        long[] result = new long[words.length + 1];
+        int n = 0;
+        int i = 0;
+        while (i < words.length) {
+            long fill = words[i] == -1L ? -1L : 0L;
+            int run = 0;
+            while (i < words.length && words[i] == fill && run < MAX_RUN) {
+                run += 1;
+                i += 1;
+            }
+            int literals = i;
+            while (literals < words.length && words[literals] != 0
+                   && words[literals] != -1L) {
+                literals += 1;
+            }
+            literals -= i;
+            if (n + 1 + literals > result.length) {
+                result = Arrays.copyOf(
+                    result, Math.max(2 * result.length, n + 1 + literals));
+            }
+            result[n] = (fill & 1L) << 63 | (long) run << 32 | literals;
+            System.arraycopy(words, i, result, n + 1, literals);
+            n += 1 + literals;
+            i += literals;
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    /** Returns the set whose run-length encoded words are the N words of
+     *  BUF starting at OFFSET. */
+    static BitSet decode(ByteBuffer buf, int offset, int n) {
+        long[] words = new long[64];
+        int size = 0;
+        int end = offset + 8 * n;
+        while (offset < end) {
+            long marker = buf.getLong(offset);
+            offset += 8;
+            long fill = (marker >>> 63) == 0 ? 0L : -1L;
+            int run = (int) (marker >>> 32) & MAX_RUN;
+            int literals = (int) marker;
+            if (size + run + literals > words.length) {
+                words = Arrays.copyOf(
+                    words, Math.max(2 * words.length, size + run + literals));
+            }
+            Arrays.fill(words, size, size + run, fill);
+            size += run;
+            for (int k = 0; k < literals; k += 1) {
+                words[size] = buf.getLong(offset);
+                size += 1;
+                offset += 8;
+            }
+        }
+        return BitSet.valueOf(Arrays.copyOf(words, size));
+    }
+
+    /** Returns the commit set stored in the record at OFFSET. */
+    private static BitSet read(int offset) {
+        return decode(bitmaps, offset + RECORD_HEADER_SIZE,
+                      bitmaps.getInt(offset + 8));
+    }
+
+    /** Returns the object set stored in the record at OFFSET. */
+    private static BitSet readObjects(int offset) {
+        return decode(bitmaps, offset + RECORD_HEADER_SIZE
+                      + 8 * bitmaps.getInt(offset + 8),
+                      bitmaps.getInt(offset + 12));
+    }
+
+    /** Append the bitmaps of COMMITS and OBJECTS as those of the commit at
+     *  POS, first replacing a file that is missing or does not match the
+     *  graph. */
+    private static void write(int pos, BitSet commits, BitSet objects) {
+        index();
+        if (!valid) {
+            clear();
+            index();
+        }
+        long[] words = encode(commits), objectWords = encode(objects);
+        ByteBuffer buf = ByteBuffer.allocate(
+            RECORD_HEADER_SIZE + 8 * (words.length + objectWords.length));
+        buf.putInt(pos).putInt(CommitGraph.prefix(pos)).putInt(words.length)
+            .putInt(objectWords.length);
+        buf.asLongBuffer().put(words).put(objectWords);
+        buf.rewind();
+        try (FileChannel out = FileChannel.open(Main.BITMAPS.toPath(),
+                                                StandardOpenOption.WRITE)) {
+            long at = end;
+            while (buf.hasRemaining()) {
+                at += out.write(buf, at);
+            }
+        } catch (IOException excp) {
+            throw Utils.error("Internal error writing bitmaps: %s",
+                              excp.getMessage());
+        }
+        unmap();
+    }
+
+    /** Returns the offsets of the records of the mapped bitmaps, by the
+     *  position of their commits, mapping them.  The index is empty, and
+     *  valid false, if the file is missing, malformed or does not match
+     *  the commit graph. */
+    private static HashMap<Integer, Integer> index() {
+        if (index != null) {
+            return index;
+        }
+        index = new HashMap<>();
+        valid = false;
+        end = HEADER_SIZE;
+        if (Main.BITMAPS.length() < HEADER_SIZE) {
+            return index;
+        }
+        try (FileChannel ch = FileChannel.open(Main.BITMAPS.toPath(),
+                                               StandardOpenOption.READ)) {
+            bitmaps = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        } catch (IOException excp) {
+            throw Utils.error("Internal error reading bitmaps: %s",
+                              excp.getMessage());
+        }
+        if (bitmaps.getInt(0) != MAGIC || bitmaps.getInt(4) != VERSION) {
+            return index;
+        }
+        HashMap<Integer, Integer> result = new HashMap<>();
+        int off = HEADER_SIZE, limit = bitmaps.limit();
+        while (off + RECORD_HEADER_SIZE <= limit) {
+            int pos = bitmaps.getInt(off);
+            long n = (long) bitmaps.getInt(off + 8)
+                + bitmaps.getInt(off + 12);
+            long next = off + RECORD_HEADER_SIZE + 8 * n;
+            if (bitmaps.getInt(off + 8) < 0 || bitmaps.getInt(off + 12) < 0
+                || next > limit) {
+                break;
+            }
+            if (pos < 0 || pos >= CommitGraph.size()
+                || bitmaps.getInt(off + 4) != CommitGraph.prefix(pos)) {
+                return index;
+            }
+            result.put(pos, off);
+            off = (int) next;
+        }
+        end = off;
+        valid = true;
+        index = result;
+        return result;
+    }
+
+    /** Replace the bitmaps with an empty file. */
+    private static void clear() {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION);
+        Utils.writeContents(Main.BITMAPS, header.array());
+        unmap();
+    }
+
+    /** Forget the mapped bitmaps. */
+    private static void unmap() {
+        bitmaps = null;
+        index = null;
+    }
+
+    /** The longest run of fill words one marker word describes. */
+    private static final int MAX_RUN = 0x7fffffff;
+
+    /** The memory-mapped bitmaps, or null if not yet mapped. */
+    private static MappedByteBuffer bitmaps;
+    /** The offsets of the records of the mapped bitmaps, by the position
+     *  of their commits, or null if not yet read. */
+    private static HashMap<Integer, Integer> index;
+    /** True iff the mapped bitmaps match the commit graph. */
+    private static boolean valid;
+    /** Offset at which the next record is written. */
+    private static long end;
+    /** The sets found by the last CACHE walks long enough to store, by
+     *  the position of their commits. */
+    private static final LinkedHashMap<Integer, BitSet> found =
+        new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(
+                Map.Entry<Integer, BitSet> eldest) {
+                return size() > CACHE;
+            }
+        };
+    /** Number of commits walked by the last call of reachable. */
+    private static int walked;
+}
@@ -0,0 +1,291 @@
+package gitlet;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of the reachability bitmaps: their run-length encoding, and
+ *  reachable sets, ancestry and merge bases found through them, on
+ *  random graphs of commits of the empty tree, and the reachable
+ *  objects of real commits.
+ *  @author Sasmit Agarwal
+ */
+public class ReachabilityTest {
+
+    /** Number of synthetic commits in the random graph. */
+    static final int COMMITS = 600;
+
+    /** Names of the working files made by a test. */
+    private String[] names = new String[0];
+
+    @Before
+    public void setUp() {
+        TestRepository.create();
+    }
+
+    @After
+    public void tearDown() {
+        TestRepository.delete(names);
+    }
+
+    /** Returns SET after encoding and decoding it, with the encoded words
+     *  placed after PAD other words. */
+    private static BitSet roundTrip(BitSet set, int pad) {
+        long[] words = Reachability.encode(set);
+        ByteBuffer buf = ByteBuffer.allocate(8 * (pad + words.length));
+        for (int k = 0; k < pad; k += 1) {
+            buf.putLong(-1L);
+        }
+        for (long w : words) {
+            buf.putLong(w);
+        }
+        return Reachability.decode(buf, 8 * pad, words.length);
+    }
+
+    /** Returns the set of bits FROM up to but not including TO. */
+    private static BitSet range(int from, int to) {
+        BitSet result = new BitSet();
+        result.set(from, to);
+        return result;
+    }
+
+    /** Add a random graph of COMMITS commits of the empty tree, with
+     *  merges, descended from the initial commit, and return their
+     *  positions. */
+    private static int[] graph(long seed) {
+        Random rand = new Random(seed);
+        List<Commit> commits = new ArrayList<>();
+        commits.add(Repository.head());
+        int[] result = new int[COMMITS];
+        for (int k = 1; k <= COMMITS; k += 1) {
+            Commit parent =
+                commits.get(k - 1 - rand.nextInt(Math.min(k, 10)));
+            Commit merge = null;
+            if (rand.nextInt(5) == 0) {
+                merge = commits.get(rand.nextInt(k));
+                if (merge == parent) {
+                    merge = null;
+                }
+            }
+            Commit c = new Commit("ReachabilityTest " + seed + " " + k,
+                                  new Date(1000L * k), parent, merge,
+                                  FileTree.EMPTY);
+            c.save(Utils.join(Main.COMMITS, c.getId()));
+            result[k - 1] = CommitGraph.add(c);
+            commits.add(c);
+        }
+        return result;
+    }
+
+    /** Add a chain of N commits known only to the CommitGraph, the first
+     *  a child of the commit at POS, and return the position of the
+     *  last. */
+    private static int chain(String name, int pos, int n) {
+        String parent = CommitGraph.id(pos);
+        for (int k = 0; k < n; k += 1) {
+            String id = Utils.sha1(name + " " + k);
+            pos = CommitGraph.add(id, parent, null, 0);
+            parent = id;
+        }
+        return pos;
+    }
+
+    /** Returns the positions of the commits reachable from POS, found by
+     *  walking the graph. */
+    private static BitSet walk(int pos) {
+        BitSet result = new BitSet();
+        ArrayDeque<Integer> stack = new ArrayDeque<>();
+        stack.push(pos);
+        while (!stack.isEmpty()) {
+            int c = stack.pop();
+            if (c == CommitGraph.NONE || result.get(c)) {
+                continue;
+            }
+            result.set(c);
+            stack.push(CommitGraph.parent(c));
+            stack.push(CommitGraph.mergeParent(c));
+        }
+        return result;
+    }
+
+    /** Check reachable sets and merge bases among the commits at
+     *  POSITIONS, chosen with RAND. */
+    private static void check(int[] positions, Random rand) {
+        for (int trial = 0; trial < 100; trial += 1) {
+            int a = positions[rand.nextInt(positions.length)];
+            int b = positions[rand.nextInt(positions.length)];
+            assertEquals(walk(a), Reachability.reachable(a));
+            assertEquals(walk(b).get(a), Reachability.isAncestor(a, b));
+            assertEquals(CommitGraph.mergeBases(a, b),
+                         Reachability.mergeBases(a, b));
+        }
+    }
+
+    @Test
+    public void encodeDecode() {
+        Random rand = new Random(4);
+        BitSet mixed = new BitSet();
+        for (int k = 0; k < 5000; k += 1) {
+            mixed.set(rand.nextInt(100000));
+        }
+        BitSet runs = range(0, 64 * 1000);
+        runs.set(64 * 3000, 64 * 3000 + 5);
+        runs.set(64 * 3001, 64 * 3500);
+        runs.set(64 * 3500 + 7);
+        BitSet alternating = new BitSet();
+        for (int k = 0; k < 64 * 40; k += 2) {
+            alternating.set(k);
+        }
+        for (BitSet set : new BitSet[] {
+                new BitSet(), range(0, 1), range(63, 64), range(64, 65),
+                range(0, 64), range(0, 64 * 5), range(0, 130),
+                range(10, 64 * 7 - 3), mixed, runs, alternating }) {
+            assertEquals(set, roundTrip(set, 0));
+            assertEquals(set, roundTrip(set, 3));
+        }
+        assertEquals(0, Reachability.encode(new BitSet()).length);
+    }
+
+    @Test
+    public void runsAreCompact() {
+        BitSet runs = range(0, 64 * 1000);
+        runs.set(64 * 2000 + 1);
+        assertEquals("a run of ones, then a run of zeros and a literal", 3,
+                     Reachability.encode(runs).length);
+        assertEquals(1, Reachability.encode(range(0, 64 * 1000)).length);
+    }
+
+    @Test
+    public void agreesWithGraph() {
+        int[] positions = graph(1);
+        Random rand = new Random(5);
+        check(positions, rand);
+        Reachability.reset();
+        for (int k = 0; k < positions.length; k += 50) {
+            Reachability.store(positions[k]);
+        }
+        assertTrue(Reachability.count() > 0);
+        check(positions, rand);
+        Reachability.reset();
+        check(positions, rand);
+    }
+
+    @Test
+    public void bitmapsShortenWalks() {
+        int[] positions = graph(2);
+        int head = positions[positions.length - 1];
+        Reachability.reachable(head);
+        assertTrue(Reachability.walked() >= Reachability.MIN_WALK);
+        Reachability.store(head);
+        assertEquals(1, Reachability.count());
+        Reachability.reset();
+        assertEquals(walk(head), Reachability.reachable(head));
+        assertEquals(0, Reachability.walked());
+        Reachability.store(positions[0]);
+        assertEquals("short walks are not stored", 1, Reachability.count());
+    }
+
+    @Test
+    public void mismatchedBitmapsIgnored() throws IOException {
+        int[] positions = graph(3);
+        int head = positions[positions.length - 1];
+        Reachability.store(head);
+        try (RandomAccessFile f = new RandomAccessFile(Main.BITMAPS, "rw")) {
+            f.seek(Reachability.HEADER_SIZE + 4);
+            int prefix = f.readInt();
+            f.seek(Reachability.HEADER_SIZE + 4);
+            f.writeInt(~prefix);
+        }
+        Reachability.reset();
+        assertEquals(0, Reachability.count());
+        check(positions, new Random(6));
+        Reachability.reset();
+        Reachability.store(head);
+        assertEquals("the file is replaced", 1, Reachability.count());
+        assertEquals(Reachability.HEADER_SIZE
+                     + Reachability.RECORD_HEADER_SIZE
+                     + 8 * Reachability.encode(walk(head)).length
+                     + 8 * Reachability.encode(
+                         Reachability.objects(head)).length,
+                     Main.BITMAPS.length());
+    }
+
+    @Test
+    public void fallbackFindsAncestors() {
+        int root = CommitGraph.position(Repository.tree().headCommitID());
+        int tip = chain("fallback", root, Main.PAINT_LIMIT + 10);
+        int side = chain("fallback side", root, Main.PAINT_LIMIT + 10);
+        assertNull("painting gives up",
+                   CommitGraph.mergeBases(tip, root, Main.PAINT_LIMIT));
+        assertEquals(List.of(root), Main.mergeBases(tip, root));
+        assertEquals(List.of(root), Main.mergeBases(root, tip));
+        assertEquals(List.of(root), Main.mergeBases(tip, side));
+        assertTrue(Reachability.isAncestor(root, tip));
+        assertFalse(Reachability.isAncestor(tip, root));
+        assertFalse(Reachability.isAncestor(side, tip));
+    }
+
+    /** Returns the numbers of the objects reachable from the commit at
+     *  POS, found by walking every tree of its ancestry. */
+    private static BitSet objects(int pos) {
+        BitSet result = new BitSet();
+        BitSet commits = walk(pos);
+        for (int c = commits.nextSetBit(0); c >= 0;
+             c = commits.nextSetBit(c + 1)) {
+            FileTree.walk(CommitGraph.commit(c).getTreeID(), id -> {
+                    int n = Pack.number(id);
+                    if (n >= 0) {
+                        result.set(n);
+                    }
+                    return true;
+                });
+        }
+        return result;
+    }
+
+    @Test
+    public void reachableObjects() {
+        names = new String[2 * Reachability.MIN_WALK];
+        HashSet<String> blobs = new HashSet<>();
+        for (int k = 0; k < names.length; k += 1) {
+            names[k] = "reachability" + k + ".txt";
+            Utils.writeContents(Utils.join(Main.CWD, names[k]),
+                                "ReachabilityTest " + k + "\n");
+            Main.main("add", names[k]);
+            Main.main("commit", "reachableObjects " + k);
+            blobs.add(Repository.head().getBlobID(names[k]));
+            if (k == Reachability.MIN_WALK) {
+                Main.main("rm", names[0]);
+                Main.main("commit", "reachableObjects removal");
+            }
+        }
+        int head = CommitGraph.position(Repository.tree().headCommitID());
+        int middle = CommitGraph.parent(head);
+        BitSet expected = objects(head);
+        assertTrue("commands store bitmaps", Reachability.count() > 0);
+        assertEquals(expected, Reachability.objects(head));
+        assertTrue("removed files stay reachable",
+                   Pack.ids(expected).containsAll(blobs));
+        assertEquals(names.length, blobs.size());
+        Main.BITMAPS.delete();
+        Reachability.reset();
+        assertEquals(expected, Reachability.objects(head));
+        Reachability.store(middle);
+        assertEquals(1, Reachability.count());
+        Reachability.reset();
+        assertEquals(objects(middle), Reachability.objects(middle));
+        assertEquals(expected, Reachability.objects(head));
+    }
+}
@@ -0,0 +1,171 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/** The state of the repository for the life of one command.  The commit
+ *  tree, each commit read, and the names of the files staged for addition
+ *  and for removal are loaded from .gitlet at most once, and a commit id
+ *  always yields the same Commit object.  Changes to the tree are kept
+ *  in memory and written once, atomically, by flush() at the end of the
+ *  command, which also discards the state so that the next command (in
+ *  the same process, for the benchmarks) starts afresh.  Abbreviated ids
+ *  are resolved through CommitIndex, which is mapped only once per
+ *  process.  The staging methods may be called from several threads at
+ *  once.
+ *  @author Sasmit Agarwal
+ */
+class Repository {
+
+    /** Returns the commit tree. */
+    static CommitTree tree() {
+        if (tree == null) {
+            tree = CommitTree.read(Main.COMMIT_TREE);
+        }
+        return tree;
+    }
+
+    /** Make TREE the commit tree, to be written by flush(). */
+    static void setTree(CommitTree tree) {
+        Repository.tree = tree;
+        treeDirty = true;
+    }
+
+    /** Returns the commit with id ID. */
+    static Commit commit(String id) {
+        return commits.computeIfAbsent(id, k ->
+            Commit.read(Utils.join(Main.COMMITS, k)));
+    }
+
+    /** Returns the head commit of the active branch. */
+    static Commit head() {
+        return commit(tree().headCommitID());
+    }
+
+    /** Returns the names of the files staged for addition. */
+    static NavigableSet<String> staged() {
+        return stagingArea().staged;
+    }
+
+    /** Returns the names of the files staged for removal. */
+    static NavigableSet<String> removed() {
+        return stagingArea().removed;
+    }
+
+    /** Returns true iff any file is staged for addition or removal. */
+    static boolean changesStaged() {
+        return !staged().isEmpty() || !removed().isEmpty();
+    }
+
+    /** Record that FNAME has been copied to Main.ADDITION. */
+    static void stage(String fname) {
+        staged().add(fname);
+    }
+
+    /** Delete the copy of FNAME staged for addition, if any. */
+    static void unstage(String fname) {
+        if (staged().remove(fname)) {
+            File f = Utils.join(Main.ADDITION, fname);
+            f.delete();
+            StatCache.forget(f);
+        }
+    }
+
+    /** Stage FNAME for removal. */
+    static void stageRemoval(String fname) {
+        Utils.writeContents(Utils.join(Main.REMOVAL, fname),
+                            "staged for removal");
+        removed().add(fname);
+    }
+
+    /** Cancel the removal of FNAME, if it is staged. */
+    static void unstageRemoval(String fname) {
+        if (removed().remove(fname)) {
+            Utils.join(Main.REMOVAL, fname).delete();
+        }
+    }
+
+    /** Empty the staging area. */
+    static void clearStage() {
+        for (String fname : staged().toArray(new String[0])) {
+            unstage(fname);
+        }
+        for (String fname : removed().toArray(new String[0])) {
+            unstageRemoval(fname);
+        }
+    }
+
+    /** Write the commit tree if it has changed, after making it and the
+     *  other changes of the command durable in the Journal, and forget
+     *  all state. */
+    static synchronized void flush() {
+        File tmp = Utils.join(Main.GITLET_FOLDER, "commitTree.tmp");
+        if (treeDirty) {
+            tree.save(tmp);
+            Journal.add(Journal.TREE, Utils.readContents(tmp));
+        }
+        Journal.sync();
+        if (treeDirty) {
+            try {
+                Files.move(tmp.toPath(), Main.COMMIT_TREE.toPath(),
+                           StandardCopyOption.REPLACE_EXISTING,
+                           StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException excp) {
+                throw Utils.error("Internal error writing commit tree: %s",
+                                  excp.getMessage());
+            }
+            Journal.applied();
+            Reachability.update(tree);
+        }
+        reset();
+    }
+
+    /** Forget all state, discarding any changes to the commit tree. */
+    static synchronized void reset() {
+        tree = null;
+        treeDirty = false;
+        commits.clear();
+        stage = null;
+    }
+
+    /** Returns the staging area, listing the staging directories unless
+     *  they have been listed since the last reset. */
+    private static Stage stagingArea() {
+        Stage result = stage;
+        if (result == null) {
+            synchronized (Repository.class) {
+                if (stage == null) {
+                    stage = new Stage();
+                }
+                result = stage;
+            }
+        }
+        return result;
+    }
+
+    /** The names of the files staged for addition and for removal, listed
+     *  together so that a caller never sees one without the other. */
+    private static final class Stage {
+        /** The files staged for addition. */
+        private final NavigableSet<String> staged =
+            new ConcurrentSkipListSet<>(Main.filesIn(Main.ADDITION));
+        /** The files staged for removal. */
+        private final NavigableSet<String> removed =
+            new ConcurrentSkipListSet<>(Main.filesIn(Main.REMOVAL));
+    }
+
+    /** The commit tree, or null if not yet read. */
+    private static CommitTree tree;
+    /** True iff the commit tree has changed since it was read. */
+    private static boolean treeDirty;
+    /** The commits read, by id. */
+    private static final ConcurrentHashMap<String, Commit> commits =
+        new ConcurrentHashMap<>();
+    /** The staging area, or null if not yet listed. */
+    private static volatile Stage stage;
+}
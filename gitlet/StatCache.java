@@ -0,0 +1,221 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/** The index of file hashes kept in Main.STAT_CACHE.  For each file it
+ *  has hashed, it records the file's size, modification time and file
+ *  key (device and inode on Unix) together with its blob id, so that a
+ *  file whose stat data is unchanged need not be read again.  An entry
+ *  whose modification time is not strictly older than the index file
+ *  itself is "racy": the file may have changed again within the same
+ *  clock tick after it was hashed, so it is always rehashed.  The
+ *  methods may be called from several threads at once.
+ *  @author Sasmit Agarwal
+ */
+class StatCache {
+
+    /** Magic number at the start of the index. */
+    static final int MAGIC = 0x474c5358;
+    /** Version of the index format. */
+    static final int VERSION = 1;
+
+    /** Returns the blob id that FILE would have if committed as NAME,
+     *  that is sha1(NAME, contents), or null if FILE does not exist.
+     *  FILE is read only if its stat data changed since it was last
+     *  hashed. */
+    static String hash(File file, String name) {
+        Entry stat = stat(file);
+        if (stat == null) {
+            return null;
+        }
+        Entry old = entries().get(file.getPath());
+        if (old != null && old.sameStat(stat) && old.mtime < indexTime) {
+            return old.id;
+        }
+        stat.id = Utils.sha1(name, file);
+        entries().put(file.getPath(), stat);
+        dirty = true;
+        return stat.id;
+    }
+
+    /** Record that FILE, which has just been written or read, has blob
+     *  id ID. */
+    static void record(File file, String id) {
+        Entry stat = stat(file);
+        if (stat != null) {
+            stat.id = id;
+            entries().put(file.getPath(), stat);
+            dirty = true;
+        }
+    }
+
+    /** Forget FILE, which has been deleted. */
+    static void forget(File file) {
+        if (entries().remove(file.getPath()) != null) {
+            dirty = true;
+        }
+    }
+
+    /** Write the index if it changed.  Entries are then judged racy
+     *  against the new index, as they would be by a process reading it. */
+    static synchronized void flush() {
+        if (!dirty) {
+            return;
+        }
+        File tmp = Utils.join(Main.GITLET_FOLDER, "index.tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                 new BufferedOutputStream(Files.newOutputStream(
+                     tmp.toPath())))) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            Codec.writeVarint(out, entries.size());
+            for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                Codec.writeString(out, e.getKey());
+                e.getValue().write(out);
+            }
+        } catch (IOException excp) {
+            throw Utils.error("Internal error writing index: %s",
+                              excp.getMessage());
+        }
+        try {
+            Files.move(tmp.toPath(), Main.STAT_CACHE.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw Utils.error("Internal error writing index: %s",
+                              excp.getMessage());
+        }
+        try {
+            indexTime = Files.getLastModifiedTime(Main.STAT_CACHE.toPath())
+                .to(TimeUnit.NANOSECONDS);
+        } catch (IOException excp) {
+            entries = null;
+        }
+        dirty = false;
+    }
+
+    /** Forget the entries, discarding any changes, so that the index is
+     *  read again when next needed. */
+    static synchronized void reset() {
+        entries = null;
+        dirty = false;
+    }
+
+    /** Returns the current stat data of FILE, without an id, or null if it
+     *  is not a plain file. */
+    private static Entry stat(File file) {
+        Trace.add(Trace.Counter.STATS, 1);
+        try {
+            BasicFileAttributes attrs =
+                Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+            if (!attrs.isRegularFile()) {
+                return null;
+            }
+            return new Entry(attrs.size(),
+                             attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS),
+                             Objects.hashCode(attrs.fileKey()));
+        } catch (NoSuchFileException excp) {
+            return null;
+        } catch (IOException excp) {
+            throw Utils.error("Internal error reading %s: %s", file,
+                              excp.getMessage());
+        }
+    }
+
+    /** Returns the entries of the index, reading it if needed. */
+    private static ConcurrentHashMap<String, Entry> entries() {
+        ConcurrentHashMap<String, Entry> result = entries;
+        return result != null ? result : load();
+    }
+
+    /** Read the index into entries, unless another thread did, and return
+     *  them. */
+    private static synchronized ConcurrentHashMap<String, Entry> load() {
+        if (entries != null) {
+            return entries;
+        }
+        ConcurrentHashMap<String, Entry> result = new ConcurrentHashMap<>();
+        indexTime = Long.MIN_VALUE;
+        if (Main.STAT_CACHE.isFile()) {
+            try (DataInputStream in = new DataInputStream(
+                     new BufferedInputStream(Files.newInputStream(
+                         Main.STAT_CACHE.toPath())))) {
+                if (in.readInt() == MAGIC && in.readUnsignedByte() == VERSION) {
+                    for (int n = Codec.readVarint(in); n > 0; n -= 1) {
+                        String path = Codec.readString(in);
+                        result.put(path, Entry.read(in));
+                    }
+                    indexTime =
+                        Files.getLastModifiedTime(Main.STAT_CACHE.toPath())
+                        .to(TimeUnit.NANOSECONDS);
+                }
+            } catch (IOException excp) {
+                result.clear();
+            }
+        }
+        entries = result;
+        return result;
+    }
+
+    /** The stat data and blob id of one file. */
+    private static class Entry {
+        /** An entry for a file of size SIZE modified at MTIME nanoseconds
+         *  with a file key hashing to KEY. */
+        Entry(long size, long mtime, int key) {
+            this.size = size;
+            this.mtime = mtime;
+            this.key = key;
+        }
+
+        /** Returns true iff OTHER has the same stat data as this. */
+        boolean sameStat(Entry other) {
+            return size == other.size && mtime == other.mtime
+                && key == other.key;
+        }
+
+        /** Write this entry to OUT. */
+        void write(DataOutputStream out) throws IOException {
+            out.writeLong(size);
+            out.writeLong(mtime);
+            out.writeInt(key);
+            Codec.writeId(out, id);
+        }
+
+        /** Returns the entry written to IN by write. */
+        static Entry read(DataInputStream in) throws IOException {
+            Entry result = new Entry(in.readLong(), in.readLong(),
+                                     in.readInt());
+            result.id = Codec.readId(in);
+            return result;
+        }
+
+        /** Size of the file. */
+        private long size;
+        /** Modification time of the file, in nanoseconds. */
+        private long mtime;
+        /** Hash of the file key. */
+        private int key;
+        /** Blob id of the file's contents. */
+        private String id;
+    }
+
+    /** The entries, by path, or null if not yet read. */
+    private static volatile ConcurrentHashMap<String, Entry> entries;
+    /** Modification time of the index when read, in nanoseconds. */
+    private static volatile long indexTime;
+    /** True iff entries changed since the index was read. */
+    private static volatile boolean dirty;
+}
@@ -0,0 +1,136 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of the StatCache: that a file whose stat data is unchanged and
+ *  older than the index is not read again, and that every other file,
+ *  racy ones included, is.  Contents are changed without changing size
+ *  or modification time, so a stale id shows that the cache was used.
+ *  @author Sasmit Agarwal
+ */
+public class StatCacheTest {
+
+    /** Name of the working file. */
+    static final String NAME = "statCacheTest.txt";
+    /** The working file. */
+    static final File FILE = Utils.join(Main.CWD, NAME);
+
+    @Before
+    public void setUp() {
+        TestRepository.create();
+    }
+
+    @After
+    public void tearDown() {
+        TestRepository.delete(NAME);
+    }
+
+    /** Write CONTENTS to FILE, giving it modification time MTIME. */
+    private static void write(String contents, FileTime mtime)
+        throws IOException {
+        Utils.writeContents(FILE, contents);
+        Files.setLastModifiedTime(FILE.toPath(), mtime);
+    }
+
+    /** Returns an hour before now. */
+    private static FileTime past() {
+        return FileTime.fromMillis(System.currentTimeMillis() - 3600_000);
+    }
+
+    @Test
+    public void unchangedFileNotReread() throws IOException {
+        FileTime old = past();
+        write("aaaa", old);
+        String id = StatCache.hash(FILE, NAME);
+        assertEquals(Utils.sha1(NAME, "aaaa".getBytes()), id);
+        StatCache.flush();
+        write("bbbb", old);
+        assertEquals("same stat data, older than the index", id,
+                     StatCache.hash(FILE, NAME));
+        StatCache.reset();
+        assertEquals("the entry is read back from the index", id,
+                     StatCache.hash(FILE, NAME));
+    }
+
+    @Test
+    public void changedStatRehashed() throws IOException {
+        FileTime old = past();
+        write("aaaa", old);
+        StatCache.hash(FILE, NAME);
+        StatCache.flush();
+        write("bbbbb", old);
+        assertEquals(Utils.sha1(NAME, "bbbbb".getBytes()),
+                     StatCache.hash(FILE, NAME));
+        write("cccc", FileTime.fromMillis(old.toMillis() + 1000));
+        assertEquals(Utils.sha1(NAME, "cccc".getBytes()),
+                     StatCache.hash(FILE, NAME));
+    }
+
+    @Test
+    public void racyEntryRehashed() throws IOException {
+        FileTime old = past();
+        write("aaaa", old);
+        StatCache.hash(FILE, NAME);
+        StatCache.flush();
+        Files.setLastModifiedTime(Main.STAT_CACHE.toPath(),
+                                  FileTime.fromMillis(old.toMillis() + 1));
+        StatCache.reset();
+        write("bbbb", old);
+        assertEquals("an entry older than the index is trusted",
+                     Utils.sha1(NAME, "aaaa".getBytes()),
+                     StatCache.hash(FILE, NAME));
+        Files.setLastModifiedTime(Main.STAT_CACHE.toPath(), old);
+        StatCache.reset();
+        assertEquals("one modified as the index was written is not",
+                     Utils.sha1(NAME, "bbbb".getBytes()),
+                     StatCache.hash(FILE, NAME));
+    }
+
+    @Test
+    public void futureEntryRehashed() throws IOException {
+        FileTime future =
+            FileTime.fromMillis(System.currentTimeMillis() + 3600_000);
+        write("aaaa", future);
+        StatCache.hash(FILE, NAME);
+        StatCache.flush();
+        write("bbbb", future);
+        assertEquals(Utils.sha1(NAME, "bbbb".getBytes()),
+                     StatCache.hash(FILE, NAME));
+    }
+
+    @Test
+    public void recordAndForget() throws IOException {
+        FileTime old = past();
+        write("aaaa", old);
+        String id = Utils.sha1("recorded");
+        StatCache.record(FILE, id);
+        StatCache.flush();
+        assertEquals(id, StatCache.hash(FILE, NAME));
+        StatCache.forget(FILE);
+        assertEquals(Utils.sha1(NAME, "aaaa".getBytes()),
+                     StatCache.hash(FILE, NAME));
+        FILE.delete();
+        assertNull(StatCache.hash(FILE, NAME));
+    }
+
+    @Test
+    public void corruptIndexIgnored() throws IOException {
+        FileTime old = past();
+        write("aaaa", old);
+        StatCache.hash(FILE, NAME);
+        StatCache.flush();
+        Utils.writeContents(Main.STAT_CACHE, "not an index");
+        StatCache.reset();
+        write("bbbb", old);
+        assertEquals(Utils.sha1(NAME, "bbbb".getBytes()),
+                     StatCache.hash(FILE, NAME));
+    }
+}
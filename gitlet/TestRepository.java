@@ -0,0 +1,52 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.Assume.assumeFalse;
+
+/** Creates and removes the repository used by the JUnit tests that need
+ *  one.  Gitlet keeps its repository in .gitlet under the current
+ *  directory, so the tests create it there and delete it, with any
+ *  files they made beside it, when done; a test is skipped rather than
+ *  run in a directory that already holds a repository.
+ *  @author Sasmit Agarwal
+ */
+class TestRepository {
+
+    /** Initialize an empty repository in the current directory, forgetting
+     *  whatever state was cached for another. */
+    static void create() {
+        assumeFalse("a repository already exists in the current directory",
+                    Main.GITLET_FOLDER.exists());
+        Daemon.reset();
+        Main.main("init");
+        created = true;
+    }
+
+    /** Delete the repository made by create, if it made one, and the
+     *  working FILES, forgetting the state cached for it. */
+    static void delete(String... files) {
+        if (!created) {
+            return;
+        }
+        created = false;
+        Daemon.reset();
+        for (String name : files) {
+            Utils.join(Main.CWD, name).delete();
+        }
+        try (Stream<Path> paths = Files.walk(Main.GITLET_FOLDER.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile)
+                .forEach(File::delete);
+        } catch (IOException excp) {
+            throw new IllegalStateException(excp);
+        }
+    }
+
+    /** True iff create made the repository in the current directory. */
+    private static boolean created;
+}
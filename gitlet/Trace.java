@@ -0,0 +1,300 @@
+package gitlet;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** Per-command tracing.  While a command is traced, the time spent in
+ *  each Phase and the number of times it was entered are totalled, as
+ *  are the objects deserialized, the bytes read and written through
+ *  files and the pack (reads of memory-mapped indexes are not counted),
+ *  the files whose stat data was read, and the hashes computed; at the
+ *  end of the command these are printed to the standard error, or, in
+ *  a Daemon, to the standard output sent to the client.  A command is
+ *  traced if it is given the option --trace before its name, or if the
+ *  environment variable GITLET_TRACE is set to anything but "" or "0".
+ *  The same data is recorded as JDK Flight Recorder events: a
+ *  gitlet.Phase event for each run of a phase and a gitlet.Command event
+ *  for the command, so that they show in the timelines of a recording.
+ *  When neither is enabled, a phase costs only the creation of an event
+ *  the JIT compiler elides.
+ *  @author Sasmit Agarwal
+ */
+class Trace {
+
+    /** True iff every command is traced, because GITLET_TRACE is set. */
+    static final boolean ENABLED = enabled(System.getenv("GITLET_TRACE"));
+
+    /** Returns true iff VALUE, of GITLET_TRACE, enables tracing. */
+    static boolean enabled(String value) {
+        return value != null && !value.isEmpty() && !value.equals("0");
+    }
+
+    /** The parts of a command that are timed. */
+    enum Phase {
+        /** Journal.replay. */
+        REPLAY("journal replay"),
+        /** Reading and decoding commits. */
+        READ_COMMITS("read commits"),
+        /** Reading blobs from the pack or large objects. */
+        READ_BLOBS("read blobs"),
+        /** Computing SHA-1 hashes. */
+        HASH("hash"),
+        /** Writing blobs to files in the working directory. */
+        WRITE_FILES("write files"),
+        /** Main.flush: writing the pack index, commit tree, journal and
+         *  stat cache. */
+        FLUSH("flush");
+
+        /** A phase named LABEL in reports. */
+        Phase(String label) {
+            this.label = label;
+        }
+
+        /** The name of this phase in reports and events. */
+        final String label;
+    }
+
+    /** The quantities counted. */
+    enum Counter {
+        /** Commits, commit trees and tree nodes decoded. */
+        OBJECTS("objects deserialized"),
+        /** Bytes read from files and the pack. */
+        BYTES_READ("bytes read"),
+        /** Bytes written to files and the pack. */
+        BYTES_WRITTEN("bytes written"),
+        /** Files in the working directory whose stat data was read. */
+        STATS("files stat'd"),
+        /** SHA-1 hashes computed. */
+        HASHES("hashes computed");
+
+        /** A counter named LABEL in reports. */
+        Counter(String label) {
+            this.label = label;
+        }
+
+        /** The name of this counter in reports. */
+        final String label;
+    }
+
+    /** A run of a phase, recorded as a JFR event. */
+    @Name("gitlet.Phase")
+    @Label("Gitlet Phase")
+    @Category("Gitlet")
+    @StackTrace(false)
+    static class Span extends Event {
+        /** The name of the phase. */
+        @Label("Phase")
+        String phase;
+        /** The bytes the phase processed, where known. */
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+        /** The phase, and System.nanoTime() at its start if counting.
+         *  Transient fields are not recorded. */
+        transient Phase kind;
+        transient long start;
+    }
+
+    /** A command, recorded as a JFR event with its counters. */
+    @Name("gitlet.Command")
+    @Label("Gitlet Command")
+    @Category("Gitlet")
+    @StackTrace(false)
+    static class CommandEvent extends Event {
+        /** The name of the command. */
+        @Label("Command")
+        String command;
+        /** Objects deserialized. */
+        @Label("Objects Deserialized")
+        long objects;
+        /** Bytes read. */
+        @Label("Bytes Read")
+        @DataAmount
+        long bytesRead;
+        /** Bytes written. */
+        @Label("Bytes Written")
+        @DataAmount
+        long bytesWritten;
+        /** Files stat'd. */
+        @Label("Files Stat'd")
+        long stats;
+        /** Hashes computed. */
+        @Label("Hashes Computed")
+        long hashes;
+    }
+
+    /** Start the command COMMAND, printing its trace at the end iff
+     *  REQUESTED or ENABLED.  Counting is done if the trace is printed or
+     *  gitlet.Command events are recorded. */
+    static void begin(String command, boolean requested) {
+        printing = requested || ENABLED;
+        event = new CommandEvent();
+        event.command = command;
+        event.begin();
+        for (int k = 0; k < COUNTS; k += 1) {
+            counts.set(k, 0);
+        }
+        began = System.nanoTime();
+        counting = printing || event.isEnabled();
+    }
+
+    /** End the command begun last, printing and recording its trace.
+     *  Does nothing if it has already ended. */
+    static void finish() {
+        CommandEvent ev = event;
+        if (ev == null) {
+            return;
+        }
+        event = null;
+        long elapsed = System.nanoTime() - began;
+        counting = false;
+        ev.end();
+        if (ev.shouldCommit()) {
+            ev.objects = count(Counter.OBJECTS);
+            ev.bytesRead = count(Counter.BYTES_READ);
+            ev.bytesWritten = count(Counter.BYTES_WRITTEN);
+            ev.stats = count(Counter.STATS);
+            ev.hashes = count(Counter.HASHES);
+            ev.commit();
+        }
+        if (printing) {
+            print(Main.resident ? System.out : System.err, ev.command,
+                  elapsed);
+        }
+    }
+
+    /** Returns a run of PHASE, started now, to be passed to end. */
+    static Span start(Phase phase) {
+        Span span = new Span();
+        span.kind = phase;
+        if (counting) {
+            span.start = System.nanoTime();
+        }
+        span.begin();
+        return span;
+    }
+
+    /** End SPAN, which processed BYTES bytes (0 if unknown). */
+    static void end(Span span, long bytes) {
+        span.end();
+        if (counting && span.start != 0) {
+            int k = PHASE_TIME + 2 * span.kind.ordinal();
+            counts.addAndGet(k, System.nanoTime() - span.start);
+            counts.incrementAndGet(k + 1);
+        }
+        if (span.shouldCommit()) {
+            span.phase = span.kind.label;
+            span.bytes = bytes;
+            span.commit();
+        }
+    }
+
+    /** Add N to COUNTER, if counting. */
+    static void add(Counter counter, long n) {
+        if (counting) {
+            counts.addAndGet(counter.ordinal(), n);
+        }
+    }
+
+    /** Returns the value of COUNTER for the current command. */
+    static long count(Counter counter) {
+        return counts.get(counter.ordinal());
+    }
+
+    /** Returns STR, counting the bytes read through it as BYTES_READ. */
+    static InputStream input(InputStream str) {
+        if (!counting) {
+            return str;
+        }
+        return new FilterInputStream(str) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0) {
+                    add(Counter.BYTES_READ, 1);
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] buf, int off, int len)
+                throws IOException {
+                int n = super.read(buf, off, len);
+                if (n > 0) {
+                    add(Counter.BYTES_READ, n);
+                }
+                return n;
+            }
+        };
+    }
+
+    /** Returns STR, counting the bytes written through it as
+     *  BYTES_WRITTEN. */
+    static OutputStream output(OutputStream str) {
+        if (!counting) {
+            return str;
+        }
+        return new FilterOutputStream(str) {
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                add(Counter.BYTES_WRITTEN, 1);
+            }
+
+            @Override
+            public void write(byte[] buf, int off, int len)
+                throws IOException {
+                out.write(buf, off, len);
+                add(Counter.BYTES_WRITTEN, len);
+            }
+        };
+    }
+
+    /** Print the trace of COMMAND, which took ELAPSED nanoseconds, to
+     *  OUT. */
+    private static void print(PrintStream out, String command,
+                              long elapsed) {
+        out.printf("trace: %s: %.3f ms%n", command, elapsed / 1e6);
+        for (Phase p : Phase.values()) {
+            int k = PHASE_TIME + 2 * p.ordinal();
+            if (counts.get(k + 1) > 0) {
+                out.printf("trace:   %-20s %12.3f ms %10d calls%n", p.label,
+                           counts.get(k) / 1e6, counts.get(k + 1));
+            }
+        }
+        for (Counter c : Counter.values()) {
+            out.printf("trace:   %-20s %12d%n", c.label, count(c));
+        }
+        out.flush();
+    }
+
+    /** Index in counts of the time of the first phase, which is followed
+     *  by its number of runs, then the time of the second, and so on. */
+    private static final int PHASE_TIME = Counter.values().length;
+    /** Size of counts. */
+    private static final int COUNTS =
+        PHASE_TIME + 2 * Phase.values().length;
+    /** The counters, then the time and runs of each phase, for the
+     *  current command. */
+    private static final AtomicLongArray counts = new AtomicLongArray(COUNTS);
+    /** True iff the current command's counters are kept. */
+    private static volatile boolean counting;
+    /** True iff the current command's trace is printed. */
+    private static boolean printing;
+    /** System.nanoTime() at the start of the current command. */
+    private static long began;
+    /** The event of the current command, or null if none. */
+    private static CommandEvent event;
+}
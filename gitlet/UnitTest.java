@@ -12,7 +12,17 @@ public class UnitTest {
     /** Run the JUnit tests in the loa package. Add xxxTest.class entries to
      *  the arguments of runClasses to run other JUnit tests. */
     public static void main(String[] ignored) {
-        System.exit(textui.runClasses(UnitTest.class));
+        System.exit(textui.runClasses(UnitTest.class, PackTest.class,
+                                      DeltaTest.class, CommitGraphTest.class,
+                                      CodecTest.class, FileTreeTest.class,
+                                      StatCacheTest.class, DiffTest.class,
+                                      Diff3Test.class,
+                                      CommitIndexTest.class,
+                                      MessageIndexTest.class,
+                                      JournalTest.class, PathFilterTest.class,
+                                      ReachabilityTest.class, AddTest.class,
+                                      LargeObjectTest.class,
+                                      ChunkerTest.class));
     }
 
     /** A dummy test to avoid complaint. */
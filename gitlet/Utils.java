@@ -2,14 +2,17 @@
  * University of California.  All rights reserved. */
 package gitlet;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FilenameFilter;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
 import java.nio.file.Files;
 import java.nio.file.Paths;
@@ -17,8 +20,12 @@ import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
-import java.util.Formatter;
 import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 
 
 /** Assorted utilities.
@@ -32,35 +39,88 @@ class Utils {
     static final int UID_LENGTH = 40;
 
     /** Returns the SHA-1 hash of the concatenation of VALS, which may
-     *  be any mixture of byte arrays and Strings. */
+     *  be any mixture of byte arrays, Strings, and Files, whose contents
+     *  are read COPY_BUFFER bytes at a time. */
     static String sha1(Object... vals) {
-        try {
-            MessageDigest md = MessageDigest.getInstance("SHA-1");
-            for (Object val : vals) {
-                if (val instanceof byte[]) {
-                    md.update((byte[]) val);
-                } else if (val instanceof String) {
-                    md.update(((String) val).getBytes(StandardCharsets.UTF_8));
-                } else {
-                    throw new IllegalArgumentException("improper type to sha1");
+        Trace.Span span = Trace.start(Trace.Phase.HASH);
+        MessageDigest md = sha1Digest();
+        long bytes = 0;
+        for (Object val : vals) {
+            if (val instanceof byte[]) {
+                md.update((byte[]) val);
+                bytes += ((byte[]) val).length;
+            } else if (val instanceof String) {
+                byte[] b = ((String) val).getBytes(StandardCharsets.UTF_8);
+                md.update(b);
+                bytes += b.length;
+            } else if (val instanceof File) {
+                try (InputStream str = Trace.input(
+                         Files.newInputStream(((File) val).toPath()))) {
+                    byte[] buf = new byte[COPY_BUFFER];
+                    for (int n; (n = str.read(buf)) > 0; ) {
+                        md.update(buf, 0, n);
+                        bytes += n;
+                    }
+                } catch (IOException excp) {
+                    throw new IllegalArgumentException(excp.getMessage());
                 }
+            } else {
+                throw new IllegalArgumentException("improper type to sha1");
             }
-            Formatter result = new Formatter();
-            for (byte b : md.digest()) {
-                result.format("%02x", b);
-            }
-            return result.toString();
+        }
+        Trace.add(Trace.Counter.HASHES, 1);
+        Trace.end(span, bytes);
+        return hexId(md.digest(), 0);
+    }
+
+    /** Returns a new SHA-1 message digest. */
+    static MessageDigest sha1Digest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
         } catch (NoSuchAlgorithmException excp) {
             throw new IllegalArgumentException("System does not support SHA-1");
         }
     }
 
+    /** Size of the buffers through which files are hashed and copied. */
+    static final int COPY_BUFFER = 64 << 10;
+
     /** Returns the SHA-1 hash of the concatenation of the strings in
      *  VALS. */
     static String sha1(List<Object> vals) {
         return sha1(vals.toArray(new Object[vals.size()]));
     }
 
+    /** The length of a complete SHA-1 UID in raw bytes. */
+    static final int RAW_UID_LENGTH = UID_LENGTH / 2;
+
+    /** Returns the RAW_UID_LENGTH bytes denoted by the hexadecimal UID
+     *  ID. */
+    static byte[] rawId(String id) {
+        byte[] result = new byte[RAW_UID_LENGTH];
+        for (int i = 0; i < RAW_UID_LENGTH; i += 1) {
+            result[i] = (byte) ((Character.digit(id.charAt(2 * i), 16) << 4)
+                                | Character.digit(id.charAt(2 * i + 1), 16));
+        }
+        return result;
+    }
+
+    /** Returns the hexadecimal UID denoted by the RAW_UID_LENGTH bytes of
+     *  RAW starting at OFFSET. */
+    static String hexId(byte[] raw, int offset) {
+        byte[] result = new byte[UID_LENGTH];
+        for (int i = 0; i < RAW_UID_LENGTH; i += 1) {
+            int b = raw[offset + i];
+            result[2 * i] = HEX_DIGITS[(b >> 4) & 0xf];
+            result[2 * i + 1] = HEX_DIGITS[b & 0xf];
+        }
+        return new String(result, StandardCharsets.ISO_8859_1);
+    }
+
+    /** The lower-case hexadecimal digits, as used by hexId. */
+    private static final byte[] HEX_DIGITS =
+        "0123456789abcdef".getBytes(StandardCharsets.ISO_8859_1);
+
     /* FILE DELETION */
 
     /** Deletes FILE if it exists and is not a directory.  Returns true
@@ -96,7 +156,9 @@ class Utils {
             throw new IllegalArgumentException("must be a normal file");
         }
         try {
-            return Files.readAllBytes(file.toPath());
+            byte[] result = Files.readAllBytes(file.toPath());
+            Trace.add(Trace.Counter.BYTES_READ, result.length);
+            return result;
         } catch (IOException excp) {
             throw new IllegalArgumentException(excp.getMessage());
         }
@@ -119,8 +181,8 @@ class Utils {
                 throw
                     new IllegalArgumentException("cannot overwrite directory");
             }
-            BufferedOutputStream str =
-                new BufferedOutputStream(Files.newOutputStream(file.toPath()));
+            BufferedOutputStream str = new BufferedOutputStream(
+                Trace.output(Files.newOutputStream(file.toPath())));
             for (Object obj : contents) {
                 if (obj instanceof byte[]) {
                     str.write((byte[]) obj);
@@ -135,24 +197,126 @@ class Utils {
     }
 
     /** Return an object of type T read from FILE, casting it to EXPECTEDCLASS.
-     *  Throws IllegalArgumentException in case of problems. */
+     *  FILE may begin with a STORED or DEFLATED header byte, or be a bare
+     *  serialization stream.  Throws IllegalArgumentException in case of
+     *  problems. */
     static <T extends Serializable> T readObject(File file,
                                                  Class<T> expectedClass) {
-        try {
-            ObjectInputStream in =
-                new ObjectInputStream(new FileInputStream(file));
-            T result = expectedClass.cast(in.readObject());
-            in.close();
-            return result;
+        try (ObjectInputStream in = new ObjectInputStream(objectInput(file))) {
+            Trace.add(Trace.Counter.OBJECTS, 1);
+            return expectedClass.cast(in.readObject());
         } catch (IOException | ClassCastException
                  | ClassNotFoundException excp) {
             throw new IllegalArgumentException(excp.getMessage());
         }
     }
 
-    /** Write OBJ to FILE. */
+    /** Write OBJ to FILE, compressed at COMPRESSION_LEVEL. */
     static void writeObject(File file, Serializable obj) {
-        writeContents(file, serialize(obj));
+        try (ObjectOutputStream out =
+                 new ObjectOutputStream(objectOutput(file))) {
+            out.writeObject(obj);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return a stream of the contents of the object file FILE that follow
+     *  its header byte, inflated if FILE is DEFLATED.  A file without a
+     *  header is returned whole.  The stream supports mark and reset. */
+    static InputStream objectInput(File file) throws IOException {
+        InputStream str = new BufferedInputStream(
+            Trace.input(new FileInputStream(file)));
+        str.mark(1);
+        int header = str.read();
+        if (header == DEFLATED) {
+            return new BufferedInputStream(new InflaterInputStream(str));
+        } else if (header != STORED) {
+            str.reset();
+        }
+        return str;
+    }
+
+    /** Return a stream that writes FILE as an object file: a header byte
+     *  followed by the bytes written, compressed at COMPRESSION_LEVEL.
+     *  FILE is complete once the stream is closed. */
+    static OutputStream objectOutput(File file) throws IOException {
+        OutputStream str = new BufferedOutputStream(
+            Trace.output(Files.newOutputStream(file.toPath())));
+        if (COMPRESSION_LEVEL == 0) {
+            str.write(STORED);
+            return str;
+        }
+        str.write(DEFLATED);
+        Deflater deflater = new Deflater(COMPRESSION_LEVEL);
+        return new DeflaterOutputStream(str, deflater) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    deflater.end();
+                }
+            }
+        };
+    }
+
+    /* COMPRESSION */
+
+    /** The DEFLATE level of objects and pack records, set with
+     *  -Dgitlet.compression.  0 stores them uncompressed. */
+    static final int COMPRESSION_LEVEL =
+        Integer.getInteger("gitlet.compression",
+                           Deflater.DEFAULT_COMPRESSION);
+
+    /** Header byte of an object file holding a serialization stream. */
+    static final int STORED = 1;
+    /** Header byte of an object file holding a DEFLATE-compressed
+     *  serialization stream.  Files written before headers were added
+     *  begin with the serialization magic number 0xACED instead. */
+    static final int DEFLATED = 2;
+
+    /** Returns the LEN bytes of DATA starting at OFF compressed at
+     *  COMPRESSION_LEVEL. */
+    static byte[] deflate(byte[] data, int off, int len) {
+        Deflater deflater = new Deflater(COMPRESSION_LEVEL);
+        try {
+            deflater.setInput(data, off, len);
+            deflater.finish();
+            ByteArrayOutputStream result = new ByteArrayOutputStream();
+            byte[] buf = new byte[8192];
+            while (!deflater.finished()) {
+                result.write(buf, 0, deflater.deflate(buf));
+            }
+            return result.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /** Decompress the LEN bytes of SRC starting at OFF into all of DST.
+     *  Throws IllegalArgumentException if they do not inflate to exactly
+     *  DST.length bytes. */
+    static void inflate(byte[] src, int off, int len, byte[] dst) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(src, off, len);
+            int n = 0;
+            while (n < dst.length && !inflater.finished()) {
+                int k = inflater.inflate(dst, n, dst.length - n);
+                if (k == 0 && inflater.needsInput()) {
+                    break;
+                }
+                n += k;
+            }
+            if (n != dst.length || !inflater.finished()) {
+                throw new IllegalArgumentException("corrupt compressed data");
+            }
+        } catch (DataFormatException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } finally {
+            inflater.end();
+        }
     }
 
     /* DIRECTORIES */